@@ -0,0 +1,33 @@
+package com.example.wattet.benchmark;
+
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.model.Wallet;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static Transaction transfer() {
+        Transaction transaction = new Transaction();
+        transaction.setId(UUID.randomUUID());
+        transaction.setWallet(wallet());
+        transaction.setRelatedWallet(wallet());
+        transaction.setType(TransactionType.TRANSFER);
+        transaction.setAmount(123_456);
+        transaction.setTimestamp(LocalDateTime.now());
+        return transaction;
+    }
+
+    private static Wallet wallet() {
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        wallet.setAccountId(UUID.randomUUID());
+        wallet.setBalance(1_000);
+        return wallet;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.wattet.benchmark;
+
+import com.example.wattet.WalletServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Boots the wallet service, by default without the web layer, on a private in-memory H2 database.
+ * Settings are passed as command line arguments so they win over an application.yml
+ * picked up from the working directory.
+ */
+final class EmbeddedWalletContext {
+
+    private EmbeddedWalletContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... overrides) {
+        return run(List.of("--spring.main.web-application-type=none"), overrides);
+    }
+
+    /**
+     * Same as {@link #start} but with the servlet stack on a random port, read it back from
+     * {@code local.server.port}.
+     */
+    static ConfigurableApplicationContext startWeb(String... overrides) {
+        return run(List.of("--spring.main.web-application-type=servlet", "--server.port=0"), overrides);
+    }
+
+    private static ConfigurableApplicationContext run(List<String> webSettings, String... overrides) {
+        List<String> args = new ArrayList<>(webSettings);
+        args.addAll(List.of(
+                "--spring.main.banner-mode=off",
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.flyway.enabled=false",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.wattet=WARN"));
+        // Repeating a key would make Spring join both values with a comma, so overrides replace defaults
+        Map<String, String> byKey = new LinkedHashMap<>();
+        for (String arg : args) {
+            byKey.put(key(arg), arg);
+        }
+        for (String arg : overrides) {
+            byKey.put(key(arg), arg);
+        }
+        return new SpringApplicationBuilder(WalletServiceApplication.class).run(byKey.values().toArray(String[]::new));
+    }
+
+    private static String key(String arg) {
+        int equals = arg.indexOf('=');
+        return equals < 0 ? arg : arg.substring(0, equals);
+    }
+}
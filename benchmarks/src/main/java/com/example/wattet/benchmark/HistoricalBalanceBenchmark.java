@@ -0,0 +1,68 @@
+package com.example.wattet.benchmark;
+
+import com.example.wattet.model.Money;
+import com.example.wattet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a point-in-time balance lookup as the wallet history grows.
+ * {@code checkpointInterval=0} disables checkpoints, so every lookup sums the history from the start.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HistoricalBalanceBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int historyDepth;
+
+    @Param({"0", "100"})
+    public int checkpointInterval;
+
+    private ConfigurableApplicationContext context;
+    private WalletService walletService;
+    private UUID walletId;
+    private LocalDateTime[] timestamps;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = EmbeddedWalletContext.start("--wallet.checkpoint.interval=" + checkpointInterval);
+        walletService = context.getBean(WalletService.class);
+        walletId = walletService.createWallet(UUID.randomUUID()).getId();
+        timestamps = new LocalDateTime[historyDepth];
+        for (int i = 0; i < historyDepth; i++) {
+            timestamps[i] = walletService.deposit(walletId, Money.ofMinor(100)).getTimestamp();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Money historicalBalance() {
+        return walletService.getHistoricalBalance(walletId, timestamps[ThreadLocalRandom.current().nextInt(historyDepth)]);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.wattet.benchmark;
+
+import com.example.wattet.model.UuidV7;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Insert throughput into a table shaped like {@code transaction} that already holds
+ * {@code preloadRows} rows, keyed by random (v4) or time-ordered (v7) UUIDs. Random keys spread the
+ * inserts over the whole primary key index; time-ordered ones append to its last page.
+ * <p>
+ * Runs on embedded H2 by default. The gap shows best on PostgreSQL once the index outgrows
+ * {@code shared_buffers}: pass {@code -p jdbcUrl=jdbc:postgresql://localhost:5432/wallet -p user=... -p password=...}.
+ * One writer on one connection; the table is dropped and reloaded per trial, so the preload
+ * dominates the run time.
+ */
+@State(Scope.Benchmark)
+@Threads(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IdInsertBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final String TABLE = "id_insert_benchmark";
+
+    public enum IdKind {
+        RANDOM(UUID::randomUUID),
+        V7(UuidV7::next);
+
+        private final Supplier<UUID> generator;
+
+        IdKind(Supplier<UUID> generator) {
+            this.generator = generator;
+        }
+    }
+
+    @Param({"RANDOM", "V7"})
+    public IdKind idKind;
+
+    @Param({"2000000"})
+    public int preloadRows;
+
+    @Param({"jdbc:h2:mem:id-insert;DB_CLOSE_DELAY=-1"})
+    public String jdbcUrl;
+
+    @Param({"sa"})
+    public String user;
+
+    @Param({""})
+    public String password;
+
+    private Connection connection;
+    private PreparedStatement insert;
+    private UUID[] wallets;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        wallets = new UUID[1_000];
+        for (int i = 0; i < wallets.length; i++) {
+            wallets[i] = UUID.randomUUID();
+        }
+        connection = DriverManager.getConnection(jdbcUrl, user, password);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists " + TABLE);
+            statement.execute("create table " + TABLE + " (id uuid primary key, wallet_id uuid not null,"
+                    + " amount bigint not null, timestamp timestamp not null)");
+            statement.execute("create index " + TABLE + "_wallet on " + TABLE + " (wallet_id, timestamp, id)");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement("insert into " + TABLE + " (id, wallet_id, amount, timestamp) values (?, ?, ?, ?)");
+        for (int loaded = 0; loaded < preloadRows; loaded += BATCH_SIZE) {
+            insertBatch();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        insert.close();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table " + TABLE);
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insert() throws SQLException {
+        insertBatch();
+    }
+
+    private void insertBatch() throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            insert.setObject(1, idKind.generator.get());
+            insert.setObject(2, wallets[random.nextInt(wallets.length)]);
+            insert.setLong(3, random.nextLong(1, 100_000));
+            insert.setTimestamp(4, now);
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        connection.commit();
+    }
+}
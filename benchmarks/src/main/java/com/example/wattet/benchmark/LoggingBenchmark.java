@@ -0,0 +1,78 @@
+package com.example.wattet.benchmark;
+
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deposit throughput with every service call logged at debug, under the previous synchronous
+ * text appender ({@code logback-sync.xml}) and the shipped async JSON pipeline
+ * ({@code logback-spring.xml}). Run with {@code -t N} so threads compete for the appender.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final Money AMOUNT = Money.ofMinor(1);
+
+    @Param({"classpath:logback-sync.xml", "classpath:logback-spring.xml"})
+    public String logConfig;
+
+    @Param({"100"})
+    public int walletCount;
+
+    private ConfigurableApplicationContext context;
+    private WalletService walletService;
+    private UUID[] wallets;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path logDir = Files.createTempDirectory("wallet-bench-logs");
+        context = EmbeddedWalletContext.start(
+                "--logging.config=" + logConfig,
+                "--logging.file.path=" + logDir,
+                "--wallet.logging.destination=FILE",
+                "--logging.level.com.example.wattet=DEBUG",
+                "--wallet.logging.sample-rate=1");
+        walletService = context.getBean(WalletService.class);
+        wallets = new UUID[walletCount];
+        for (int i = 0; i < walletCount; i++) {
+            wallets[i] = walletService.createWallet(UUID.randomUUID()).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Transaction deposit() {
+        return walletService.deposit(wallets[ThreadLocalRandom.current().nextInt(walletCount)], AMOUNT);
+    }
+}
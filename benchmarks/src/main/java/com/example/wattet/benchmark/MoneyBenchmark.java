@@ -0,0 +1,75 @@
+package com.example.wattet.benchmark;
+
+import com.example.wattet.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The balance arithmetic of one transfer (debit, credit, overdraft check) and the parsing of a
+ * request amount, on the BigDecimal values the entities used to hold against {@link Money}.
+ * Add {@code -prof gc} for allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final String AMOUNT_TEXT = "1234.56";
+
+    private BigDecimal decimalFrom;
+    private BigDecimal decimalTo;
+    private BigDecimal decimalAmount;
+    private Money moneyFrom;
+    private Money moneyTo;
+    private Money moneyAmount;
+
+    @Setup
+    public void setUp() {
+        decimalFrom = new BigDecimal("1000000.00");
+        decimalTo = new BigDecimal("250.75");
+        decimalAmount = new BigDecimal(AMOUNT_TEXT);
+        moneyFrom = Money.of(decimalFrom);
+        moneyTo = Money.of(decimalTo);
+        moneyAmount = Money.of(decimalAmount);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalTransfer() {
+        if (decimalFrom.compareTo(decimalAmount) < 0) {
+            throw new IllegalStateException();
+        }
+        return decimalFrom.subtract(decimalAmount).add(decimalTo.add(decimalAmount));
+    }
+
+    @Benchmark
+    public Money moneyTransfer() {
+        if (moneyFrom.isLessThan(moneyAmount)) {
+            throw new IllegalStateException();
+        }
+        return moneyFrom.minus(moneyAmount).plus(moneyTo.plus(moneyAmount));
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalParse() {
+        return new BigDecimal(AMOUNT_TEXT).setScale(Money.SCALE);
+    }
+
+    @Benchmark
+    public Money moneyParse() {
+        return Money.parse(AMOUNT_TEXT);
+    }
+}
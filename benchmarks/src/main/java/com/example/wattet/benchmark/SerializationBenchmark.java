@@ -0,0 +1,73 @@
+package com.example.wattet.benchmark;
+
+import com.example.wattet.dto.TransactionDTO;
+import com.example.wattet.dto.TransactionPageDTO;
+import com.example.wattet.mapper.TransactionMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON encoding of the response bodies, configured like Spring Boot's ObjectMapper
+ * (java.time module, ISO dates).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"50"})
+    public int pageSize;
+
+    private ObjectWriter dtoWriter;
+    private ObjectWriter pageWriter;
+    private TransactionDTO dto;
+    private TransactionPageDTO page;
+
+    @Setup
+    public void setUp() {
+        JsonMapper mapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        dtoWriter = mapper.writerFor(TransactionDTO.class);
+        pageWriter = mapper.writerFor(TransactionPageDTO.class);
+
+        TransactionMapper transactionMapper = new TransactionMapper();
+        dto = transactionMapper.toDto(BenchmarkFixtures.transfer());
+        List<TransactionDTO> items = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            items.add(transactionMapper.toDto(BenchmarkFixtures.transfer()));
+        }
+        page = new TransactionPageDTO(items, "cursor");
+    }
+
+    @Benchmark
+    public byte[] transaction() throws JsonProcessingException {
+        return dtoWriter.writeValueAsBytes(dto);
+    }
+
+    @Benchmark
+    public byte[] historyPage() throws JsonProcessingException {
+        return pageWriter.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.wattet.benchmark;
+
+import com.example.wattet.model.Money;
+import com.example.wattet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end request latency through Tomcat, platform versus virtual request threads. Each JMH
+ * thread is one blocking HTTP client, so run it with more threads ({@code -t}) than
+ * {@code tomcatThreads} to see queueing; the p0.99 line of the sample-time output is the number to
+ * compare. Pinned virtual threads are reported on stdout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+public class ThreadModelBenchmark {
+
+    private static final Money INITIAL_BALANCE = Money.ofMinor(100_000_000_000L);
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    @Param({"200"})
+    public int tomcatThreads;
+
+    @Param({"20"})
+    public int poolSize;
+
+    @Param({"1000"})
+    public int walletCount;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private URI[] balanceUris;
+    private URI[] depositUris;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = EmbeddedWalletContext.startWeb(
+                "--wallet.threads.virtual=" + virtualThreads,
+                "--server.tomcat.threads.max=" + tomcatThreads,
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "--wallet.database.max-concurrency=" + poolSize,
+                "--wallet.database.acquire-timeout=30s");
+        WalletService walletService = context.getBean(WalletService.class);
+        String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/wallets/";
+        balanceUris = new URI[walletCount];
+        depositUris = new URI[walletCount];
+        for (int i = 0; i < walletCount; i++) {
+            UUID walletId = walletService.createWallet(UUID.randomUUID()).getId();
+            walletService.deposit(walletId, INITIAL_BALANCE);
+            balanceUris[i] = URI.create(base + walletId + "/balance?strict=true");
+            depositUris[i] = URI.create(base + walletId + "/deposit?amount=0.01");
+        }
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int balance() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(balanceUris[ThreadLocalRandom.current().nextInt(walletCount)]).GET());
+    }
+
+    @Benchmark
+    public int deposit() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(depositUris[ThreadLocalRandom.current().nextInt(walletCount)])
+                .POST(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    private int send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        int status = client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 200) {
+            throw new IllegalStateException("Unexpected HTTP status " + status);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.wattet.benchmark;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the balance mutations per concurrency mode. Run with {@code -t N} to add
+ * contention; {@code walletCount=2} puts every thread on the same hot pair of wallets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WalletServiceBenchmark {
+
+    private static final Money INITIAL_BALANCE = Money.ofMinor(100_000_000_000L);
+    private static final Money AMOUNT = Money.ofMinor(1);
+
+    @Param({"PESSIMISTIC", "OPTIMISTIC", "ATOMIC"})
+    public ConcurrencyMode mode;
+
+    @Param({"2", "1000"})
+    public int walletCount;
+
+    @Param({"10"})
+    public int poolSize;
+
+    private ConfigurableApplicationContext context;
+    private WalletService walletService;
+    private UUID[] wallets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = EmbeddedWalletContext.start(
+                "--wallet.concurrency.mode=" + mode,
+                "--wallet.concurrency.max-attempts=50",
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize);
+        walletService = context.getBean(WalletService.class);
+        wallets = new UUID[walletCount];
+        for (int i = 0; i < walletCount; i++) {
+            wallets[i] = walletService.createWallet(UUID.randomUUID()).getId();
+            walletService.deposit(wallets[i], INITIAL_BALANCE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Transaction deposit() {
+        return walletService.deposit(wallets[ThreadLocalRandom.current().nextInt(walletCount)], AMOUNT);
+    }
+
+    @Benchmark
+    public Transaction withdraw() {
+        return walletService.withdraw(wallets[ThreadLocalRandom.current().nextInt(walletCount)], AMOUNT);
+    }
+
+    @Benchmark
+    public Transaction transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(walletCount);
+        int to = (from + 1 + random.nextInt(walletCount - 1)) % walletCount;
+        return walletService.transfer(wallets[from], wallets[to], AMOUNT);
+    }
+}
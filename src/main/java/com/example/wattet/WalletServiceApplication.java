@@ -1,14 +1,19 @@
 package com.example.wattet;
 
+import com.example.wattet.service.WalletProvisioningJob;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.info.Info;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @OpenAPIDefinition(info = @Info(title = "Wallet API", version = "1.0", description = "API para gerenciamento de carteiras digitais"))
+@ConfigurationPropertiesScan
 @SpringBootApplication(scanBasePackages = "com.example.wattet")
 public class WalletServiceApplication {
     public static void main(String[] args) {
-        SpringApplication.run(WalletServiceApplication.class, args);
+        SpringApplication application = new SpringApplication(WalletServiceApplication.class);
+        WalletProvisioningJob.configure(application, args);
+        application.run(args);
     }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.example.wattet.advice;
+
+import com.example.wattet.config.ReadConsistency;
+import com.example.wattet.config.ReplicaLagMonitor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Stamps mutation responses with a {@link ReadConsistency} token. The body is written after the
+ * service transaction committed, so the primary's WAL position read here is never older than the
+ * write it stands for. Clients that want to read their own writes send it back; the others can
+ * ignore it.
+ */
+@RestControllerAdvice
+@ConditionalOnProperty(prefix = "wallet.replica", name = "enabled", havingValue = "true")
+@Slf4j
+public class ConsistencyTokenAdvice implements ResponseBodyAdvice<Object> {
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    public ConsistencyTokenAdvice(ReplicaLagMonitor replicaLagMonitor) {
+        this.replicaLagMonitor = replicaLagMonitor;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (!HttpMethod.GET.equals(request.getMethod()) && !HttpMethod.HEAD.equals(request.getMethod())) {
+            try {
+                response.getHeaders().set(ReadConsistency.HEADER, Long.toString(replicaLagMonitor.primaryLsn()));
+            } catch (DataAccessException ex) {
+                // The write is done; without a token the client only gets the staleness bound
+                log.warn("Could not read the primary WAL position for a consistency token: {}", ex.getMessage());
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.wattet.aspect;
+
+import com.example.wattet.config.WalletProperties;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries methods annotated with {@link RetryOnConcurrencyFailure} with bounded, fully jittered
+ * exponential backoff. Runs outside the transaction interceptor so every attempt gets a fresh
+ * transaction; when the call joins a transaction that is already open the conflict is rethrown,
+ * since that transaction is rollback-only and only its owner can retry it.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ConcurrencyRetryAspect {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyRetryAspect.class);
+
+    private final WalletProperties properties;
+
+    public ConcurrencyRetryAspect(WalletProperties properties) {
+        this.properties = properties;
+    }
+
+    @Around("@annotation(com.example.wattet.aspect.RetryOnConcurrencyFailure)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        WalletProperties.Concurrency config = properties.getConcurrency();
+        int maxAttempts = Math.max(1, config.getMaxAttempts());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (ConcurrencyFailureException ex) {
+                if (attempt >= maxAttempts) {
+                    logger.warn("Giving up on {} after {} attempts: {}",
+                            joinPoint.getSignature().getName(), attempt, ex.getMessage());
+                    throw ex;
+                }
+                Thread.sleep(backoffMillis(config, attempt));
+            }
+        }
+    }
+
+    private long backoffMillis(WalletProperties.Concurrency config, int attempt) {
+        long initial = Math.max(1, config.getInitialBackoff().toMillis());
+        long ceiling = Math.min(config.getMaxBackoff().toMillis(), initial << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(Math.max(1, ceiling) + 1);
+    }
+}
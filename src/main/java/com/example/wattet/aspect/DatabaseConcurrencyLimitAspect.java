@@ -0,0 +1,58 @@
+package com.example.wattet.aspect;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.exception.DatabaseBusyException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds how many transactions and repository calls run at once. With virtual threads nothing else
+ * stops thousands of requests from queueing on the connection pool; here they wait on a fair
+ * semaphore and are rejected after {@code wallet.database.acquire-timeout} instead of timing out
+ * inside Hikari. Runs inside the retry aspect, so no permit is held during backoff, and inside the
+ * group commit aspect, so none is held while waiting for a group. Calls that join an open
+ * transaction pass straight through since their owner already holds one.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 3)
+public class DatabaseConcurrencyLimitAspect {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutMillis;
+
+    public DatabaseConcurrencyLimitAspect(WalletProperties properties) {
+        WalletProperties.Database config = properties.getDatabase();
+        this.permits = config.getMaxConcurrency() > 0 ? new Semaphore(config.getMaxConcurrency(), true) : null;
+        this.acquireTimeoutMillis = config.getAcquireTimeout().toMillis();
+    }
+
+    @Around("@annotation(org.springframework.transaction.annotation.Transactional)"
+            + " || execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (permits == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new DatabaseBusyException("Too many concurrent database operations, retry later");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseBusyException("Interrupted while waiting for a database permit");
+        }
+        try {
+            return joinPoint.proceed();
+        } finally {
+            permits.release();
+        }
+    }
+}
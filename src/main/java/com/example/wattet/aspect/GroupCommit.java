@@ -0,0 +1,17 @@
+package com.example.wattet.aspect;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lets concurrent calls of the annotated transactional method share one database transaction when
+ * {@code wallet.group-commit} is enabled. Every wallet row the method locks must be passed to it as
+ * a {@code UUID} argument, so that the group can lock them in order first; calls on striped wallets
+ * run alone. See {@link GroupCommitAspect}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface GroupCommit {
+}
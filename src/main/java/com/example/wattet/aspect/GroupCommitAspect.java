@@ -0,0 +1,66 @@
+package com.example.wattet.aspect;
+
+import com.example.wattet.service.GroupCommitCoordinator;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Hands calls of methods annotated with {@link GroupCommit} to the {@link GroupCommitCoordinator}.
+ * A group worker invokes the target method directly, skipping the advice below this one: the
+ * worker owns the transaction, and a failing call must not mark it rollback-only for the rest of
+ * the group. Runs inside the retry aspect, so a call whose group was aborted runs again alone with
+ * the usual retries, and outside the database limiter, so waiting callers hold no permit. The
+ * method's {@link UUID} arguments are the wallets the group locks for the call up front.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class GroupCommitAspect {
+
+    private final GroupCommitCoordinator coordinator;
+
+    public GroupCommitAspect(GroupCommitCoordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    @Around("@annotation(com.example.wattet.aspect.GroupCommit)")
+    public Object group(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!coordinator.isEnabled() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Object target = joinPoint.getTarget();
+        Object[] args = joinPoint.getArgs();
+        List<UUID> walletIds = Arrays.stream(args).filter(UUID.class::isInstance).map(UUID.class::cast).toList();
+        return coordinator.execute(walletIds,
+                () -> invoke(() -> AopUtils.invokeJoinpointUsingReflection(target, method, args)),
+                () -> invoke(joinPoint::proceed));
+    }
+
+    private static Object invoke(Call call) {
+        try {
+            return call.run();
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        Object run() throws Throwable;
+    }
+}
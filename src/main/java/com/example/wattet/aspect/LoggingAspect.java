@@ -1,5 +1,6 @@
 package com.example.wattet.aspect;
 
+import com.example.wattet.config.WalletProperties;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.AfterThrowing;
 import org.aspectj.lang.annotation.Aspect;
@@ -8,19 +9,44 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Debug trace of service calls, sampled at one in {@code wallet.logging.sample-rate}. Counts and
+ * latencies come from {@link WalletMetricsAspect}; unexpected failures are logged by the exception
+ * handler.
+ */
 @Aspect
 @Component
 public class LoggingAspect {
 
     private static final Logger logger = LoggerFactory.getLogger(LoggingAspect.class);
 
+    private final WalletProperties properties;
+
+    public LoggingAspect(WalletProperties properties) {
+        this.properties = properties;
+    }
+
     @Before("execution(* com.example.wattet.service.*.*(..))")
     public void logBefore(JoinPoint joinPoint) {
-        logger.info("Executing: {}", joinPoint.getSignature().getName());
+        if (sampled()) {
+            logger.debug("Executing: {}", joinPoint.getSignature().getName());
+        }
     }
 
     @AfterThrowing(pointcut = "execution(* com.example.wattet.service.*.*(..))", throwing = "ex")
     public void logAfterThrowing(JoinPoint joinPoint, Throwable ex) {
-        logger.error("Exception in {}: {}", joinPoint.getSignature().getName(), ex.getMessage());
+        if (sampled()) {
+            logger.debug("Exception in {}: {}", joinPoint.getSignature().getName(), ex.getMessage());
+        }
+    }
+
+    private boolean sampled() {
+        if (!logger.isDebugEnabled()) {
+            return false;
+        }
+        int rate = properties.getLogging().getSampleRate();
+        return rate <= 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
     }
-}
\ No newline at end of file
+}
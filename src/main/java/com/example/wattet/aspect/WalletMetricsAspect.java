@@ -0,0 +1,89 @@
+package com.example.wattet.aspect;
+
+import com.example.wattet.dto.BatchItemResultDTO;
+import com.example.wattet.dto.BatchItemStatus;
+import com.example.wattet.dto.BatchResponseDTO;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters the public operations of WalletService and BatchService:
+ * <ul>
+ *   <li>{@code wallet.operation} timer per operation and outcome, with p50/p99</li>
+ *   <li>{@code wallet.operation.results} counter per operation and exception simple name
+ *       ({@code none} on success)</li>
+ *   <li>{@code wallet.money.volume} counter per TransactionType, summing committed amounts</li>
+ * </ul>
+ * Outermost advice, so a call that is retried after a concurrency failure counts once, with its
+ * total latency.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class WalletMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<TransactionType, Counter> volume = new EnumMap<>(TransactionType.class);
+
+    public WalletMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (TransactionType type : TransactionType.values()) {
+            volume.put(type, Counter.builder("wallet.money.volume")
+                    .description("Sum of amounts moved by committed transactions")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Around("execution(public * com.example.wattet.service.WalletService.*(..))"
+            + " || execution(public * com.example.wattet.service.BatchService.*(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        String operation = joinPoint.getSignature().getName();
+        long start = System.nanoTime();
+        String exception = "none";
+        try {
+            Object result = joinPoint.proceed();
+            recordVolume(result);
+            return result;
+        } catch (Throwable ex) {
+            exception = ex.getClass().getSimpleName();
+            throw ex;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Timer.builder("wallet.operation")
+                    .tag("operation", operation)
+                    .tag("outcome", "none".equals(exception) ? "success" : "failure")
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+            meterRegistry.counter("wallet.operation.results", "operation", operation, "exception", exception)
+                    .increment();
+        }
+    }
+
+    private void recordVolume(Object result) {
+        if (result instanceof Transaction transaction) {
+            volume.get(transaction.getType()).increment(Money.ofMinor(transaction.getAmount()).toDouble());
+        } else if (result instanceof BatchResponseDTO response) {
+            for (BatchItemResultDTO item : response.results()) {
+                if (item.status() == BatchItemStatus.APPLIED) {
+                    volume.get(item.transaction().getType()).increment(item.transaction().getAmount());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.wattet.config;
+
+public enum ConcurrencyMode {
+    PESSIMISTIC,
+    OPTIMISTIC,
+    /**
+     * Single conditional UPDATE per wallet; the entity is never read on the write path.
+     */
+    ATOMIC,
+    /**
+     * Insert-only: every movement appends postings carrying the running balance and the wallet row
+     * is never updated. Concurrent writers on a wallet collide on its next posting number and retry.
+     */
+    LEDGER,
+    /**
+     * Each wallet is owned by one single-threaded shard that checks balances in memory and commits
+     * movements in batches. Single node only; see {@code ShardedWalletEngine}.
+     */
+    SHARDED
+}
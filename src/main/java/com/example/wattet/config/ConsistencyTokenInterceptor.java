@@ -0,0 +1,30 @@
+package com.example.wattet.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Binds the {@value ReadConsistency#HEADER} a client sent back to the request thread. A malformed
+ * token is ignored rather than rejected; the read then only gets the staleness bound.
+ */
+class ConsistencyTokenInterceptor implements HandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String token = request.getHeader(ReadConsistency.HEADER);
+        if (token != null) {
+            try {
+                ReadConsistency.require(Long.parseLong(token.trim()));
+            } catch (NumberFormatException ignored) {
+                ReadConsistency.clear();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReadConsistency.clear();
+    }
+}
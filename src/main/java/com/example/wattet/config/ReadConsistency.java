@@ -0,0 +1,61 @@
+package com.example.wattet.config;
+
+/**
+ * Read-after-write token of the current request. Mutations hand out the primary's WAL position after
+ * they committed in the {@value #HEADER} header; a read that sends it back only goes to the replica
+ * once the replica has replayed up to that position. Positions come from the database, so tokens
+ * stay valid across nodes whatever their clocks say.
+ * <p>
+ * It also notes when a connection of the thread went to the replica, so callers can keep what they
+ * read there out of caches that live longer than the staleness bound.
+ */
+public final class ReadConsistency {
+
+    public static final String HEADER = "X-Consistency-Token";
+
+    private static final ThreadLocal<Long> TOKEN = new ThreadLocal<>();
+
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    private ReadConsistency() {
+    }
+
+    public static void require(Long token) {
+        TOKEN.set(token);
+    }
+
+    /**
+     * For a read that must see a commit it has no token for: no replica position satisfies it.
+     */
+    public static void requirePrimary() {
+        TOKEN.set(Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the token the request must observe, or null when any replica within the staleness bound will do
+     */
+    public static Long current() {
+        return TOKEN.get();
+    }
+
+    public static void clear() {
+        TOKEN.remove();
+        REPLICA_READ.remove();
+    }
+
+    /**
+     * Called by the routing data source when it hands this thread a replica connection.
+     */
+    public static void markReplicaRead() {
+        REPLICA_READ.set(Boolean.TRUE);
+    }
+
+    /**
+     * @return whether a replica connection was handed to this thread since the last call
+     */
+    public static boolean takeReplicaRead() {
+        boolean read = REPLICA_READ.get() != null;
+        REPLICA_READ.remove();
+        return read;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.wattet.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Tracks how far the replica has replayed the primary's WAL. Every check samples the primary's
+ * position and then the replica's; the replica is consistent as of the newest sample it has replayed
+ * past, so staleness is measured on this node's clock and an idle primary does not make the replica
+ * look behind. Reads only trust the last successful check, so a replica that stops answering falls
+ * out of rotation once {@code wallet.replica.max-staleness} has passed.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final WalletProperties properties;
+
+    /**
+     * Primary positions the replica had not replayed yet at the last check, oldest first.
+     */
+    private final Deque<Sample> pending = new ArrayDeque<>();
+
+    /**
+     * Epoch millis; zero until the first successful check, which keeps reads on the primary.
+     */
+    private volatile long consistentAsOf;
+
+    private volatile long replayedLsn = -1;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, WalletProperties properties,
+                             MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.properties = properties;
+        Gauge.builder("wallet.replica.staleness", this, monitor -> monitor.staleness() / 1000.0)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.replica.lag-check-interval:PT0.2S}")
+    public synchronized void check() {
+        // Sampled before the primary is asked, so the position covers every commit up to that time
+        long sampledAt = System.currentTimeMillis();
+        try {
+            pending.addLast(new Sample(sampledAt, primaryLsn()));
+            long replayed = lsn(replica, properties.getReplica().getReplayLsnQuery());
+            while (!pending.isEmpty() && pending.peekFirst().lsn() <= replayed) {
+                consistentAsOf = Math.max(consistentAsOf, pending.pollFirst().sampledAt());
+            }
+            replayedLsn = Math.max(replayedLsn, replayed);
+        } catch (DataAccessException ex) {
+            // Keep the last good value, it ages past the staleness bound on its own
+            log.warn("Replica lag check failed: {}", ex.getMessage());
+        }
+        // Samples older than the bound could only vouch for a replica that is too stale anyway
+        long horizon = sampledAt - properties.getReplica().getMaxStaleness().toMillis();
+        while (!pending.isEmpty() && pending.peekFirst().sampledAt() < horizon) {
+            pending.pollFirst();
+        }
+    }
+
+    /**
+     * The primary's current WAL position, the {@link ReadConsistency} token for everything committed so far.
+     */
+    public long primaryLsn() {
+        return lsn(primary, properties.getReplica().getPrimaryLsnQuery());
+    }
+
+    /**
+     * @param token the caller's {@link ReadConsistency} token, null if it has none
+     */
+    public boolean isUsable(Long token) {
+        if (System.currentTimeMillis() - consistentAsOf > properties.getReplica().getMaxStaleness().toMillis()) {
+            return false;
+        }
+        return token == null || replayedLsn >= token;
+    }
+
+    private long staleness() {
+        return System.currentTimeMillis() - consistentAsOf;
+    }
+
+    private static long lsn(JdbcTemplate database, String query) {
+        Number lsn = database.queryForObject(query, Number.class);
+        if (lsn == null) {
+            // pg_last_wal_replay_lsn() is null on a server that is not in recovery
+            throw new DataRetrievalFailureException("WAL position query returned null: " + query);
+        }
+        return lsn.longValue();
+    }
+
+    private record Sample(long sampledAt, long lsn) {
+    }
+}
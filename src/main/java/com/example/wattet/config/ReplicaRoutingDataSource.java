@@ -0,0 +1,34 @@
+package com.example.wattet.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Picks the replica for connections opened inside a read-only transaction while
+ * {@link ReplicaLagMonitor} vouches for it, the primary otherwise. Must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: transaction managers
+ * open the connection before the read-only flag is bound to the thread.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    ReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && lagMonitor.isUsable(ReadConsistency.current())) {
+            ReadConsistency.markReplicaRead();
+            return Route.REPLICA;
+        }
+        return Route.PRIMARY;
+    }
+}
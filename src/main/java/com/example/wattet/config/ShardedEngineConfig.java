@@ -0,0 +1,52 @@
+package com.example.wattet.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * In SHARDED mode a request waits inside its {@code @Transactional} service call until a shard has
+ * committed its movement, and the shard needs a pooled connection to do that. Behind a lazy proxy a
+ * transaction that runs no statement never takes a connection, so waiting requests cannot starve the
+ * shards of the pool. The read replica setup already puts such a proxy in front and is left as is.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "wallet.concurrency", name = "mode", havingValue = "SHARDED")
+public class ShardedEngineConfig {
+
+    @Bean
+    public static BeanPostProcessor lazyConnectionDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource
+                        && !(bean instanceof LazyConnectionDataSourceProxy)) {
+                    return new ClosingLazyConnectionDataSourceProxy(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Keeps the pool's close() reachable, so it is still shut down with the context.
+     */
+    private static final class ClosingLazyConnectionDataSourceProxy extends LazyConnectionDataSourceProxy
+            implements AutoCloseable {
+
+        private ClosingLazyConnectionDataSourceProxy(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public void close() throws Exception {
+            if (getTargetDataSource() instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.example.wattet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+@Data
+@ConfigurationProperties(prefix = "wallet")
+public class WalletProperties {
+
+    private Concurrency concurrency = new Concurrency();
+
+    private Checkpoint checkpoint = new Checkpoint();
+
+    private History history = new History();
+
+    private Idempotency idempotency = new Idempotency();
+
+    private Batch batch = new Batch();
+
+    private BalanceCache balanceCache = new BalanceCache();
+
+    private Threads threads = new Threads();
+
+    private Database database = new Database();
+
+    private Logging logging = new Logging();
+
+    private Striping striping = new Striping();
+
+    private DepositAggregation depositAggregation = new DepositAggregation();
+
+    private Schema schema = new Schema();
+
+    private Replica replica = new Replica();
+
+    private Outbox outbox = new Outbox();
+
+    private BalanceStream balanceStream = new BalanceStream();
+
+    private Sharding sharding = new Sharding();
+
+    private GroupCommit groupCommit = new GroupCommit();
+
+    private Provisioning provisioning = new Provisioning();
+
+    private Scheduling scheduling = new Scheduling();
+
+    @Data
+    public static class Concurrency {
+        /**
+         * How balance mutations guard the wallet row: SELECT ... FOR UPDATE, @Version checks or a
+         * conditional UPDATE that never reads the entity.
+         */
+        private ConcurrencyMode mode = ConcurrencyMode.PESSIMISTIC;
+
+        /**
+         * Total attempts (first call included) before a concurrency failure is surfaced to the caller.
+         */
+        private int maxAttempts = 5;
+
+        private Duration initialBackoff = Duration.ofMillis(5);
+
+        private Duration maxBackoff = Duration.ofMillis(200);
+    }
+
+    @Data
+    public static class Checkpoint {
+        /**
+         * Roughly one in this many transactions writes a balance checkpoint for the wallets it touches.
+         * Zero or less disables incremental checkpoints.
+         */
+        private int interval = 100;
+
+        /**
+         * Rebuild the checkpoints of every wallet from its transactions when the application starts.
+         */
+        private boolean backfillOnStartup = false;
+
+        private int backfillPageSize = 500;
+    }
+
+    @Data
+    public static class History {
+        private int defaultPageSize = 50;
+
+        private int maxPageSize = 500;
+    }
+
+    @Data
+    public static class Idempotency {
+        /**
+         * Replayed responses kept in memory in front of the idempotency_key table.
+         */
+        private long cacheSize = 10_000;
+
+        private Duration cacheTtl = Duration.ofMinutes(10);
+
+        /**
+         * How long keys stay in the table; clients must not retry with a key older than this.
+         */
+        private Duration retention = Duration.ofHours(24);
+    }
+
+    @Data
+    public static class Batch {
+        private int maxOperations = 10_000;
+
+        /**
+         * Wallets locked per SELECT ... FOR UPDATE, keeping IN lists within driver limits.
+         */
+        private int lockChunkSize = 1_000;
+    }
+
+    @Data
+    public static class BalanceCache {
+        private boolean enabled = true;
+
+        private long maximumSize = 100_000;
+
+        /**
+         * Upper bound on how stale a balance written by another node can be when read here.
+         */
+        private Duration ttl = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Threads {
+        /**
+         * Serve requests and MVC async work on virtual threads instead of Tomcat's platform pool.
+         */
+        private boolean virtual = false;
+    }
+
+    @Data
+    public static class Database {
+        /**
+         * Transactions and repository calls allowed to run at once, 0 for no limit. With virtual
+         * threads keep it at the Hikari pool size so excess work waits here, not in the pool.
+         */
+        private int maxConcurrency = 0;
+
+        private Duration acquireTimeout = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Logging {
+        /**
+         * Only one in N service calls is traced at debug level.
+         */
+        private int sampleRate = 100;
+
+        /**
+         * Read by logback-spring.xml, like {@link #async}: CONSOLE or FILE.
+         */
+        private String destination = "CONSOLE";
+
+        /**
+         * Read by logback-spring.xml, bound here for validation and documentation.
+         */
+        private Async async = new Async();
+
+        @Data
+        public static class Async {
+            private int queueSize = 8192;
+
+            private int discardingThreshold = 1638;
+
+            private boolean neverBlock = true;
+        }
+    }
+
+    @Data
+    public static class Striping {
+        /**
+         * Hot wallets whose balance is split across stripe rows. Removing a wallet here folds its
+         * stripes back into the wallet row on the next startup.
+         */
+        private Set<UUID> walletIds = new HashSet<>();
+
+        private int stripes = 8;
+
+        /**
+         * How long a striped wallet's summed balance may be served from memory, zero to always sum.
+         */
+        private Duration aggregateTtl = Duration.ZERO;
+    }
+
+    @Data
+    public static class DepositAggregation {
+        /**
+         * Record deposits as pending rows and add them to the wallet row in batches. Ignored in
+         * LEDGER mode. When turned off, rows still pending are flushed once on the next run.
+         */
+        private boolean enabled = false;
+
+        private Duration flushInterval = Duration.ofMillis(50);
+
+        /**
+         * A flush transaction applies the wallets of this many of the oldest pending deposits,
+         * with all of their deposits; queuing this many on one node also starts a flush before
+         * the interval elapses.
+         */
+        private int maxBatchSize = 1_000;
+    }
+
+    @Data
+    public static class Schema {
+        /**
+         * Compare the indexes declared on the entities with the database at startup and log the
+         * missing ones.
+         */
+        private boolean verifyIndexes = true;
+
+        private boolean failOnMissingIndex = false;
+
+        private Partitioning partitioning = new Partitioning();
+
+        @Data
+        public static class Partitioning {
+            /**
+             * Keep monthly transaction partitions created ahead of time. Requires the
+             * classpath:db/partitioning migration.
+             */
+            private boolean enabled = false;
+
+            private int monthsAhead = 3;
+        }
+    }
+
+    @Data
+    public static class Replica {
+        /**
+         * Route {@code @Transactional(readOnly = true)} work to the {@code wallet.replica.datasource}
+         * pool. Everything else, and any read while the replica is too far behind, uses the primary.
+         */
+        private boolean enabled = false;
+
+        /**
+         * How far behind the primary the replica may be and still serve reads. Keep it above
+         * lag-check-interval, a replica that has not been checked for this long counts as stale.
+         */
+        private Duration maxStaleness = Duration.ofSeconds(1);
+
+        private Duration lagCheckInterval = Duration.ofMillis(200);
+
+        /**
+         * Returns the primary's current WAL position as a number. Run on the primary at every lag
+         * check and for every consistency token handed out.
+         */
+        private String primaryLsnQuery = "select (pg_current_wal_lsn() - '0/0'::pg_lsn)::bigint";
+
+        /**
+         * Returns the WAL position the replica has replayed up to, comparable with primary-lsn-query.
+         */
+        private String replayLsnQuery = "select (pg_last_wal_replay_lsn() - '0/0'::pg_lsn)::bigint";
+    }
+
+    @Data
+    public static class Outbox {
+        /**
+         * Write a transaction_outbox row with every recorded transaction and relay them to the sink.
+         */
+        private boolean enabled = false;
+
+        private Sink sink = Sink.LISTENER;
+
+        private Duration pollInterval = Duration.ofMillis(100);
+
+        /**
+         * Events handed to the sink per call and deleted per relay transaction.
+         */
+        private int batchSize = 500;
+
+        /**
+         * After a failed delivery the relay pauses this long, doubling up to max-backoff, so a slow
+         * or failing sink is not hammered. Events wait in the table meanwhile.
+         */
+        private Duration initialBackoff = Duration.ofMillis(100);
+
+        private Duration maxBackoff = Duration.ofSeconds(30);
+
+        private File file = new File();
+
+        private Webhook webhook = new Webhook();
+
+        public enum Sink {
+            /**
+             * Published as {@code TransactionRecordedEvent}s to {@code @EventListener}s in this process.
+             */
+            LISTENER,
+            /**
+             * Appended to {@code file.path} as JSON lines.
+             */
+            FILE,
+            /**
+             * POSTed to {@code webhook.url} as a JSON array per batch.
+             */
+            WEBHOOK
+        }
+
+        @Data
+        public static class File {
+            private String path = "outbox/transactions.jsonl";
+        }
+
+        @Data
+        public static class Webhook {
+            private String url;
+
+            private Duration connectTimeout = Duration.ofSeconds(2);
+
+            private Duration readTimeout = Duration.ofSeconds(10);
+        }
+    }
+
+    @Data
+    public static class BalanceStream {
+        /**
+         * Open streams per node; further subscriptions get 503 until some close.
+         */
+        private int maxSubscribers = 10_000;
+
+        /**
+         * Streams are closed after this long; EventSource clients reconnect on their own.
+         */
+        private Duration timeout = Duration.ofMinutes(30);
+
+        /**
+         * Updates queued per subscriber that has not taken the previous ones yet. When it is full the
+         * queue is replaced by the newest update, balances are state and only the latest counts.
+         */
+        private int bufferSize = 16;
+
+        /**
+         * Re-reads watched wallets (through the balance cache) to pick up changes committed on other nodes.
+         */
+        private Duration refreshInterval = Duration.ofSeconds(5);
+
+        private Duration heartbeatInterval = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Sharding {
+        /**
+         * Single-threaded workers that own the wallets in SHARDED mode, each wallet hashed to one by id.
+         */
+        private int shards = 8;
+
+        /**
+         * Requests waiting per shard; further ones get 503 until the shard catches up.
+         */
+        private int queueCapacity = 10_000;
+
+        /**
+         * Movements a shard applies and commits in one database transaction.
+         */
+        private int maxBatchSize = 500;
+    }
+
+    @Data
+    public static class GroupCommit {
+        /**
+         * Run concurrent deposits, withdrawals and transfers together in one database transaction,
+         * each behind its own savepoint. Ignored in SHARDED mode, which groups movements itself.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Threads committing groups, each holding one pooled connection.
+         */
+        private int workers = 2;
+
+        /**
+         * Calls per group transaction. Each takes a savepoint, and PostgreSQL slows down every
+         * snapshot once a transaction has more than 64 subtransactions, so stay below that.
+         */
+        private int maxBatchSize = 50;
+
+        /**
+         * Upper bound of the collecting window. It only opens while groups have been partly filled
+         * and closes again when traffic is sparse or groups fill up by themselves.
+         */
+        private Duration maxWait = Duration.ofMillis(2);
+
+        /**
+         * Calls waiting for a group; further ones run in their own transaction.
+         */
+        private int queueCapacity = 10_000;
+    }
+
+    @Data
+    public static class Provisioning {
+        /**
+         * Accounts staged, inserted and committed together by bulk provisioning; also the most
+         * results held in memory at once.
+         */
+        private int chunkSize = 10_000;
+    }
+
+    @Data
+    public static class Scheduling {
+        /**
+         * Run the {@code @Scheduled} jobs (flushes, relays, lag checks). Defaults to false for a
+         * {@code --provision-wallets} run, which exits when done.
+         */
+        private boolean enabled = true;
+    }
+}
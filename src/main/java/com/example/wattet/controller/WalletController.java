@@ -1,23 +1,44 @@
 package com.example.wattet.controller;
 
+import com.example.wattet.dto.BatchRequestDTO;
+import com.example.wattet.dto.BatchResponseDTO;
+import com.example.wattet.dto.ExportFormat;
 import com.example.wattet.dto.TransactionDTO;
+import com.example.wattet.dto.TransactionPageDTO;
 import com.example.wattet.dto.WalletResponseDTO;
-import com.example.wattet.model.Transaction;
-import com.example.wattet.repository.TransactionRepository;
+import com.example.wattet.mapper.WalletMapper;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.service.BalanceStreamService;
+import com.example.wattet.service.BatchService;
+import com.example.wattet.service.IdempotencyService;
+import com.example.wattet.service.TransactionHistoryService;
+import com.example.wattet.service.WalletProvisioningService;
 import com.example.wattet.service.WalletService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -27,14 +48,27 @@ import java.util.UUID;
 @Slf4j
 public class WalletController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final WalletService walletService;
-    private final ModelMapper modelMapper;
-    private final TransactionRepository transactionRepository;
+    private final WalletMapper walletMapper;
+    private final TransactionHistoryService transactionHistoryService;
+    private final IdempotencyService idempotencyService;
+    private final BatchService batchService;
+    private final BalanceStreamService balanceStreamService;
+    private final WalletProvisioningService walletProvisioningService;
 
-    public WalletController(WalletService walletService, ModelMapper modelMapper, TransactionRepository transactionRepository) {
+    public WalletController(WalletService walletService, WalletMapper walletMapper,
+                            TransactionHistoryService transactionHistoryService, IdempotencyService idempotencyService,
+                            BatchService batchService, BalanceStreamService balanceStreamService,
+                            WalletProvisioningService walletProvisioningService) {
         this.walletService = walletService;
-        this.modelMapper = modelMapper;
-        this.transactionRepository = transactionRepository;
+        this.walletMapper = walletMapper;
+        this.transactionHistoryService = transactionHistoryService;
+        this.idempotencyService = idempotencyService;
+        this.batchService = batchService;
+        this.balanceStreamService = balanceStreamService;
+        this.walletProvisioningService = walletProvisioningService;
     }
 
     @Operation(summary = "Create a new wallet for an account")
@@ -42,17 +76,47 @@ public class WalletController {
     public ResponseEntity<WalletResponseDTO> createWallet(
             @Parameter(description = "ID of the account to associate with the wallet", required = true)
             @RequestParam @NotNull UUID accountId) {
-        log.info("Creating wallet for accountId: {}", accountId);
-        return ResponseEntity.ok(new WalletResponseDTO(walletService.createWallet(accountId).getId()));
+        log.debug("Creating wallet for accountId: {}", accountId);
+        return ResponseEntity.ok(walletMapper.toResponse(walletService.createWallet(accountId)));
+    }
+
+    @Operation(summary = "Create wallets for many accounts at once",
+            description = "Send account ids as text/plain, one per line. Streams back one CSV line per account, in input order, "
+                    + "with its wallet id and CREATED, EXISTING or INVALID. Accounts that already have a wallet keep it, "
+                    + "so an interrupted upload can be sent again. The last line is '# complete: ...' with the counts or "
+                    + "'# failed after ...' with the error; without it the response was cut off.")
+    @PostMapping(value = "/bulk", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<StreamingResponseBody> provisionWallets(HttpServletRequest request) throws IOException {
+        log.debug("Provisioning wallets from a bulk upload");
+        InputStream accountIds = request.getInputStream();
+        StreamingResponseBody body = out -> {
+            Writer results = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            walletProvisioningService.provision(new InputStreamReader(accountIds, StandardCharsets.UTF_8), results);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ExportFormat.CSV.getContentType()))
+                .body(body);
     }
 
     @Operation(summary = "Get the current balance of a wallet")
     @GetMapping("/{walletId}/balance")
     public ResponseEntity<BigDecimal> getBalance(
             @Parameter(description = "ID of the wallet to retrieve the balance for", required = true)
+            @PathVariable @NotNull UUID walletId,
+            @Parameter(description = "Bypass the balance cache and read the committed balance from the database")
+            @RequestParam(defaultValue = "false") boolean strict) {
+        log.debug("Retrieving balance for walletId: {}", walletId);
+        return ResponseEntity.ok(walletService.getBalance(walletId, strict).toBigDecimal());
+    }
+
+    @Operation(summary = "Stream the balance of a wallet as server-sent events",
+            description = "Sends the current balance, then a 'balance' event after every change. Replaces polling the balance endpoint.")
+    @GetMapping(value = "/{walletId}/balance/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBalance(
+            @Parameter(description = "ID of the wallet to stream the balance of", required = true)
             @PathVariable @NotNull UUID walletId) {
-        log.info("Retrieving balance for walletId: {}", walletId);
-        return ResponseEntity.ok(walletService.getBalance(walletId));
+        log.debug("Opening balance stream for walletId: {}", walletId);
+        return balanceStreamService.subscribe(walletId);
     }
 
     @Operation(summary = "Get the historical balance of a wallet at a specific time")
@@ -62,19 +126,23 @@ public class WalletController {
             @PathVariable @NotNull UUID walletId,
             @Parameter(description = "Timestamp to retrieve the historical balance at", required = true)
             @RequestParam LocalDateTime timestamp) {
-        log.info("Retrieving historical balance for walletId: {} at timestamp: {}", walletId, timestamp);
-        return ResponseEntity.ok(walletService.getHistoricalBalance(walletId, timestamp));
+        log.debug("Retrieving historical balance for walletId: {} at timestamp: {}", walletId, timestamp);
+        return ResponseEntity.ok(walletService.getHistoricalBalance(walletId, timestamp).toBigDecimal());
     }
 
     @Operation(summary = "Deposit funds into a wallet")
     @PostMapping("/{walletId}/deposit")
-    public ResponseEntity<Transaction> deposit(
+    public ResponseEntity<TransactionDTO> deposit(
             @Parameter(description = "ID of the wallet to deposit funds into", required = true)
             @PathVariable @NotNull UUID walletId,
-            @Parameter(description = "Amount to deposit", required = true)
-            @RequestParam BigDecimal amount) {
-        log.info("Depositing {} into walletId: {}", amount, walletId);
-        return ResponseEntity.ok(walletService.deposit(walletId, amount));
+            @Parameter(description = "Amount to deposit, with at most 2 decimal places", required = true)
+            @RequestParam("amount") String amountText,
+            @Parameter(description = "Client generated key; retries with the same key replay the first result")
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        Money amount = Money.parse(amountText);
+        log.debug("Depositing {} into walletId: {}", amount, walletId);
+        return ResponseEntity.ok(idempotencyService.execute(idempotencyKey, fingerprint("deposit", walletId, null, amount),
+                () -> walletService.deposit(walletId, amount)));
     }
 
     @Operation(summary = "Withdraw funds from a wallet")
@@ -82,10 +150,14 @@ public class WalletController {
     public ResponseEntity<TransactionDTO> withdraw(
             @Parameter(description = "ID of the wallet to withdraw funds from", required = true)
             @PathVariable @NotNull UUID walletId,
-            @Parameter(description = "Amount to withdraw", required = true)
-            @RequestParam BigDecimal amount) {
-        log.info("Withdrawing {} from walletId: {}", amount, walletId);
-        return ResponseEntity.ok(modelMapper.map(walletService.withdraw(walletId, amount), TransactionDTO.class));
+            @Parameter(description = "Amount to withdraw, with at most 2 decimal places", required = true)
+            @RequestParam("amount") String amountText,
+            @Parameter(description = "Client generated key; retries with the same key replay the first result")
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        Money amount = Money.parse(amountText);
+        log.debug("Withdrawing {} from walletId: {}", amount, walletId);
+        return ResponseEntity.ok(idempotencyService.execute(idempotencyKey, fingerprint("withdraw", walletId, null, amount),
+                () -> walletService.withdraw(walletId, amount)));
     }
 
     @Operation(summary = "Transfer funds between wallets")
@@ -95,19 +167,67 @@ public class WalletController {
             @PathVariable @NotNull UUID fromWalletId,
             @Parameter(description = "ID of the destination wallet to transfer funds to", required = true)
             @RequestParam @NotNull UUID toWalletId,
-            @Parameter(description = "Amount to transfer", required = true)
-            @RequestParam BigDecimal amount) {
-        log.info("Transferring {} from walletId: {} to walletId: {}", amount, fromWalletId, toWalletId);
-        return ResponseEntity.ok(modelMapper.map(walletService.transfer(fromWalletId, toWalletId, amount), TransactionDTO.class));
+            @Parameter(description = "Amount to transfer, with at most 2 decimal places", required = true)
+            @RequestParam("amount") String amountText,
+            @Parameter(description = "Client generated key; retries with the same key replay the first result")
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        Money amount = Money.parse(amountText);
+        log.debug("Transferring {} from walletId: {} to walletId: {}", amount, fromWalletId, toWalletId);
+        return ResponseEntity.ok(idempotencyService.execute(idempotencyKey, fingerprint("transfer", fromWalletId, toWalletId, amount),
+                () -> walletService.transfer(fromWalletId, toWalletId, amount)));
+    }
+
+    @Operation(summary = "Apply many deposits, withdrawals and transfers in one request")
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResponseDTO> applyBatch(@RequestBody BatchRequestDTO request) {
+        log.debug("Applying batch of {} operations in {} mode",
+                request.operations() == null ? 0 : request.operations().size(), request.mode());
+        return ResponseEntity.ok(batchService.apply(request));
     }
 
+    @Operation(summary = "List a wallet's transactions, newest first, one keyset page at a time")
     @GetMapping("/{walletId}/transactions")
-    public ResponseEntity<List<TransactionDTO>> getTransactionHistory(@PathVariable UUID walletId) {
-        List<Transaction> transactions = transactionRepository.findByWalletId(walletId);
-        List<TransactionDTO> transactionDTOs = transactions.stream()
-                .map(transaction -> modelMapper.map(transaction, TransactionDTO.class))
-                .toList();
-        return ResponseEntity.ok(transactionDTOs);
+    public ResponseEntity<TransactionPageDTO> getTransactionHistory(
+            @Parameter(description = "ID of the wallet to list transactions for", required = true)
+            @PathVariable @NotNull UUID walletId,
+            @Parameter(description = "Only return transactions of this type")
+            @RequestParam(required = false) TransactionType type,
+            @Parameter(description = "Inclusive lower bound on the transaction timestamp")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Exclusive upper bound on the transaction timestamp")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "nextCursor from the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Maximum number of transactions to return")
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(transactionHistoryService.findPage(walletId, type, from, to, cursor, limit));
+    }
+
+    @Operation(summary = "Download a wallet's full transaction history as NDJSON or CSV")
+    @GetMapping("/{walletId}/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactionHistory(
+            @Parameter(description = "ID of the wallet to export transactions for", required = true)
+            @PathVariable @NotNull UUID walletId,
+            @Parameter(description = "Output format")
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @Parameter(description = "Only export transactions of this type")
+            @RequestParam(required = false) TransactionType type,
+            @Parameter(description = "Inclusive lower bound on the transaction timestamp")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Exclusive upper bound on the transaction timestamp")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.debug("Exporting transactions of walletId: {} as {}", walletId, format);
+        StreamingResponseBody body = out -> transactionHistoryService.export(walletId, type, from, to, format, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"transactions-" + walletId + "." + format.getExtension() + "\"")
+                .body(body);
+    }
+
+    // Minor units, so that 10 and 10.00 count as the same request
+    private static String fingerprint(String operation, UUID walletId, UUID toWalletId, Money amount) {
+        return operation + ':' + walletId + ':' + toWalletId + ':' + amount.minorUnits();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.example.wattet.dto;
+
+import com.example.wattet.model.Money;
+
+import java.time.LocalDateTime;
+
+/**
+ * Signed effect of one transaction on a single wallet's balance.
+ */
+public record BalanceMovement(LocalDateTime timestamp, Money delta) {
+
+    /**
+     * Target of the JPQL constructor expression, which yields the amount column as minor units.
+     */
+    public BalanceMovement(LocalDateTime timestamp, Long delta) {
+        this(timestamp, Money.ofMinor(delta));
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.wattet.dto;
+
+import com.example.wattet.model.Money;
+
+/**
+ * A wallet balance together with the row version it was read at.
+ */
+public record BalanceSnapshot(Money balance, Long version) {
+
+    /**
+     * Target of the JPQL constructor expression, which yields the balance column as minor units.
+     */
+    public BalanceSnapshot(Long balance, Long version) {
+        this(Money.ofMinor(balance), version);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.wattet.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Payload of a {@code balance} server-sent event.
+ */
+public record BalanceUpdate(UUID walletId, BigDecimal balance) {
+}
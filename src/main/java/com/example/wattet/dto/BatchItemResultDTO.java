@@ -0,0 +1,8 @@
+package com.example.wattet.dto;
+
+/**
+ * Outcome of the operation at {@code index} in the request. {@code transaction} is only set when
+ * it was applied, {@code error} only when it failed.
+ */
+public record BatchItemResultDTO(int index, BatchItemStatus status, TransactionDTO transaction, String error) {
+}
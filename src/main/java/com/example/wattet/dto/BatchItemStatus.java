@@ -0,0 +1,10 @@
+package com.example.wattet.dto;
+
+public enum BatchItemStatus {
+    APPLIED,
+    FAILED,
+    /**
+     * Valid on its own, but not applied because another operation of an all-or-nothing batch failed.
+     */
+    NOT_APPLIED
+}
@@ -0,0 +1,12 @@
+package com.example.wattet.dto;
+
+public enum BatchMode {
+    /**
+     * Nothing is applied unless every operation succeeds.
+     */
+    ALL_OR_NOTHING,
+    /**
+     * Operations that fail are skipped, the rest are applied.
+     */
+    BEST_EFFORT
+}
@@ -0,0 +1,12 @@
+package com.example.wattet.dto;
+
+import com.example.wattet.model.TransactionType;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * One movement in a batch. {@code toWalletId} is only used by transfers.
+ */
+public record BatchOperationDTO(TransactionType type, UUID walletId, UUID toWalletId, BigDecimal amount) {
+}
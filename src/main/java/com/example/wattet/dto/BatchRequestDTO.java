@@ -0,0 +1,6 @@
+package com.example.wattet.dto;
+
+import java.util.List;
+
+public record BatchRequestDTO(BatchMode mode, List<BatchOperationDTO> operations) {
+}
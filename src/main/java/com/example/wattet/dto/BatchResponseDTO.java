@@ -0,0 +1,6 @@
+package com.example.wattet.dto;
+
+import java.util.List;
+
+public record BatchResponseDTO(BatchMode mode, int applied, int failed, List<BatchItemResultDTO> results) {
+}
@@ -0,0 +1,13 @@
+package com.example.wattet.dto;
+
+public enum ProvisioningStatus {
+    CREATED,
+    /**
+     * The account already had a wallet, or appeared earlier in the same input; its wallet id is reported.
+     */
+    EXISTING,
+    /**
+     * The line is not an account id.
+     */
+    INVALID
+}
@@ -0,0 +1,11 @@
+package com.example.wattet.dto;
+
+/**
+ * Totals of one bulk provisioning run; blank lines are not counted.
+ */
+public record ProvisioningSummary(long created, long existing, long invalid) {
+
+    public long total() {
+        return created + existing + invalid;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.wattet.dto;
+
+import java.util.List;
+
+/**
+ * One page of transaction history, newest first. {@code nextCursor} is null on the last page.
+ */
+public record TransactionPageDTO(List<TransactionDTO> items, String nextCursor) {
+}
@@ -0,0 +1,23 @@
+package com.example.wattet.dto;
+
+import com.example.wattet.model.Money;
+import com.example.wattet.model.TransactionType;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The columns of a transaction that {@link TransactionDTO} needs, read without loading the entity
+ * or its wallets. The wallet ids come from the foreign key columns, so no join is needed.
+ */
+public record TransactionRow(UUID id, UUID walletId, TransactionType type, Money amount,
+                             LocalDateTime timestamp, UUID relatedWalletId) {
+
+    /**
+     * Target of the JPQL constructor expression, which yields the amount column as minor units.
+     */
+    public TransactionRow(UUID id, UUID walletId, TransactionType type, Long amount,
+                          LocalDateTime timestamp, UUID relatedWalletId) {
+        this(id, walletId, type, amount == null ? null : Money.ofMinor(amount), timestamp, relatedWalletId);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.wattet.event;
+
+import com.example.wattet.model.Wallet;
+
+import java.util.UUID;
+
+/**
+ * Published inside the transaction that changed a wallet's balance; listeners should use
+ * {@code @TransactionalEventListener} so they only see committed changes.
+ *
+ * @param wallet the managed entity when the write path loaded it, otherwise null (the balance was
+ *               changed by a bulk UPDATE). By the time an after-commit listener runs its balance
+ *               and version are the committed ones.
+ */
+public record BalanceChangedEvent(UUID walletId, Wallet wallet) {
+}
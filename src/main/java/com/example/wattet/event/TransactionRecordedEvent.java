@@ -0,0 +1,21 @@
+package com.example.wattet.event;
+
+import com.example.wattet.model.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A committed movement as the outbox relay delivers it, in process through {@code @EventListener}
+ * or serialized to a file or webhook. Delivery is at least once: consumers drop events whose
+ * {@code sequence} they have already seen, by remembering the sequences themselves rather than the
+ * highest one. Events of one wallet arrive in increasing sequence order only while its writes lock
+ * the wallet row. Striped wallets, aggregated deposits and SHARDED transfers between shards take no
+ * such lock, so their events can arrive out of order.
+ *
+ * @param sequence outbox id, unique per event; a transfer counts for both of its wallets
+ */
+public record TransactionRecordedEvent(long sequence, UUID transactionId, UUID walletId, TransactionType type,
+                                       BigDecimal amount, LocalDateTime timestamp, UUID relatedWalletId) {
+}
@@ -0,0 +1,7 @@
+package com.example.wattet.exception;
+
+public class AmountOverflowException extends RuntimeException {
+    public AmountOverflowException(String message) {
+        super(message);
+    }
+}
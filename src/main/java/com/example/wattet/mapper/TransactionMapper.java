@@ -0,0 +1,44 @@
+package com.example.wattet.mapper;
+
+import com.example.wattet.dto.TransactionDTO;
+import com.example.wattet.dto.TransactionRow;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.Wallet;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Hand-written replacement for the reflective ModelMapper conversion used on the hot endpoints.
+ * Produces exactly what ModelMapper produced: the associated wallets collapse to their ids and a
+ * missing amount maps to 0.
+ */
+@Component
+public class TransactionMapper {
+
+    public TransactionDTO toDto(Transaction transaction) {
+        return new TransactionDTO(
+                transaction.getId(),
+                idOf(transaction.getWallet()),
+                transaction.getType(),
+                Money.ofMinor(transaction.getAmount()).toDouble(),
+                transaction.getTimestamp(),
+                idOf(transaction.getRelatedWallet()));
+    }
+
+    public TransactionDTO toDto(TransactionRow row) {
+        return new TransactionDTO(
+                row.id(),
+                row.walletId(),
+                row.type(),
+                row.amount() == null ? 0 : row.amount().toDouble(),
+                row.timestamp(),
+                row.relatedWalletId());
+    }
+
+    // getId() on an uninitialised Hibernate proxy does not hit the database
+    private static UUID idOf(Wallet wallet) {
+        return wallet == null ? null : wallet.getId();
+    }
+}
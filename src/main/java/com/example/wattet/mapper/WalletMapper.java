@@ -0,0 +1,13 @@
+package com.example.wattet.mapper;
+
+import com.example.wattet.dto.WalletResponseDTO;
+import com.example.wattet.model.Wallet;
+import org.springframework.stereotype.Component;
+
+@Component
+public class WalletMapper {
+
+    public WalletResponseDTO toResponse(Wallet wallet) {
+        return new WalletResponseDTO(wallet.getId());
+    }
+}
@@ -1,21 +1,31 @@
 package com.example.wattet.model;
 
 import jakarta.persistence.*;
+import lombok.Data;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+/**
+ * Balance checkpoint: the wallet balance right after every transaction with a timestamp up to
+ * and including {@link #timestamp} was applied.
+ */
+@Data
 @Entity
-@Table(name = "balance_history")
+@Table(name = "balance_history", indexes = {
+        @Index(name = "idx_balance_history_wallet_timestamp", columnList = "wallet_id, timestamp")
+})
 public class BalanceHistory {
     @Id
     @GeneratedValue
     private Long id;
 
-    @ManyToOne
-    @JoinColumn(name = "wallet_id")
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false)
     private Wallet wallet;
 
-    private BigDecimal balance;
+    @Column(nullable = false)
+    private long balance;
+
+    @Column(nullable = false)
     private LocalDateTime timestamp;
-}
\ No newline at end of file
+}
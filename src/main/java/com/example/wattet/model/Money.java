@@ -0,0 +1,157 @@
+package com.example.wattet.model;
+
+import com.example.wattet.exception.AmountOverflowException;
+import com.example.wattet.exception.InvalidAmountException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount in minor units (cents) of the wallet currency, which has {@value #SCALE} decimal places.
+ * Entities and columns hold the bare {@code long}; services wrap it for arithmetic. Every operation is
+ * exact and fails with {@link AmountOverflowException} instead of wrapping around.
+ * <p>
+ * {@link BigDecimal} only appears at the edges: the batch request body, JSON balances and events.
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+
+    public static final Money ZERO = new Money(0);
+
+    private static final int FACTOR = 100;
+
+    private static final long EXACT_DOUBLE = 1L << 53;
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * @throws InvalidAmountException when {@code amount} has non-zero digits below the currency scale
+     */
+    public static Money of(BigDecimal amount) {
+        BigDecimal scaled;
+        try {
+            scaled = amount.setScale(SCALE, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException ex) {
+            throw new InvalidAmountException("Amount must have at most " + SCALE + " decimal places");
+        }
+        try {
+            return ofMinor(scaled.unscaledValue().longValueExact());
+        } catch (ArithmeticException ex) {
+            throw new AmountOverflowException("Amount out of range: " + amount.toPlainString());
+        }
+    }
+
+    /**
+     * Parses a plain decimal such as {@code 10}, {@code -3.5} or {@code 0.25} without going through
+     * {@link BigDecimal}. Exponents, grouping and non-zero digits below the currency scale are rejected.
+     *
+     * @throws InvalidAmountException when {@code text} is not such a decimal
+     */
+    public static Money parse(String text) {
+        if (text == null || text.isEmpty()) {
+            throw new InvalidAmountException("Amount cannot be empty");
+        }
+        int length = text.length();
+        int i = 0;
+        boolean negative = text.charAt(0) == '-';
+        if (negative || text.charAt(0) == '+') {
+            i++;
+        }
+        long units = 0;
+        int wholeDigits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        try {
+            for (; i < length; i++) {
+                char c = text.charAt(i);
+                if (c == '.' && !point) {
+                    point = true;
+                } else if (c < '0' || c > '9') {
+                    throw new InvalidAmountException("Invalid amount: " + text);
+                } else if (!point) {
+                    units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+                    wholeDigits++;
+                } else if (fractionDigits < SCALE) {
+                    units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+                    fractionDigits++;
+                } else if (c != '0') {
+                    throw new InvalidAmountException("Amount must have at most " + SCALE + " decimal places");
+                }
+            }
+            if (wholeDigits == 0 && fractionDigits == 0) {
+                throw new InvalidAmountException("Invalid amount: " + text);
+            }
+            for (; fractionDigits < SCALE; fractionDigits++) {
+                units = Math.multiplyExact(units, 10);
+            }
+        } catch (ArithmeticException ex) {
+            throw new AmountOverflowException("Amount out of range: " + text);
+        }
+        return ofMinor(negative ? -units : units);
+    }
+
+    public Money plus(Money other) {
+        try {
+            return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+        } catch (ArithmeticException ex) {
+            throw new AmountOverflowException("Amount out of range: " + this + " + " + other);
+        }
+    }
+
+    public Money minus(Money other) {
+        try {
+            return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+        } catch (ArithmeticException ex) {
+            throw new AmountOverflowException("Amount out of range: " + this + " - " + other);
+        }
+    }
+
+    public Money negate() {
+        try {
+            return ofMinor(Math.negateExact(minorUnits));
+        } catch (ArithmeticException ex) {
+            throw new AmountOverflowException("Amount out of range: -" + this);
+        }
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Same value as {@code toBigDecimal().doubleValue()}. Below 2^53 minor units both operands are
+     * exact doubles, so the division rounds the exact quotient once, as BigDecimal does.
+     */
+    public double toDouble() {
+        if (Math.abs(minorUnits) <= EXACT_DOUBLE) {
+            return minorUnits / (double) FACTOR;
+        }
+        return toBigDecimal().doubleValue();
+    }
+
+    /**
+     * Plain decimal with exactly {@value #SCALE} decimal places, e.g. {@code -3.50}.
+     */
+    @Override
+    public String toString() {
+        long whole = Math.abs(minorUnits / FACTOR);
+        long cents = Math.abs(minorUnits % FACTOR);
+        return (minorUnits < 0 ? "-" : "") + whole + (cents < 10 ? ".0" : ".") + cents;
+    }
+}
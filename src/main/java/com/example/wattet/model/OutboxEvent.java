@@ -0,0 +1,49 @@
+package com.example.wattet.model;
+
+import com.example.wattet.event.TransactionRecordedEvent;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A {@link Transaction} that has not been handed to the outbox sink yet. Written in the transaction
+ * that records the movement and deleted by the relay once the sink accepted it. Wallet ids are plain
+ * columns so the relay never joins back to the wallet or transaction tables.
+ */
+@Data
+@Entity
+@Table(name = "transaction_outbox")
+public class OutboxEvent {
+    /**
+     * Unpooled so ids follow insertion order across nodes; see V4__transaction_outbox.sql.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_outbox_seq")
+    @SequenceGenerator(name = "transaction_outbox_seq", sequenceName = "transaction_outbox_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "transaction_id", nullable = false)
+    private UUID transactionId;
+
+    @Column(name = "wallet_id", nullable = false)
+    private UUID walletId;
+
+    @Column(name = "related_wallet_id")
+    private UUID relatedWalletId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TransactionType type;
+
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+
+    public TransactionRecordedEvent toEvent() {
+        return new TransactionRecordedEvent(id, transactionId, walletId, type, Money.ofMinor(amount).toBigDecimal(), occurredAt, relatedWalletId);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.wattet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A deposit whose {@link Transaction} is committed but whose amount has not been added to the
+ * wallet row yet. The wallet's balance is its {@code balance} column plus its pending deposits,
+ * until the aggregator moves them into the row and deletes them in one transaction.
+ */
+@Data
+@Entity
+@Table(name = "pending_deposit", indexes = {
+        @Index(name = "idx_pending_deposit_wallet", columnList = "wallet_id")
+})
+public class PendingDeposit {
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false)
+    private Wallet wallet;
+
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
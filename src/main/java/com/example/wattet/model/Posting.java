@@ -0,0 +1,49 @@
+package com.example.wattet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One leg of a movement in the append-only ledger used by {@code ConcurrencyMode.LEDGER}: a deposit
+ * or withdrawal has one posting, a transfer a debit on the source and a credit on the target.
+ * {@link #seq} numbers a wallet's postings without gaps and {@link #balance} is the running total
+ * after this posting, so the latest posting is the current balance. Rows are never updated.
+ */
+@Data
+@Entity
+@Table(name = "posting", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_posting_wallet_seq", columnNames = {"wallet_id", "seq"})
+}, indexes = {
+        @Index(name = "idx_posting_wallet_timestamp_seq", columnList = "wallet_id, timestamp, seq")
+})
+public class Posting {
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false)
+    private Wallet wallet;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id", nullable = false)
+    private Transaction transaction;
+
+    @Column(nullable = false)
+    private long seq;
+
+    /**
+     * Signed: positive credits, negative debits.
+     */
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(nullable = false)
+    private long balance;
+
+    @Column(nullable = false)
+    private LocalDateTime timestamp;
+}
@@ -3,28 +3,34 @@ package com.example.wattet.model;
 import jakarta.persistence.*;
 import lombok.Data;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Data
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_transaction_wallet_history", columnList = "wallet_id, timestamp, id"),
+        @Index(name = "idx_transaction_related_wallet_timestamp", columnList = "related_wallet_id, timestamp")
+})
 public class Transaction {
     @Id
-    @GeneratedValue
+    @TimeOrderedId
     private UUID id;
 
     @Enumerated(EnumType.STRING)
     private TransactionType type;
 
-    private BigDecimal amount;
+    /**
+     * In minor units; see {@link Money}.
+     */
+    private long amount;
     private LocalDateTime timestamp;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "wallet_id")
     private Wallet wallet;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "related_wallet_id")
     private Wallet relatedWallet;
 
@@ -2,24 +2,31 @@ package com.example.wattet.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
-import org.hibernate.annotations.UuidGenerator;
+import org.hibernate.annotations.ColumnDefault;
 
-import java.math.BigDecimal;
 import java.util.UUID;
 
 @Data
 @Entity
 @Table(name = "wallet", uniqueConstraints = {
-        @UniqueConstraint(columnNames = {"account_id"})
+        @UniqueConstraint(name = "uk_wallet_account_id", columnNames = {"account_id"})
 })
 public class Wallet {
     @Id
-    @UuidGenerator
+    @TimeOrderedId
     private UUID id;
 
     @Column(name = "account_id", nullable = false)
     private UUID accountId;
 
-    @Column(precision = 19, scale = 2, nullable = false)
-    private BigDecimal balance;
+    /**
+     * In minor units; see {@link Money}.
+     */
+    @Column(nullable = false)
+    private long balance;
+
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
 }
@@ -0,0 +1,30 @@
+package com.example.wattet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+
+/**
+ * One of the sub-balances of a striped (hot) wallet. The wallet's balance is its own
+ * {@code balance} column plus the sum of its stripes.
+ */
+@Data
+@Entity
+@Table(name = "wallet_stripe", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_wallet_stripe", columnNames = {"wallet_id", "stripe"})
+})
+public class WalletStripe {
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false)
+    private Wallet wallet;
+
+    @Column(nullable = false)
+    private int stripe;
+
+    @Column(nullable = false)
+    private long balance;
+}
@@ -0,0 +1,21 @@
+package com.example.wattet.repository;
+
+import com.example.wattet.model.BalanceHistory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface BalanceHistoryRepository extends JpaRepository<BalanceHistory, Long> {
+    Optional<BalanceHistory> findFirstByWalletIdAndTimestampLessThanEqualOrderByTimestampDesc(UUID walletId, LocalDateTime timestamp);
+
+    @Modifying
+    @Query("delete from BalanceHistory b where b.wallet.id = :walletId")
+    int deleteByWalletId(@Param("walletId") UUID walletId);
+}
@@ -0,0 +1,27 @@
+package com.example.wattet.repository;
+
+import com.example.wattet.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Claims the oldest events with NOWAIT (lock timeout 0 in Hibernate) rather than SKIP LOCKED: a
+ * relay that skipped another's batch could deliver a wallet's later events before its earlier
+ * ones. The relay that loses the race fails fast and leaves the next run to pick up.
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "0"))
+    @Query("select o from OutboxEvent o order by o.id")
+    List<OutboxEvent> claim(Pageable pageable);
+}
@@ -0,0 +1,39 @@
+package com.example.wattet.repository;
+
+import com.example.wattet.model.PendingDeposit;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A transaction locks pending rows only while it holds their wallet's row lock, taken first. Locking
+ * them therefore waits at most for a transaction that is about to apply them, and a lock acquired
+ * after that one committed no longer returns the rows it deleted, so no deposit is applied twice.
+ */
+@Repository
+public interface PendingDepositRepository extends JpaRepository<PendingDeposit, Long> {
+
+    /**
+     * Wallets of the oldest pending deposits, one entry per deposit; reads without locking.
+     */
+    @Query("select p.wallet.id from PendingDeposit p order by p.id")
+    List<UUID> findOldestWalletIds(Pageable pageable);
+
+    boolean existsByWalletIdIn(Collection<UUID> walletIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from PendingDeposit p where p.wallet.id = :walletId")
+    List<PendingDeposit> lockByWalletId(@Param("walletId") UUID walletId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from PendingDeposit p where p.wallet.id in :walletIds")
+    List<PendingDeposit> lockByWalletIds(@Param("walletIds") Collection<UUID> walletIds);
+}
@@ -0,0 +1,18 @@
+package com.example.wattet.repository;
+
+import com.example.wattet.model.Posting;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface PostingRepository extends JpaRepository<Posting, UUID> {
+
+    Optional<Posting> findFirstByWalletIdOrderBySeqDesc(UUID walletId);
+
+    Optional<Posting> findFirstByWalletIdAndTimestampLessThanEqualOrderByTimestampDescSeqDesc(UUID walletId,
+                                                                                               LocalDateTime timestamp);
+}
@@ -1,16 +1,104 @@
 package com.example.wattet.repository;
 
+import com.example.wattet.dto.BalanceMovement;
+import com.example.wattet.dto.TransactionRow;
 import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, UUID> {
     List<Transaction> findByWalletId(UUID walletId);
 
     List<Transaction> findByWalletIdAndTimestampLessThanEqual(UUID walletId, LocalDateTime timestamp);
-}
\ No newline at end of file
+
+    /**
+     * Net change of the wallet balance over {@code (from, to]} in minor units, counting incoming transfers as credits.
+     * A null {@code from} starts at the wallet's first transaction.
+     */
+    @Query("""
+            select coalesce(sum(case
+                    when t.relatedWallet.id = :walletId then t.amount
+                    when t.type = com.example.wattet.model.TransactionType.DEPOSIT then t.amount
+                    else -t.amount end), 0L)
+            from Transaction t
+            where (t.wallet.id = :walletId or t.relatedWallet.id = :walletId)
+              and (:from is null or t.timestamp > :from)
+              and t.timestamp <= :to
+            """)
+    long sumBalanceDelta(@Param("walletId") UUID walletId,
+                         @Param("from") LocalDateTime from,
+                         @Param("to") LocalDateTime to);
+
+    /**
+     * Every movement on the wallet in timestamp order, the order {@link #sumBalanceDelta} ranges
+     * over, projected to the signed delta only so the caller can replay full histories without
+     * growing the persistence context. Within one timestamp the time-ordered id keeps movements in
+     * insert order. This is not commit order: a transaction stamped earlier can commit later, so a
+     * replay sees only what had committed when it ran.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+            select new com.example.wattet.dto.BalanceMovement(t.timestamp, case
+                    when t.relatedWallet.id = :walletId then t.amount
+                    when t.type = com.example.wattet.model.TransactionType.DEPOSIT then t.amount
+                    else -t.amount end)
+            from Transaction t
+            where t.wallet.id = :walletId or t.relatedWallet.id = :walletId
+            order by t.timestamp, t.id
+            """)
+    Stream<BalanceMovement> streamBalanceMovements(@Param("walletId") UUID walletId);
+
+    /**
+     * Keyset page of the wallet's history, newest first. Rows strictly after the cursor position
+     * are returned; a null {@code cursorTimestamp} starts from the newest row.
+     */
+    @Query("""
+            select new com.example.wattet.dto.TransactionRow(t.id, t.wallet.id, t.type, t.amount, t.timestamp,
+                    t.relatedWallet.id)
+            from Transaction t
+            where t.wallet.id = :walletId
+              and (:type is null or t.type = :type)
+              and (:from is null or t.timestamp >= :from)
+              and (:to is null or t.timestamp < :to)
+              and (:cursorTimestamp is null
+                   or t.timestamp < :cursorTimestamp
+                   or (t.timestamp = :cursorTimestamp and t.id < :cursorId))
+            order by t.timestamp desc, t.id desc
+            """)
+    List<TransactionRow> findHistoryPage(@Param("walletId") UUID walletId,
+                                         @Param("type") TransactionType type,
+                                         @Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to,
+                                         @Param("cursorTimestamp") LocalDateTime cursorTimestamp,
+                                         @Param("cursorId") UUID cursorId,
+                                         Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+            select new com.example.wattet.dto.TransactionRow(t.id, t.wallet.id, t.type, t.amount, t.timestamp,
+                    t.relatedWallet.id)
+            from Transaction t
+            where t.wallet.id = :walletId
+              and (:type is null or t.type = :type)
+              and (:from is null or t.timestamp >= :from)
+              and (:to is null or t.timestamp < :to)
+            order by t.timestamp, t.id
+            """)
+    Stream<TransactionRow> streamHistory(@Param("walletId") UUID walletId,
+                                         @Param("type") TransactionType type,
+                                         @Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to);
+}
@@ -1,13 +1,82 @@
 package com.example.wattet.repository;
 
+import com.example.wattet.dto.BalanceSnapshot;
 import com.example.wattet.model.Wallet;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface WalletRepository extends JpaRepository<Wallet, UUID> {
     Optional<Wallet> findByAccountId(UUID accountId);
+
+    /**
+     * Balance including deposits not yet flushed into the row, so a client reads its own deposits.
+     */
+    @Query("select new com.example.wattet.dto.BalanceSnapshot("
+            + "w.balance + coalesce((select sum(p.amount) from PendingDeposit p where p.wallet.id = w.id), 0L), w.version)"
+            + " from Wallet w where w.id = :id")
+    Optional<BalanceSnapshot> findBalanceSnapshotById(@Param("id") UUID id);
+
+    /**
+     * Total balance in minor units, including the stripes of a striped wallet and pending deposits,
+     * read in one statement; null when the wallet does not exist.
+     */
+    @Query("select w.balance + coalesce((select sum(s.balance) from WalletStripe s where s.wallet.id = w.id), 0L)"
+            + " + coalesce((select sum(p.amount) from PendingDeposit p where p.wallet.id = w.id), 0L)"
+            + " from Wallet w where w.id = :id")
+    Long findBalanceById(@Param("id") UUID id);
+
+    @Query("select w.id from Wallet w where (:after is null or w.id > :after) order by w.id")
+    List<UUID> findIdsAfter(@Param("after") UUID after, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select w from Wallet w where w.id = :id")
+    Optional<Wallet> findByIdForUpdate(@Param("id") UUID id);
+
+    /**
+     * Locks every listed wallet in id order, the same order single-wallet paths use.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select w from Wallet w where w.id in :ids order by w.id")
+    List<Wallet> findAllByIdForUpdate(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Locks the listed wallets no other transaction holds, in id order, and skips the rest
+     * (SKIP LOCKED, lock timeout -2 in Hibernate).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select w from Wallet w where w.id in :ids order by w.id")
+    List<Wallet> lockAvailableByIds(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Adds {@code amount} minor units to the balance in a single statement.
+     *
+     * @return 1 when the wallet exists, 0 otherwise
+     */
+    @Modifying
+    @Query("update Wallet w set w.balance = w.balance + :amount, w.version = w.version + 1 where w.id = :id")
+    int credit(@Param("id") UUID id, @Param("amount") long amount);
+
+    /**
+     * Subtracts {@code amount} from the balance only if it stays non-negative.
+     *
+     * @return 1 on success, 0 when the wallet is missing or the balance is too low
+     */
+    @Modifying
+    @Query("update Wallet w set w.balance = w.balance - :amount, w.version = w.version + 1 where w.id = :id and w.balance >= :amount")
+    int debit(@Param("id") UUID id, @Param("amount") long amount);
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.example.wattet.repository;
+
+import com.example.wattet.model.WalletStripe;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface WalletStripeRepository extends JpaRepository<WalletStripe, Long> {
+
+    @Query("select s.stripe from WalletStripe s where s.wallet.id = :walletId")
+    List<Integer> findStripeNumbers(@Param("walletId") UUID walletId);
+
+    @Query("select distinct s.wallet.id from WalletStripe s where s.balance <> 0")
+    List<UUID> findWalletIdsWithStripeBalance();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from WalletStripe s where s.wallet.id = :walletId order by s.stripe")
+    List<WalletStripe> findAllByWalletIdForUpdate(@Param("walletId") UUID walletId);
+
+    /**
+     * @return 1 when the stripe exists, 0 otherwise
+     */
+    @Modifying
+    @Query("update WalletStripe s set s.balance = s.balance + :amount where s.wallet.id = :walletId and s.stripe = :stripe")
+    int credit(@Param("walletId") UUID walletId, @Param("stripe") int stripe, @Param("amount") long amount);
+
+    /**
+     * @return 1 when the stripe exists and holds at least {@code amount}, 0 otherwise
+     */
+    @Modifying
+    @Query("update WalletStripe s set s.balance = s.balance - :amount"
+            + " where s.wallet.id = :walletId and s.stripe = :stripe and s.balance >= :amount")
+    int debit(@Param("walletId") UUID walletId, @Param("stripe") int stripe, @Param("amount") long amount);
+}
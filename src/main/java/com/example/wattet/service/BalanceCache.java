@@ -0,0 +1,122 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ReadConsistency;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.BalanceSnapshot;
+import com.example.wattet.event.BalanceChangedEvent;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Wallet;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Local read-through cache of wallet balances. Writes on this node update it after commit only,
+ * and an entry is never replaced by an older row version, so a slow reader cannot overwrite a newer
+ * write. Writes that did not load the wallet leave a tombstone instead, and a load that started
+ * before the tombstone is returned to its caller but not cached. Neither is a load the replica
+ * answered: it may predate a write this node already applied, and the entry would outlive the
+ * replica's staleness bound. Writes made by other nodes are only picked up when the entry expires,
+ * which is what {@code wallet.balance-cache.ttl} bounds.
+ */
+@Component
+public class BalanceCache {
+
+    private final Cache<UUID, Entry> cache;
+    private final StatsCounter stats = new ConcurrentStatsCounter();
+    private final AtomicLong stamps = new AtomicLong();
+    private final boolean enabled;
+
+    public BalanceCache(WalletProperties properties, MeterRegistry meterRegistry) {
+        WalletProperties.BalanceCache config = properties.getBalanceCache();
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getTtl())
+                .recordStats(() -> stats)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "wallet.balance");
+    }
+
+    public BalanceSnapshot get(UUID walletId, Function<UUID, BalanceSnapshot> loader) {
+        if (!enabled) {
+            return loader.apply(walletId);
+        }
+        // Map reads record no stats, so a tombstone is counted as the miss it is
+        Entry cached = cache.asMap().get(walletId);
+        if (cached != null && cached.snapshot() != null) {
+            stats.recordHits(1);
+            return cached.snapshot();
+        }
+        stats.recordMisses(1);
+        // Loaded outside the map: Cache.get would run the query inside a synchronized bin lock,
+        // pinning virtual threads. The placeholder marks when the load started, so a change
+        // committed while it runs replaces it with a later stamp and keeps the result out
+        long started = stamps.get();
+        cache.asMap().putIfAbsent(walletId, Entry.invalidated(started));
+        ReadConsistency.takeReplicaRead();
+        BalanceSnapshot loaded = loader.apply(walletId);
+        if (ReadConsistency.takeReplicaRead()) {
+            return loaded;
+        }
+        cache.asMap().computeIfPresent(walletId, (id, current) -> current.fill(loaded, started));
+        return loaded;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        Wallet wallet = event.wallet();
+        if (wallet == null) {
+            // The row version is not bumped by stripe and pending deposit writes, so the
+            // tombstone is ordered by a local stamp instead
+            cache.put(event.walletId(), Entry.invalidated(stamps.incrementAndGet()));
+            return;
+        }
+        BalanceSnapshot committed = new BalanceSnapshot(Money.ofMinor(wallet.getBalance()), wallet.getVersion());
+        cache.asMap().merge(event.walletId(), Entry.of(committed), Entry::newest);
+    }
+
+    /**
+     * A cached balance, or with a null snapshot a slot that only a load started at or after
+     * {@code stamp} may fill.
+     */
+    private record Entry(BalanceSnapshot snapshot, long stamp) {
+
+        static Entry of(BalanceSnapshot snapshot) {
+            return new Entry(snapshot, 0);
+        }
+
+        static Entry invalidated(long stamp) {
+            return new Entry(null, stamp);
+        }
+
+        Entry fill(BalanceSnapshot loaded, long started) {
+            if (snapshot == null) {
+                return stamp <= started ? of(loaded) : this;
+            }
+            return newest(this, of(loaded));
+        }
+
+        static Entry newest(Entry cached, Entry committed) {
+            if (cached.snapshot() == null || committed.snapshot() == null) {
+                return committed;
+            }
+            Long cachedVersion = cached.snapshot().version();
+            Long committedVersion = committed.snapshot().version();
+            if (cachedVersion == null || committedVersion == null) {
+                return committed;
+            }
+            return committedVersion >= cachedVersion ? committed : cached;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.BalanceMovement;
+import com.example.wattet.model.Money;
+import com.example.wattet.repository.BalanceHistoryRepository;
+import com.example.wattet.repository.TransactionRepository;
+import com.example.wattet.repository.WalletRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds balance checkpoints for wallets whose history predates incremental checkpointing.
+ * Each wallet is replayed from zero in its own transaction, streaming its movements so memory
+ * stays flat regardless of history length. Enabled with {@code wallet.checkpoint.backfill-on-startup}.
+ */
+@Component
+@Slf4j
+public class BalanceCheckpointBackfillJob implements ApplicationRunner {
+
+    private static final int FLUSH_EVERY = 100;
+
+    private final WalletRepository walletRepository;
+    private final TransactionRepository transactionRepository;
+    private final BalanceHistoryRepository balanceHistoryRepository;
+    private final BalanceCheckpointService balanceCheckpointService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletProperties properties;
+
+    public BalanceCheckpointBackfillJob(WalletRepository walletRepository,
+                                        TransactionRepository transactionRepository,
+                                        BalanceHistoryRepository balanceHistoryRepository,
+                                        BalanceCheckpointService balanceCheckpointService,
+                                        EntityManager entityManager,
+                                        PlatformTransactionManager transactionManager,
+                                        WalletProperties properties) {
+        this.walletRepository = walletRepository;
+        this.transactionRepository = transactionRepository;
+        this.balanceHistoryRepository = balanceHistoryRepository;
+        this.balanceCheckpointService = balanceCheckpointService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (properties.getCheckpoint().isBackfillOnStartup()) {
+            backfill();
+        }
+    }
+
+    public void backfill() {
+        int pageSize = properties.getCheckpoint().getBackfillPageSize();
+        UUID after = null;
+        long wallets = 0;
+        List<UUID> page;
+        do {
+            page = walletRepository.findIdsAfter(after, PageRequest.of(0, pageSize));
+            for (UUID walletId : page) {
+                transactionTemplate.executeWithoutResult(status -> backfillWallet(walletId));
+                wallets++;
+            }
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1);
+                log.info("Balance checkpoint backfill: {} wallets processed", wallets);
+            }
+        } while (page.size() == pageSize);
+    }
+
+    private void backfillWallet(UUID walletId) {
+        int interval = Math.max(1, properties.getCheckpoint().getInterval());
+        balanceHistoryRepository.deleteByWalletId(walletId);
+
+        Money balance = Money.ZERO;
+        long count = 0;
+        long written = 0;
+        boolean due = false;
+        LocalDateTime timestamp = null;
+        try (Stream<BalanceMovement> movements = transactionRepository.streamBalanceMovements(walletId)) {
+            Iterator<BalanceMovement> iterator = movements.iterator();
+            while (iterator.hasNext()) {
+                BalanceMovement movement = iterator.next();
+                // balanceAt adds everything after a checkpoint's timestamp, so a checkpoint must
+                // cover every movement sharing that timestamp
+                if (due && !movement.timestamp().equals(timestamp)) {
+                    written = save(walletId, balance, timestamp, written);
+                    due = false;
+                }
+                balance = balance.plus(movement.delta());
+                timestamp = movement.timestamp();
+                due |= ++count % interval == 0;
+            }
+        }
+        if (due) {
+            save(walletId, balance, timestamp, written);
+        }
+    }
+
+    private long save(UUID walletId, Money balance, LocalDateTime timestamp, long written) {
+        balanceCheckpointService.saveCheckpoint(walletId, balance, timestamp);
+        if (++written % FLUSH_EVERY == 0) {
+            entityManager.flush();
+            entityManager.clear();
+        }
+        return written;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.model.BalanceHistory;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.repository.BalanceHistoryRepository;
+import com.example.wattet.repository.TransactionRepository;
+import com.example.wattet.repository.WalletRepository;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Maintains {@link BalanceHistory} checkpoints so that a historical balance is the nearest
+ * checkpoint plus the transactions recorded after it, rather than a replay of the whole history.
+ */
+@Service
+public class BalanceCheckpointService {
+
+    private final BalanceHistoryRepository balanceHistoryRepository;
+    private final TransactionRepository transactionRepository;
+    private final WalletRepository walletRepository;
+    private final StripedBalanceService stripedBalanceService;
+    private final DepositAggregator depositAggregator;
+    private final WalletProperties properties;
+
+    public BalanceCheckpointService(BalanceHistoryRepository balanceHistoryRepository,
+                                    TransactionRepository transactionRepository,
+                                    WalletRepository walletRepository,
+                                    StripedBalanceService stripedBalanceService,
+                                    DepositAggregator depositAggregator,
+                                    WalletProperties properties) {
+        this.balanceHistoryRepository = balanceHistoryRepository;
+        this.transactionRepository = transactionRepository;
+        this.walletRepository = walletRepository;
+        this.stripedBalanceService = stripedBalanceService;
+        this.depositAggregator = depositAggregator;
+        this.properties = properties;
+    }
+
+    public Money balanceAt(UUID walletId, LocalDateTime timestamp) {
+        Optional<BalanceHistory> checkpoint = balanceHistoryRepository
+                .findFirstByWalletIdAndTimestampLessThanEqualOrderByTimestampDesc(walletId, timestamp);
+        Money base = checkpoint.map(history -> Money.ofMinor(history.getBalance())).orElse(Money.ZERO);
+        LocalDateTime from = checkpoint.map(BalanceHistory::getTimestamp).orElse(null);
+        return base.plus(Money.ofMinor(transactionRepository.sumBalanceDelta(walletId, from, timestamp)));
+    }
+
+    /**
+     * Called inside the transaction that recorded {@code transaction}, after the balances were
+     * changed. Ids are random, so sampling on them spaces checkpoints about one interval apart
+     * without keeping a per-wallet counter.
+     * <p>
+     * A checkpoint must include every movement with an earlier timestamp, since {@link #balanceAt}
+     * only adds the ones after it. Striped credits and pending deposits commit without the wallet
+     * row lock, so one of them can still be in flight with an earlier timestamp; those paths write
+     * no checkpoints and {@link BalanceCheckpointBackfillJob} rebuilds them from the committed
+     * history instead.
+     */
+    public void onTransactionRecorded(Transaction transaction) {
+        ConcurrencyMode mode = properties.getConcurrency().getMode();
+        if (mode == ConcurrencyMode.LEDGER) {
+            // Postings already carry the running balance, and wallet.balance is not maintained
+            return;
+        }
+        if (depositAggregator.isEnabled()) {
+            return;
+        }
+        int interval = properties.getCheckpoint().getInterval();
+        if (interval <= 0 || Math.floorMod(transaction.getId().getLeastSignificantBits(), interval) != 0) {
+            return;
+        }
+        // SHARDED folds stripes into the row before its shard writes it
+        boolean stripesLive = mode != ConcurrencyMode.SHARDED;
+        checkpoint(transaction.getWallet().getId(), transaction.getTimestamp(), stripesLive);
+        if (transaction.getRelatedWallet() != null) {
+            checkpoint(transaction.getRelatedWallet().getId(), transaction.getTimestamp(), stripesLive);
+        }
+    }
+
+    void saveCheckpoint(UUID walletId, Money balance, LocalDateTime timestamp) {
+        BalanceHistory checkpoint = new BalanceHistory();
+        checkpoint.setWallet(walletRepository.getReferenceById(walletId));
+        checkpoint.setBalance(balance.minorUnits());
+        checkpoint.setTimestamp(timestamp);
+        balanceHistoryRepository.save(checkpoint);
+    }
+
+    private void checkpoint(UUID walletId, LocalDateTime timestamp, boolean stripesLive) {
+        if (stripesLive && stripedBalanceService.isStriped(walletId)) {
+            return;
+        }
+        // Every other writer of the row holds this lock until it commits; usually this transaction
+        // already holds it
+        walletRepository.findByIdForUpdate(walletId);
+        // The query flushes pending wallet changes first, so this is the post-transaction balance
+        saveCheckpoint(walletId, Money.ofMinor(walletRepository.findBalanceById(walletId)), timestamp);
+    }
+}
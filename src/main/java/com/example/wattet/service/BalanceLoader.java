@@ -0,0 +1,51 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.BalanceSnapshot;
+import com.example.wattet.exception.WalletNotFoundException;
+import com.example.wattet.model.Money;
+import com.example.wattet.repository.WalletRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Database side of the balance reads. Kept apart from {@link WalletService} so that only a read that
+ * missed the caches opens a read-only transaction, takes a database permit and, with
+ * {@code wallet.replica}, goes to the replica.
+ */
+@Service
+public class BalanceLoader {
+
+    private final WalletRepository walletRepository;
+    private final LedgerService ledgerService;
+    private final StripedBalanceService stripedBalanceService;
+    private final WalletProperties properties;
+
+    public BalanceLoader(WalletRepository walletRepository, LedgerService ledgerService,
+                         StripedBalanceService stripedBalanceService, WalletProperties properties) {
+        this.walletRepository = walletRepository;
+        this.ledgerService = ledgerService;
+        this.stripedBalanceService = stripedBalanceService;
+        this.properties = properties;
+    }
+
+    @Transactional(readOnly = true)
+    public BalanceSnapshot load(UUID walletId) {
+        Optional<BalanceSnapshot> snapshot = properties.getConcurrency().getMode() == ConcurrencyMode.LEDGER
+                ? ledgerService.findBalance(walletId)
+                : walletRepository.findBalanceSnapshotById(walletId);
+        return snapshot.orElseThrow(() -> new WalletNotFoundException("Wallet not found: " + walletId));
+    }
+
+    /**
+     * Sum of the wallet row and its stripes, see {@link StripedBalanceService#balance}.
+     */
+    @Transactional(readOnly = true)
+    public Money loadStriped(UUID walletId) {
+        return stripedBalanceService.balance(walletId);
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ReadConsistency;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.BalanceUpdate;
+import com.example.wattet.event.BalanceChangedEvent;
+import com.example.wattet.exception.SubscriptionLimitException;
+import com.example.wattet.exception.WalletNotFoundException;
+import com.example.wattet.model.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes balance changes to server-sent event subscribers. An idle stream holds no thread, only its
+ * emitter. After a commit the wallet is marked dirty; one dispatcher reads each dirty wallet's
+ * balance once, however many changes and subscribers it has, and queues the result on every
+ * subscriber, whose sends run on the task executor. A subscriber that falls behind has its queue
+ * collapsed to the newest balance instead of growing without bound.
+ * <p>
+ * Commits on this node are pushed right away; those made on other nodes show up on the next
+ * refresh, which reads watched wallets through the balance cache.
+ */
+@Service
+@Slf4j
+public class BalanceStreamService {
+
+    private static final String HEARTBEAT = "keepalive";
+
+    private final WalletService walletService;
+    private final Executor executor;
+    private final WalletProperties properties;
+    private final Counter coalesced;
+
+    private final ConcurrentMap<UUID, Topic> topics = new ConcurrentHashMap<>();
+    /**
+     * Wallets waiting for the dispatcher, mapped to whether the read must skip the cache.
+     */
+    private final ConcurrentMap<UUID, Boolean> dirty = new ConcurrentHashMap<>();
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    public BalanceStreamService(WalletService walletService, @Qualifier("applicationTaskExecutor") Executor executor,
+                                WalletProperties properties, MeterRegistry meterRegistry) {
+        this.walletService = walletService;
+        this.executor = executor;
+        this.properties = properties;
+        this.coalesced = meterRegistry.counter("wallet.balance-stream.coalesced");
+        Gauge.builder("wallet.balance-stream.subscribers", subscribers, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream that starts with the current balance.
+     */
+    public SseEmitter subscribe(UUID walletId) {
+        return subscribe(walletId, new SseEmitter(properties.getBalanceStream().getTimeout().toMillis()));
+    }
+
+    SseEmitter subscribe(UUID walletId, SseEmitter emitter) {
+        Money current = walletService.getBalance(walletId, false);
+        if (subscribers.incrementAndGet() > properties.getBalanceStream().getMaxSubscribers()) {
+            subscribers.decrementAndGet();
+            throw new SubscriptionLimitException("Too many balance streams open, retry later");
+        }
+        Subscriber subscriber = new Subscriber(walletId, emitter);
+        Topic joined = topics.compute(walletId, (id, topic) -> {
+            Topic watched = topic == null ? new Topic(current) : topic;
+            watched.subscribers.add(subscriber);
+            return watched;
+        });
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(ex -> subscriber.close());
+        // An already watched wallet may have been pushed a fresher balance than the cache returned
+        subscriber.offer(new BalanceUpdate(walletId, joined.last.toBigDecimal()));
+        return emitter;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        if (topics.containsKey(event.walletId())) {
+            markDirty(event.walletId(), true);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.balance-stream.refresh-interval:PT5S}")
+    public void refresh() {
+        topics.keySet().forEach(walletId -> markDirty(walletId, false));
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.balance-stream.heartbeat-interval:PT30S}")
+    public void heartbeat() {
+        // Also how closed connections are found: the write fails and the subscriber is dropped
+        topics.values().forEach(topic -> topic.subscribers.forEach(Subscriber::heartbeat));
+    }
+
+    private void markDirty(UUID walletId, boolean strict) {
+        dirty.merge(walletId, strict, Boolean::logicalOr);
+        if (dispatching.compareAndSet(false, true)) {
+            executor.execute(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        do {
+            try {
+                for (UUID walletId : dirty.keySet()) {
+                    Boolean strict = dirty.remove(walletId);
+                    if (strict != null) {
+                        publish(walletId, strict);
+                    }
+                }
+            } finally {
+                dispatching.set(false);
+            }
+            // A wallet marked between the last pass and the reset would otherwise wait for the next change
+        } while (!dirty.isEmpty() && dispatching.compareAndSet(false, true));
+    }
+
+    private void publish(UUID walletId, boolean strict) {
+        Topic topic = topics.get(walletId);
+        if (topic == null) {
+            return;
+        }
+        Money balance;
+        try {
+            if (strict) {
+                // The change just committed; a replica that has not replayed it must not answer
+                ReadConsistency.requirePrimary();
+            }
+            balance = walletService.getBalance(walletId, strict);
+        } catch (WalletNotFoundException ex) {
+            topic.subscribers.forEach(Subscriber::complete);
+            return;
+        } catch (RuntimeException ex) {
+            log.warn("Could not read the balance of wallet {} for its subscribers", walletId, ex);
+            return;
+        } finally {
+            ReadConsistency.clear();
+        }
+        // Only the dispatcher writes last, one wallet at a time
+        if (topic.last.equals(balance)) {
+            return;
+        }
+        topic.last = balance;
+        BalanceUpdate update = new BalanceUpdate(walletId, balance.toBigDecimal());
+        topic.subscribers.forEach(subscriber -> subscriber.offer(update));
+    }
+
+    private static final class Topic {
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private volatile Money last;
+
+        private Topic(Money last) {
+            this.last = last;
+        }
+    }
+
+    private final class Subscriber {
+        private final UUID walletId;
+        private final SseEmitter emitter;
+        private final Deque<Object> buffer = new ArrayDeque<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(UUID walletId, SseEmitter emitter) {
+            this.walletId = walletId;
+            this.emitter = emitter;
+        }
+
+        void offer(BalanceUpdate update) {
+            synchronized (buffer) {
+                if (buffer.size() >= Math.max(1, properties.getBalanceStream().getBufferSize())) {
+                    buffer.clear();
+                    coalesced.increment();
+                }
+                buffer.addLast(update);
+            }
+            scheduleDrain();
+        }
+
+        void heartbeat() {
+            synchronized (buffer) {
+                if (!buffer.isEmpty()) {
+                    return;
+                }
+                buffer.addLast(HEARTBEAT);
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (!closed.get() && draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Object next;
+                synchronized (buffer) {
+                    next = buffer.pollFirst();
+                }
+                if (next == null) {
+                    draining.set(false);
+                    // An offer between the poll and the reset saw draining still set and did not schedule
+                    synchronized (buffer) {
+                        if (buffer.isEmpty() || !draining.compareAndSet(false, true)) {
+                            return;
+                        }
+                    }
+                    continue;
+                }
+                if (!send(next)) {
+                    return;
+                }
+            }
+        }
+
+        private boolean send(Object message) {
+            try {
+                if (message == HEARTBEAT) {
+                    emitter.send(SseEmitter.event().comment(HEARTBEAT));
+                } else {
+                    emitter.send(SseEmitter.event().name("balance").data(message, MediaType.APPLICATION_JSON));
+                }
+                return true;
+            } catch (IOException | IllegalStateException ex) {
+                // Client went away or the emitter already completed
+                close();
+                return false;
+            }
+        }
+
+        void complete() {
+            emitter.complete();
+            close();
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            subscribers.decrementAndGet();
+            topics.computeIfPresent(walletId, (id, topic) -> {
+                topic.subscribers.remove(this);
+                return topic.subscribers.isEmpty() ? null : topic;
+            });
+        }
+    }
+}
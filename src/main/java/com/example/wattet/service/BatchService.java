@@ -0,0 +1,304 @@
+package com.example.wattet.service;
+
+import com.example.wattet.aspect.RetryOnConcurrencyFailure;
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.BatchItemResultDTO;
+import com.example.wattet.dto.BatchItemStatus;
+import com.example.wattet.dto.BatchMode;
+import com.example.wattet.dto.BatchOperationDTO;
+import com.example.wattet.dto.BatchRequestDTO;
+import com.example.wattet.dto.BatchResponseDTO;
+import com.example.wattet.event.BalanceChangedEvent;
+import com.example.wattet.exception.AmountOverflowException;
+import com.example.wattet.exception.InvalidAmountException;
+import com.example.wattet.exception.InvalidBatchException;
+import com.example.wattet.mapper.TransactionMapper;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.repository.TransactionRepository;
+import com.example.wattet.repository.WalletRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Applies many movements in one database transaction. Every wallet involved is locked up front in
+ * {@link LockOrdering} order, the operations are replayed in request order against in-memory
+ * balances, and only then is anything written: one UPDATE per touched wallet carrying its net
+ * delta, plus the Transaction rows as JDBC batch inserts. In LEDGER mode nothing is locked and
+ * the wallet updates are replaced by postings. Not available in SHARDED mode.
+ */
+@Service
+@Slf4j
+public class BatchService {
+
+    private final WalletRepository walletRepository;
+    private final TransactionRepository transactionRepository;
+    private final BalanceCheckpointService balanceCheckpointService;
+    private final LedgerService ledgerService;
+    private final StripedBalanceService stripedBalanceService;
+    private final DepositAggregator depositAggregator;
+    private final TransactionOutbox transactionOutbox;
+    private final TransactionMapper transactionMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final WalletProperties properties;
+
+    public BatchService(WalletRepository walletRepository, TransactionRepository transactionRepository,
+                        BalanceCheckpointService balanceCheckpointService, LedgerService ledgerService,
+                        StripedBalanceService stripedBalanceService, DepositAggregator depositAggregator,
+                        TransactionOutbox transactionOutbox, TransactionMapper transactionMapper,
+                        ApplicationEventPublisher eventPublisher, WalletProperties properties) {
+        this.walletRepository = walletRepository;
+        this.transactionRepository = transactionRepository;
+        this.balanceCheckpointService = balanceCheckpointService;
+        this.ledgerService = ledgerService;
+        this.stripedBalanceService = stripedBalanceService;
+        this.depositAggregator = depositAggregator;
+        this.transactionOutbox = transactionOutbox;
+        this.transactionMapper = transactionMapper;
+        this.eventPublisher = eventPublisher;
+        this.properties = properties;
+    }
+
+    @RetryOnConcurrencyFailure
+    @Transactional
+    public BatchResponseDTO apply(BatchRequestDTO request) {
+        if (properties.getConcurrency().getMode() == ConcurrencyMode.SHARDED) {
+            // The shards hold the balances; writing rows here would go behind their back
+            throw new InvalidBatchException("Batches are not available in SHARDED mode, submit the operations one by one");
+        }
+        List<BatchOperationDTO> operations = validate(request);
+        BatchMode mode = request.mode() == null ? BatchMode.ALL_OR_NOTHING : request.mode();
+
+        TreeSet<UUID> ids = walletIds(operations);
+        LedgerService.Session ledger = isLedger() ? ledgerService.open(ids) : null;
+        Map<UUID, Wallet> wallets = ledger != null ? walletReferences(ids, ledger) : lockWallets(ids);
+        Map<UUID, Money> balances = new HashMap<>();
+        wallets.forEach((id, wallet) -> balances.put(id, ledger != null ? ledger.balance(id) : Money.ofMinor(wallet.getBalance())));
+
+        LocalDateTime timestamp = LocalDateTime.now();
+        Transaction[] applied = new Transaction[operations.size()];
+        String[] errors = new String[operations.size()];
+        int failed = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            String error = applyInMemory(operations.get(i), wallets, balances);
+            if (error == null) {
+                applied[i] = newTransaction(operations.get(i), wallets, timestamp);
+            } else {
+                errors[i] = error;
+                failed++;
+                if (mode == BatchMode.ALL_OR_NOTHING) {
+                    break;
+                }
+            }
+        }
+
+        boolean commit = mode == BatchMode.BEST_EFFORT || failed == 0;
+        if (commit) {
+            if (ledger != null) {
+                persistToLedger(applied, ledger);
+            } else {
+                persist(applied, wallets, balances);
+            }
+        }
+        log.debug("Batch of {} operations in {} mode: {} applied, {} failed", operations.size(), mode,
+                commit ? operations.size() - failed : 0, failed);
+        return toResponse(mode, commit, applied, errors);
+    }
+
+    private List<BatchOperationDTO> validate(BatchRequestDTO request) {
+        if (request == null || request.operations() == null || request.operations().isEmpty()) {
+            throw new InvalidBatchException("Batch must contain at least one operation");
+        }
+        int max = properties.getBatch().getMaxOperations();
+        if (request.operations().size() > max) {
+            throw new InvalidBatchException("Batch cannot contain more than " + max + " operations");
+        }
+        return request.operations();
+    }
+
+    private boolean isLedger() {
+        return properties.getConcurrency().getMode() == ConcurrencyMode.LEDGER;
+    }
+
+    private TreeSet<UUID> walletIds(List<BatchOperationDTO> operations) {
+        TreeSet<UUID> ids = new TreeSet<>(LockOrdering.WALLET_IDS);
+        for (BatchOperationDTO operation : operations) {
+            if (operation.walletId() != null) {
+                ids.add(operation.walletId());
+            }
+            if (operation.toWalletId() != null) {
+                ids.add(operation.toWalletId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * LEDGER mode takes no row locks; a conflicting writer shows up as a posting number clash on write.
+     */
+    private Map<UUID, Wallet> walletReferences(TreeSet<UUID> ids, LedgerService.Session ledger) {
+        Map<UUID, Wallet> wallets = new HashMap<>();
+        for (UUID id : ids) {
+            if (ledger.contains(id)) {
+                wallets.put(id, walletRepository.getReferenceById(id));
+            }
+        }
+        return wallets;
+    }
+
+    private Map<UUID, Wallet> lockWallets(TreeSet<UUID> ids) {
+        Map<UUID, Wallet> wallets = new HashMap<>();
+        int chunkSize = properties.getBatch().getLockChunkSize();
+        List<UUID> chunk = new ArrayList<>(chunkSize);
+        for (UUID id : ids) {
+            chunk.add(id);
+            if (chunk.size() == chunkSize) {
+                walletRepository.findAllByIdForUpdate(chunk).forEach(wallet -> wallets.put(wallet.getId(), wallet));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            walletRepository.findAllByIdForUpdate(chunk).forEach(wallet -> wallets.put(wallet.getId(), wallet));
+        }
+        // Wallets are replayed against their whole balance, so fold pending deposits and stripes in first
+        depositAggregator.foldInto(wallets.values());
+        wallets.values().stream()
+                .filter(wallet -> stripedBalanceService.isStriped(wallet.getId()))
+                .forEach(stripedBalanceService::collapse);
+        return wallets;
+    }
+
+    /**
+     * @return null when the operation was applied to {@code balances}, otherwise why it was rejected
+     */
+    private String applyInMemory(BatchOperationDTO operation, Map<UUID, Wallet> wallets, Map<UUID, Money> balances) {
+        if (operation.type() == null) {
+            return "Operation type is required";
+        }
+        if (operation.amount() == null || operation.amount().signum() <= 0) {
+            return "Amount must be greater than zero";
+        }
+        if (!wallets.containsKey(operation.walletId())) {
+            return "Wallet not found: " + operation.walletId();
+        }
+        UUID walletId = operation.walletId();
+        try {
+            Money amount = Money.of(operation.amount());
+            Money balance = balances.get(walletId);
+            switch (operation.type()) {
+                case DEPOSIT -> balances.put(walletId, balance.plus(amount));
+                case WITHDRAW -> {
+                    if (balance.isLessThan(amount)) {
+                        return "Insufficient balance in wallet: " + walletId;
+                    }
+                    balances.put(walletId, balance.minus(amount));
+                }
+                case TRANSFER -> {
+                    UUID toWalletId = operation.toWalletId();
+                    if (walletId.equals(toWalletId)) {
+                        return "Cannot transfer to the same wallet";
+                    }
+                    if (!wallets.containsKey(toWalletId)) {
+                        return "Wallet not found: " + toWalletId;
+                    }
+                    if (balance.isLessThan(amount)) {
+                        return "Insufficient balance in source wallet: " + walletId;
+                    }
+                    // Computed before either balance changes, so an overflow leaves both untouched
+                    Money credited = balances.get(toWalletId).plus(amount);
+                    balances.put(walletId, balance.minus(amount));
+                    balances.put(toWalletId, credited);
+                }
+            }
+        } catch (InvalidAmountException | AmountOverflowException ex) {
+            return ex.getMessage();
+        }
+        return null;
+    }
+
+    private Transaction newTransaction(BatchOperationDTO operation, Map<UUID, Wallet> wallets, LocalDateTime timestamp) {
+        Transaction transaction = new Transaction();
+        transaction.setWallet(wallets.get(operation.walletId()));
+        transaction.setType(operation.type());
+        // Already validated by applyInMemory
+        transaction.setAmount(Money.of(operation.amount()).minorUnits());
+        transaction.setTimestamp(timestamp);
+        if (operation.type() == TransactionType.TRANSFER) {
+            transaction.setRelatedWallet(wallets.get(operation.toWalletId()));
+        }
+        return transaction;
+    }
+
+    private void persist(Transaction[] applied, Map<UUID, Wallet> wallets, Map<UUID, Money> balances) {
+        // Same-wallet movements are netted: each wallet is written once, with its final balance
+        balances.forEach((id, balance) -> {
+            Wallet wallet = wallets.get(id);
+            if (wallet.getBalance() != balance.minorUnits()) {
+                wallet.setBalance(balance.minorUnits());
+                eventPublisher.publishEvent(new BalanceChangedEvent(id, wallet));
+            }
+        });
+
+        List<Transaction> transactions = new ArrayList<>();
+        for (Transaction transaction : applied) {
+            if (transaction != null) {
+                transactions.add(transaction);
+            }
+        }
+        transactionRepository.saveAll(transactions);
+        transactionOutbox.recordAll(transactions);
+        // All rows share one timestamp, so a checkpoint of the final balance is valid for any of them
+        transactions.forEach(balanceCheckpointService::onTransactionRecorded);
+    }
+
+    private void persistToLedger(Transaction[] applied, LedgerService.Session ledger) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (Transaction transaction : applied) {
+            if (transaction != null) {
+                transactions.add(transaction);
+                ledger.append(transaction);
+            }
+        }
+        transactionRepository.saveAll(transactions);
+        transactionOutbox.recordAll(transactions);
+        ledger.write();
+        transactions.stream()
+                .flatMap(transaction -> transaction.getRelatedWallet() == null
+                        ? Stream.of(transaction.getWallet().getId())
+                        : Stream.of(transaction.getWallet().getId(), transaction.getRelatedWallet().getId()))
+                .distinct()
+                .forEach(id -> eventPublisher.publishEvent(new BalanceChangedEvent(id, null)));
+    }
+
+    private BatchResponseDTO toResponse(BatchMode mode, boolean committed, Transaction[] applied, String[] errors) {
+        List<BatchItemResultDTO> results = new ArrayList<>(applied.length);
+        int appliedCount = 0;
+        int failedCount = 0;
+        for (int i = 0; i < applied.length; i++) {
+            if (errors[i] != null) {
+                results.add(new BatchItemResultDTO(i, BatchItemStatus.FAILED, null, errors[i]));
+                failedCount++;
+            } else if (committed && applied[i] != null) {
+                results.add(new BatchItemResultDTO(i, BatchItemStatus.APPLIED, transactionMapper.toDto(applied[i]), null));
+                appliedCount++;
+            } else {
+                results.add(new BatchItemResultDTO(i, BatchItemStatus.NOT_APPLIED, null, null));
+            }
+        }
+        return new BatchResponseDTO(mode, appliedCount, failedCount, results);
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.exception.WalletNotFoundException;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.PendingDeposit;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.repository.PendingDepositRepository;
+import com.example.wattet.repository.WalletRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind path for deposits ({@code wallet.deposit-aggregation}). A deposit inserts its
+ * transaction and a {@link PendingDeposit} row and commits without touching the wallet row; a flush
+ * later sums the pending rows per wallet and applies each sum with one UPDATE. Balance reads add the
+ * pending rows, so a client always sees its own deposits.
+ * <p>
+ * Everything that applies pending rows locks the wallet row first, in {@link LockOrdering} order,
+ * and the wallet's pending rows second. A debit folding a wallet therefore waits for a flush that
+ * already holds its deposits instead of missing them, and a flush skips wallets another transaction
+ * holds, so it never waits on a request or on another flusher.
+ */
+@Service
+@Slf4j
+public class DepositAggregator {
+
+    private final PendingDepositRepository pendingDepositRepository;
+    private final WalletRepository walletRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor executor;
+    private final WalletProperties properties;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private volatile boolean drained;
+
+    public DepositAggregator(PendingDepositRepository pendingDepositRepository, WalletRepository walletRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Qualifier("applicationTaskExecutor") Executor executor, WalletProperties properties) {
+        this.pendingDepositRepository = pendingDepositRepository;
+        this.walletRepository = walletRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+        this.properties = properties;
+    }
+
+    /**
+     * LEDGER mode is insert-only already and never reads the wallet row it would flush into;
+     * SHARDED mode batches deposits itself.
+     */
+    public boolean isEnabled() {
+        ConcurrencyMode mode = properties.getConcurrency().getMode();
+        return properties.getDepositAggregation().isEnabled()
+                && mode != ConcurrencyMode.LEDGER && mode != ConcurrencyMode.SHARDED;
+    }
+
+    /**
+     * Records the deposit as pending inside the caller's transaction.
+     */
+    void enqueue(UUID walletId, Money amount) {
+        if (!walletRepository.existsById(walletId)) {
+            throw new WalletNotFoundException("Wallet not found: " + walletId);
+        }
+        PendingDeposit deposit = new PendingDeposit();
+        deposit.setWallet(walletRepository.getReferenceById(walletId));
+        deposit.setAmount(amount.minorUnits());
+        deposit.setCreatedAt(LocalDateTime.now());
+        pendingDepositRepository.save(deposit);
+        // Exactly one caller crosses the threshold per cycle; flush() resets the count
+        if (queued.incrementAndGet() == batchSize()) {
+            executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Moves the wallets' pending deposits into their rows inside the caller's transaction, before a
+     * debit checks the balance. Wallets with pending deposits stay locked until the caller commits;
+     * a caller locking further wallet rows afterwards must do so in {@link LockOrdering} order.
+     */
+    void fold(UUID... walletIds) {
+        if (!isEnabled() && drained) {
+            return;
+        }
+        List<UUID> ids = Arrays.asList(walletIds);
+        // Rows a flush is applying are still visible here, so this only skips wallets with nothing pending
+        if (!pendingDepositRepository.existsByWalletIdIn(ids)) {
+            return;
+        }
+        walletRepository.findAllByIdForUpdate(ids);
+        credit(pendingDepositRepository.lockByWalletIds(ids));
+    }
+
+    /**
+     * Same as {@link #fold} for wallets the caller has already locked and works on as entities.
+     */
+    void foldInto(Collection<Wallet> lockedWallets) {
+        if ((!isEnabled() && drained) || lockedWallets.isEmpty()) {
+            return;
+        }
+        Map<UUID, Wallet> wallets = new TreeMap<>(LockOrdering.WALLET_IDS);
+        lockedWallets.forEach(wallet -> wallets.put(wallet.getId(), wallet));
+        List<PendingDeposit> claimed = pendingDepositRepository.lockByWalletIds(wallets.keySet());
+        for (PendingDeposit deposit : claimed) {
+            Wallet wallet = wallets.get(deposit.getWallet().getId());
+            wallet.setBalance(Money.ofMinor(wallet.getBalance()).plus(Money.ofMinor(deposit.getAmount())).minorUnits());
+        }
+        pendingDepositRepository.deleteAllInBatch(claimed);
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.deposit-aggregation.flush-interval:PT0.05S}")
+    public void flushScheduled() {
+        if (isEnabled() || !drained) {
+            flush();
+        }
+    }
+
+    /**
+     * Applies pending deposits one batch per transaction until a batch comes back short. A batch
+     * covers the wallets of the oldest {@code max-batch-size} deposits, with all of their deposits.
+     */
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int batchSize = batchSize();
+            int flushed;
+            do {
+                queued.set(0);
+                flushed = transactionTemplate.execute(status -> flushBatch(batchSize));
+            } while (flushed == batchSize);
+            if (!isEnabled()) {
+                drained = true;
+            }
+        } catch (RuntimeException ex) {
+            // Claimed rows were rolled back and are picked up again by the next run
+            log.warn("Flushing pending deposits failed", ex);
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * @return how many of the oldest deposits belonged to wallets this batch could lock; fewer than
+     * {@code batchSize} ends the flush, so wallets held elsewhere do not keep it spinning
+     */
+    private int flushBatch(int batchSize) {
+        List<UUID> oldest = pendingDepositRepository.findOldestWalletIds(PageRequest.of(0, batchSize));
+        if (oldest.isEmpty()) {
+            return 0;
+        }
+        Set<UUID> locked = new HashSet<>();
+        walletRepository.lockAvailableByIds(new HashSet<>(oldest)).forEach(wallet -> locked.add(wallet.getId()));
+        if (locked.isEmpty()) {
+            return 0;
+        }
+        credit(pendingDepositRepository.lockByWalletIds(locked));
+        return (int) oldest.stream().filter(locked::contains).count();
+    }
+
+    private int credit(List<PendingDeposit> claimed) {
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+        Map<UUID, Money> deltas = new TreeMap<>(LockOrdering.WALLET_IDS);
+        for (PendingDeposit deposit : claimed) {
+            deltas.merge(deposit.getWallet().getId(), Money.ofMinor(deposit.getAmount()), Money::plus);
+        }
+        deltas.forEach((walletId, delta) -> walletRepository.credit(walletId, delta.minorUnits()));
+        pendingDepositRepository.deleteAllInBatch(claimed);
+        log.debug("Applied {} pending deposits to {} wallets", claimed.size(), deltas.size());
+        return claimed.size();
+    }
+
+    private int batchSize() {
+        return Math.max(1, properties.getDepositAggregation().getMaxBatchSize());
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.repository.WalletRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Group commit for {@code wallet.group-commit}. Callers queue their work and wait; a worker takes
+ * whatever is queued, up to {@code max-batch-size}, and runs it in one database transaction, each
+ * call behind its own savepoint. A call that fails is rolled back to its savepoint and gets its
+ * exception, the others commit together, and every caller returns only after that commit, so
+ * durability is the same as with one transaction per call.
+ * <p>
+ * Before the first call runs, the group locks the wallet rows of all its calls in {@link LockOrdering}
+ * order. Calls then only take locks the group already holds, so two groups, or a group and a single
+ * call, cannot deadlock on wallet rows whatever order the calls arrived in. LEDGER mode takes no row
+ * locks: its writes never touch the wallet row and are ordered by the posting number constraint.
+ * Calls on striped wallets always run alone, since their stripe rows are locked inside the call in
+ * an order the group cannot take up front.
+ * <p>
+ * A failure the transaction cannot continue after (a database error, a lock or version conflict)
+ * aborts the whole group. Its callers then run their call again alone, in their own transaction.
+ * <p>
+ * How long a worker keeps collecting follows the load: no wait while calls arrive one at a time,
+ * a window growing up to {@code max-wait} while groups come out partly filled, and none again once
+ * groups fill by themselves.
+ */
+@Service
+@Slf4j
+public class GroupCommitCoordinator {
+
+    private static final long POLL_MILLIS = 100;
+    private static final long MIN_WINDOW_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    /**
+     * Completes a member whose group did not commit; the caller runs its call alone.
+     */
+    private static final Object RUN_ALONE = new Object();
+
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final WalletRepository walletRepository;
+    private final StripedBalanceService stripedBalanceService;
+    private final WalletProperties properties;
+    private final BlockingQueue<Member> queue;
+    private final Thread[] workers;
+    private final DistributionSummary groupSize;
+    private final Counter aborted;
+    private volatile boolean running = true;
+
+    public GroupCommitCoordinator(PlatformTransactionManager transactionManager, EntityManager entityManager,
+                                  WalletRepository walletRepository, StripedBalanceService stripedBalanceService,
+                                  WalletProperties properties, MeterRegistry meterRegistry) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManager = entityManager;
+        this.walletRepository = walletRepository;
+        this.stripedBalanceService = stripedBalanceService;
+        this.properties = properties;
+        WalletProperties.GroupCommit config = properties.getGroupCommit();
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+        // SHARDED mode never reaches the annotated service methods' database path
+        int count = config.isEnabled() && properties.getConcurrency().getMode() != ConcurrencyMode.SHARDED
+                ? Math.max(1, config.getWorkers())
+                : 0;
+        this.workers = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            workers[i] = new Thread(this::run, "group-commit-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        this.groupSize = DistributionSummary.builder("wallet.group-commit.size")
+                .description("Calls committed together in one transaction")
+                .register(meterRegistry);
+        Gauge.builder("wallet.group-commit.queued", this, GroupCommitCoordinator::queued).register(meterRegistry);
+        this.aborted = Counter.builder("wallet.group-commit.aborted")
+                .description("Groups rolled back as a whole, their calls run again alone")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return workers.length > 0;
+    }
+
+    /**
+     * Calls waiting for a group.
+     */
+    int queued() {
+        return queue.size();
+    }
+
+    /**
+     * Runs {@code work} in the next group and returns its result or throws its exception once the
+     * group has committed.
+     *
+     * @param walletIds the wallets whose rows {@code work} may lock
+     * @param alone     runs the call in its own transaction on the caller's thread; used when the
+     *                  queue is full or the group was aborted
+     */
+    public <T> T execute(Collection<UUID> walletIds, Supplier<T> work, Supplier<T> alone) {
+        if (touchesStripes(walletIds)) {
+            return alone.get();
+        }
+        Member member = new Member(walletIds, work, new CompletableFuture<>());
+        if (!running || !queue.offer(member)) {
+            return alone.get();
+        }
+        // stop() may have drained the queue just before the offer
+        if (!running && queue.remove(member)) {
+            return alone.get();
+        }
+        Object outcome;
+        try {
+            outcome = member.result().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+        if (outcome == RUN_ALONE) {
+            return alone.get();
+        }
+        @SuppressWarnings("unchecked")
+        T result = (T) outcome;
+        return result;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        Member member;
+        while ((member = queue.poll()) != null) {
+            member.result().complete(RUN_ALONE);
+        }
+    }
+
+    /**
+     * Opens the collecting window while groups come out partly filled, and halves it when waiting
+     * brought nobody or the group filled up anyway.
+     */
+    static long nextWindow(long windowNanos, int size, int maxBatchSize, long maxWaitNanos) {
+        if (size > 1 && size < maxBatchSize) {
+            return Math.min(maxWaitNanos, Math.max(MIN_WINDOW_NANOS, windowNanos * 2));
+        }
+        return windowNanos / 2;
+    }
+
+    private void run() {
+        WalletProperties.GroupCommit config = properties.getGroupCommit();
+        int maxBatchSize = Math.max(1, config.getMaxBatchSize());
+        long maxWaitNanos = config.getMaxWait().toNanos();
+        long windowNanos = 0;
+        List<Member> group = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Member first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, maxBatchSize - 1);
+                long deadline = System.nanoTime() + windowNanos;
+                while (group.size() < maxBatchSize) {
+                    Member next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    queue.drainTo(group, maxBatchSize - group.size());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                group.forEach(member -> member.result().complete(RUN_ALONE));
+                return;
+            }
+            commit(group);
+            windowNanos = nextWindow(windowNanos, group.size(), maxBatchSize, maxWaitNanos);
+            group.clear();
+        }
+    }
+
+    private void commit(List<Member> group) {
+        List<Object> outcomes = new ArrayList<>(group.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                lockWallets(group);
+                for (Member member : group) {
+                    outcomes.add(apply(member, status));
+                }
+            });
+        } catch (RuntimeException | Error ex) {
+            aborted.increment();
+            log.debug("Group of {} calls aborted, running them alone", group.size(), ex);
+            group.forEach(member -> member.result().complete(RUN_ALONE));
+            return;
+        }
+        groupSize.record(group.size());
+        for (int i = 0; i < group.size(); i++) {
+            if (outcomes.get(i) instanceof Failed failed) {
+                group.get(i).result().completeExceptionally(failed.exception());
+            } else {
+                group.get(i).result().complete(outcomes.get(i));
+            }
+        }
+    }
+
+    private boolean isLedger() {
+        return properties.getConcurrency().getMode() == ConcurrencyMode.LEDGER;
+    }
+
+    /**
+     * Stripes are only in use outside LEDGER mode, as in {@link WalletService}.
+     */
+    private boolean touchesStripes(Collection<UUID> walletIds) {
+        return !isLedger() && walletIds.stream().anyMatch(stripedBalanceService::isStriped);
+    }
+
+    private void lockWallets(List<Member> group) {
+        if (isLedger()) {
+            return;
+        }
+        Set<UUID> walletIds = new TreeSet<>(LockOrdering.WALLET_IDS);
+        group.forEach(member -> walletIds.addAll(member.walletIds()));
+        if (!walletIds.isEmpty()) {
+            walletRepository.findAllByIdForUpdate(walletIds);
+        }
+    }
+
+    private Object apply(Member member, TransactionStatus status) {
+        Session session = entityManager.unwrap(Session.class);
+        Savepoint savepoint = session.doReturningWork(Connection::setSavepoint);
+        try {
+            Object result = member.work().get();
+            // Statements of this call run before the next savepoint, so a rollback to it only undoes this call
+            entityManager.flush();
+            return result;
+        } catch (RuntimeException ex) {
+            if (status.isRollbackOnly() || ex instanceof DataAccessException || ex instanceof PersistenceException) {
+                throw ex;
+            }
+            session.doWork(connection -> connection.rollback(savepoint));
+            // The context may hold state of the rolled back call; earlier calls are flushed already
+            entityManager.clear();
+            return new Failed(ex);
+        }
+    }
+
+    private record Member(Collection<UUID> walletIds, Supplier<?> work, CompletableFuture<Object> result) {
+    }
+
+    private record Failed(RuntimeException exception) {
+    }
+}
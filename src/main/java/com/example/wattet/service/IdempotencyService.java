@@ -0,0 +1,119 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.TransactionDTO;
+import com.example.wattet.exception.IdempotencyKeyException;
+import com.example.wattet.mapper.TransactionMapper;
+import com.example.wattet.model.IdempotencyRecord;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Executes a money movement at most once per Idempotency-Key. Replays are answered from a bounded
+ * in-memory cache, then from the idempotency_key table, without touching the wallets; concurrent
+ * duplicates on this node wait for the first execution instead of running their own.
+ * <p>
+ * Keys are refused in SHARDED mode. There the movement commits in its shard's batch transaction,
+ * not in the one that would record the key, so the key could outlive a movement that rolled back,
+ * and every keyed request would hold a pooled connection while it waits for its shard.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore idempotencyStore;
+    private final TransactionMapper transactionMapper;
+    private final WalletProperties properties;
+    private final Cache<String, IdempotencyRecord> replayCache;
+    private final ConcurrentMap<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyStore idempotencyStore, TransactionMapper transactionMapper,
+                              WalletProperties properties) {
+        this.idempotencyStore = idempotencyStore;
+        this.transactionMapper = transactionMapper;
+        this.properties = properties;
+        this.replayCache = Caffeine.newBuilder()
+                .maximumSize(properties.getIdempotency().getCacheSize())
+                .expireAfterWrite(properties.getIdempotency().getCacheTtl())
+                .build();
+    }
+
+    /**
+     * @param key         client supplied Idempotency-Key, or null to run {@code operation} unconditionally
+     * @param fingerprint identifies the request the key was first used for; reusing a key for a
+     *                    different request is rejected
+     */
+    public TransactionDTO execute(String key, String fingerprint, Supplier<Transaction> operation) {
+        if (key == null) {
+            return transactionMapper.toDto(operation.get());
+        }
+        if (properties.getConcurrency().getMode() == ConcurrencyMode.SHARDED) {
+            throw new IdempotencyKeyException("Idempotency-Key is not supported in SHARDED mode");
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyKeyException("Idempotency-Key must have between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        IdempotencyRecord cached = replayCache.getIfPresent(key);
+        if (cached != null) {
+            return replay(cached, fingerprint);
+        }
+
+        CompletableFuture<IdempotencyRecord> mine = new CompletableFuture<>();
+        CompletableFuture<IdempotencyRecord> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return replay(await(running), fingerprint);
+        }
+        try {
+            IdempotencyRecord record = executeOnce(key, fingerprint, operation);
+            replayCache.put(key, record);
+            mine.complete(record);
+            return replay(record, fingerprint);
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private IdempotencyRecord executeOnce(String key, String fingerprint, Supplier<Transaction> operation) {
+        try {
+            return idempotencyStore.executeOnce(key, fingerprint, operation);
+        } catch (DataIntegrityViolationException ex) {
+            // Another node committed the same key first; our movement was rolled back with the insert
+            return idempotencyStore.find(key).orElseThrow(() -> ex);
+        }
+    }
+
+    private TransactionDTO replay(IdempotencyRecord record, String fingerprint) {
+        if (!record.getFingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyException("Idempotency-Key was already used for a different request");
+        }
+        return new TransactionDTO(record.getTransactionId(), record.getWalletId(), record.getType(),
+                Money.ofMinor(record.getAmount()).toDouble(), record.getTimestamp(), record.getRelatedWalletId());
+    }
+
+    private static IdempotencyRecord await(CompletableFuture<IdempotencyRecord> running) {
+        try {
+            return running.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
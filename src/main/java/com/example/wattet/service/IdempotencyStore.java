@@ -0,0 +1,91 @@
+package com.example.wattet.service;
+
+import com.example.wattet.aspect.RetryOnConcurrencyFailure;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.model.IdempotencyRecord;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Durable side of idempotency: the money movement and its idempotency_key row commit in the same
+ * transaction, so a key is recorded if and only if the movement happened. Not used in SHARDED mode,
+ * where a shard commits the movement in a transaction of its own.
+ */
+@Service
+@Slf4j
+public class IdempotencyStore {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final WalletProperties properties;
+
+    public IdempotencyStore(IdempotencyRecordRepository idempotencyRecordRepository, WalletProperties properties) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * Not read-only: it is asked right after another node committed the key and must not be routed
+     * to a replica that has yet to see it.
+     */
+    @Transactional
+    public Optional<IdempotencyRecord> find(String key) {
+        return idempotencyRecordRepository.findById(key);
+    }
+
+    /**
+     * Returns the stored record for {@code key}, or runs {@code operation} and stores its result.
+     * A duplicate committed by another node in between surfaces as a primary key violation on commit.
+     */
+    @RetryOnConcurrencyFailure
+    @Transactional
+    public IdempotencyRecord executeOnce(String key, String fingerprint, Supplier<Transaction> operation) {
+        Optional<IdempotencyRecord> existing = idempotencyRecordRepository.findById(key);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        Transaction transaction = operation.get();
+        return idempotencyRecordRepository.save(toRecord(key, fingerprint, transaction));
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.idempotency.purge-interval:PT1H}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = idempotencyRecordRepository.deleteCreatedBefore(
+                LocalDateTime.now().minus(properties.getIdempotency().getRetention()));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    /**
+     * Built from the entity, not the response DTO, whose double amount is not exact above 2^53 minor units.
+     */
+    private IdempotencyRecord toRecord(String key, String fingerprint, Transaction transaction) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setKey(key);
+        record.setFingerprint(fingerprint);
+        record.setTransactionId(transaction.getId());
+        record.setWalletId(idOf(transaction.getWallet()));
+        record.setType(transaction.getType());
+        record.setAmount(transaction.getAmount());
+        record.setTimestamp(transaction.getTimestamp());
+        record.setRelatedWalletId(idOf(transaction.getRelatedWallet()));
+        record.setCreatedAt(LocalDateTime.now());
+        return record;
+    }
+
+    // getId() on an uninitialised Hibernate proxy does not hit the database
+    private static UUID idOf(Wallet wallet) {
+        return wallet == null ? null : wallet.getId();
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.metamodel.EntityType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reports indexes declared in the entities' {@code @Table(indexes = ...)} that the database does
+ * not have, which is how a migration that was skipped or failed halfway shows up. The repository
+ * queries rely on those indexes; without them they fall back to scans that only hurt once the
+ * tables are large.
+ */
+@Component
+@Slf4j
+public class IndexCheckJob implements ApplicationRunner {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final DataSource dataSource;
+    private final WalletProperties properties;
+
+    public IndexCheckJob(EntityManagerFactory entityManagerFactory, DataSource dataSource, WalletProperties properties) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.dataSource = dataSource;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        WalletProperties.Schema config = properties.getSchema();
+        if (!config.isVerifyIndexes()) {
+            return;
+        }
+        List<String> missing = findMissingIndexes();
+        if (missing.isEmpty()) {
+            log.debug("All entity indexes are present");
+            return;
+        }
+        if (config.isFailOnMissingIndex()) {
+            throw new IllegalStateException("Missing database indexes: " + missing);
+        }
+        log.warn("Missing database indexes, affected queries will scan: {}", missing);
+    }
+
+    /**
+     * @return {@code table.index} for every declared index the database lacks
+     */
+    public List<String> findMissingIndexes() {
+        List<String> missing = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+                Table table = entity.getJavaType().getAnnotation(Table.class);
+                if (table == null || table.indexes().length == 0) {
+                    continue;
+                }
+                String tableName = table.name().isEmpty() ? snakeCase(entity.getJavaType().getSimpleName()) : table.name();
+                Set<String> present = indexNames(metaData, tableName);
+                for (Index index : table.indexes()) {
+                    if (!present.contains(index.name().toLowerCase(Locale.ROOT))) {
+                        missing.add(tableName + "." + index.name());
+                    }
+                }
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Could not read index metadata", ex);
+        }
+        return missing;
+    }
+
+    private static Set<String> indexNames(DatabaseMetaData metaData, String table) throws SQLException {
+        String stored = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT)
+                : metaData.storesLowerCaseIdentifiers() ? table.toLowerCase(Locale.ROOT)
+                : table;
+        Set<String> names = new HashSet<>();
+        try (ResultSet indexes = metaData.getIndexInfo(null, null, stored, false, true)) {
+            while (indexes.next()) {
+                String name = indexes.getString("INDEX_NAME");
+                if (name != null) {
+                    names.add(name.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Same mapping as Spring's default physical naming strategy, for entities without a table name.
+     */
+    private static String snakeCase(String name) {
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase(Locale.ROOT);
+    }
+}
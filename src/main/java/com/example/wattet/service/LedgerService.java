@@ -0,0 +1,168 @@
+package com.example.wattet.service;
+
+import com.example.wattet.dto.BalanceSnapshot;
+import com.example.wattet.exception.InsufficientBalanceException;
+import com.example.wattet.exception.WalletNotFoundException;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Posting;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.repository.PostingRepository;
+import com.example.wattet.repository.WalletRepository;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Balances for {@code ConcurrencyMode.LEDGER}, read from and appended to the {@link Posting} table.
+ * A wallet without postings starts from its {@code wallet.balance}, which the ledger never writes.
+ */
+@Service
+public class LedgerService {
+
+    private static final String SEQ_CONSTRAINT = "uk_posting_wallet_seq";
+
+    private final PostingRepository postingRepository;
+    private final WalletRepository walletRepository;
+
+    public LedgerService(PostingRepository postingRepository, WalletRepository walletRepository) {
+        this.postingRepository = postingRepository;
+        this.walletRepository = walletRepository;
+    }
+
+    /**
+     * Current balance, versioned by the posting number it was read at.
+     */
+    public Optional<BalanceSnapshot> findBalance(UUID walletId) {
+        return head(walletId).map(head -> new BalanceSnapshot(head.balance(), head.seq()));
+    }
+
+    /**
+     * @return empty when no posting is that old, the caller then has to look at pre-ledger history
+     */
+    public Optional<Money> balanceAt(UUID walletId, LocalDateTime timestamp) {
+        return postingRepository
+                .findFirstByWalletIdAndTimestampLessThanEqualOrderByTimestampDescSeqDesc(walletId, timestamp)
+                .map(posting -> Money.ofMinor(posting.getBalance()));
+    }
+
+    /**
+     * Reads the latest posting of each wallet; wallets that do not exist are left out.
+     */
+    Session open(Collection<UUID> walletIds) {
+        Map<UUID, Head> heads = new HashMap<>();
+        for (UUID walletId : walletIds) {
+            head(walletId).ifPresent(head -> heads.put(walletId, head));
+        }
+        return new Session(heads);
+    }
+
+    private Optional<Head> head(UUID walletId) {
+        Optional<Head> latest = postingRepository.findFirstByWalletIdOrderBySeqDesc(walletId)
+                .map(posting -> new Head(posting.getSeq(), Money.ofMinor(posting.getBalance())));
+        if (latest.isPresent()) {
+            return latest;
+        }
+        return walletRepository.findBalanceSnapshotById(walletId).map(snapshot -> new Head(0, snapshot.balance()));
+    }
+
+    private record Head(long seq, Money balance) {
+    }
+
+    /**
+     * Postings of one database transaction. Balances reflect what has been appended so far, and
+     * nothing is written before {@link #write()}.
+     */
+    final class Session {
+
+        private final Map<UUID, Head> heads;
+        private final List<Posting> pending = new ArrayList<>();
+
+        private Session(Map<UUID, Head> heads) {
+            this.heads = heads;
+        }
+
+        boolean contains(UUID walletId) {
+            return heads.containsKey(walletId);
+        }
+
+        Money balance(UUID walletId) {
+            return headOf(walletId).balance();
+        }
+
+        void append(Transaction transaction) {
+            UUID walletId = transaction.getWallet().getId();
+            Money amount = Money.ofMinor(transaction.getAmount());
+            switch (transaction.getType()) {
+                case DEPOSIT -> post(transaction, walletId, amount);
+                case WITHDRAW -> post(transaction, walletId, amount.negate());
+                case TRANSFER -> {
+                    post(transaction, walletId, amount.negate());
+                    post(transaction, transaction.getRelatedWallet().getId(), amount);
+                }
+            }
+        }
+
+        /**
+         * Inserts the pending postings. Losing the race for a wallet's next posting number surfaces
+         * as a {@link ConcurrencyFailureException}, which the retry aspect handles.
+         */
+        void write() {
+            // Same insert order in every transaction, so two writers cannot wait on each other's rows
+            pending.sort(Comparator.comparing(posting -> posting.getWallet().getId(), LockOrdering.WALLET_IDS));
+            try {
+                postingRepository.saveAllAndFlush(pending);
+            } catch (DataIntegrityViolationException ex) {
+                if (isSeqConflict(ex)) {
+                    throw new ConcurrencyFailureException("Concurrent posting on the same wallet", ex);
+                }
+                throw ex;
+            }
+            pending.clear();
+        }
+
+        private void post(Transaction transaction, UUID walletId, Money delta) {
+            Head head = headOf(walletId);
+            Head next = new Head(head.seq() + 1, head.balance().plus(delta));
+            if (next.balance().signum() < 0) {
+                throw new InsufficientBalanceException("Insufficient balance in wallet: " + walletId);
+            }
+            Posting posting = new Posting();
+            posting.setWallet(walletRepository.getReferenceById(walletId));
+            posting.setTransaction(transaction);
+            posting.setSeq(next.seq());
+            posting.setAmount(delta.minorUnits());
+            posting.setBalance(next.balance().minorUnits());
+            posting.setTimestamp(transaction.getTimestamp());
+            pending.add(posting);
+            heads.put(walletId, next);
+        }
+
+        private Head headOf(UUID walletId) {
+            Head head = heads.get(walletId);
+            if (head == null) {
+                throw new WalletNotFoundException("Wallet not found: " + walletId);
+            }
+            return head;
+        }
+    }
+
+    private static boolean isSeqConflict(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().toLowerCase(Locale.ROOT).contains(SEQ_CONSTRAINT)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.wattet.service;
+
+import com.example.wattet.event.TransactionRecordedEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Publishes each event to {@code @EventListener}s on the relay thread, inside the relay
+ * transaction: a listener that throws has the batch redelivered, and a slow one slows the relay
+ * down instead of piling events up in memory.
+ */
+@Component
+@ConditionalOnProperty(prefix = "wallet.outbox", name = "sink", havingValue = "listener", matchIfMissing = true)
+public class ListenerOutboxSink implements OutboxSink {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ListenerOutboxSink(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void publish(List<TransactionRecordedEvent> events) {
+        events.forEach(eventPublisher::publishEvent);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.wattet.service;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * The one order in which wallet rows are locked. Matches the unsigned byte order PostgreSQL and
+ * H2 use for uuid columns, so a locking query with {@code order by id} takes its locks in the same
+ * sequence as code that locks wallets one at a time. {@link UUID#compareTo} compares signed longs
+ * and would disagree for ids with the high bit set.
+ */
+final class LockOrdering {
+
+    static final Comparator<UUID> WALLET_IDS = (a, b) -> {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    private LockOrdering() {
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.model.OutboxEvent;
+import com.example.wattet.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drains transaction_outbox into the {@link OutboxSink}: claim the oldest batch, hand it to the
+ * sink, delete it, commit. A failure anywhere rolls the delete back, so every event is delivered at
+ * least once. Batches go out one at a time across all nodes and in sequence order, which keeps the
+ * events of a wallet whose writes lock its row in order. The relay only takes the next batch once the sink accepted the previous
+ * one, and pauses with exponential backoff while it fails; the table absorbs the backlog.
+ */
+@Service
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxSink sink;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletProperties properties;
+    private final Counter published;
+    private final Counter failures;
+
+    private final AtomicBoolean relaying = new AtomicBoolean();
+    private Duration backoff = Duration.ZERO;
+    private volatile long pausedUntil;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, OutboxSink sink,
+                       PlatformTransactionManager transactionManager, WalletProperties properties,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.sink = sink;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.published = meterRegistry.counter("wallet.outbox.published");
+        this.failures = meterRegistry.counter("wallet.outbox.failures");
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.outbox.poll-interval:PT0.1S}")
+    public void relayScheduled() {
+        if (properties.getOutbox().isEnabled() && System.currentTimeMillis() >= pausedUntil) {
+            relay();
+        }
+    }
+
+    /**
+     * Delivers batches until one comes back short.
+     *
+     * @return events delivered
+     */
+    public int relay() {
+        if (!relaying.compareAndSet(false, true)) {
+            return 0;
+        }
+        int total = 0;
+        try {
+            int batchSize = Math.max(1, properties.getOutbox().getBatchSize());
+            int delivered;
+            do {
+                delivered = transactionTemplate.execute(status ->
+                        deliver(outboxEventRepository.claim(PageRequest.of(0, batchSize))));
+                total += delivered;
+            } while (delivered == batchSize);
+            backoff = Duration.ZERO;
+        } catch (PessimisticLockingFailureException ex) {
+            log.debug("Outbox is being relayed by another node");
+        } catch (RuntimeException ex) {
+            failures.increment();
+            WalletProperties.Outbox config = properties.getOutbox();
+            backoff = backoff.isZero() ? config.getInitialBackoff() : min(backoff.multipliedBy(2), config.getMaxBackoff());
+            pausedUntil = System.currentTimeMillis() + backoff.toMillis();
+            log.warn("Relaying outbox events failed, retrying in {}", backoff, ex);
+        } finally {
+            relaying.set(false);
+        }
+        return total;
+    }
+
+    private int deliver(List<OutboxEvent> claimed) {
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+        sink.publish(claimed.stream().map(OutboxEvent::toEvent).toList());
+        outboxEventRepository.deleteAllInBatch(claimed);
+        published.increment(claimed.size());
+        return claimed.size();
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.wattet.service;
+
+import com.example.wattet.event.TransactionRecordedEvent;
+
+import java.util.List;
+
+/**
+ * Where {@link OutboxRelay} delivers events, chosen by {@code wallet.outbox.sink}. Returning means
+ * the whole batch was accepted and may be deleted; throwing means none of it counts as delivered
+ * and all of it comes again, so a sink must tolerate redelivery of events it partly accepted.
+ */
+public interface OutboxSink {
+
+    /**
+     * @param events ordered by sequence
+     */
+    void publish(List<TransactionRecordedEvent> events);
+}
@@ -0,0 +1,510 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.event.BalanceChangedEvent;
+import com.example.wattet.exception.DatabaseBusyException;
+import com.example.wattet.exception.InsufficientBalanceException;
+import com.example.wattet.exception.WalletNotFoundException;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.PendingDeposit;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.repository.PendingDepositRepository;
+import com.example.wattet.repository.TransactionRepository;
+import com.example.wattet.repository.WalletRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Execution engine for {@code ConcurrencyMode.SHARDED}. Wallets are split by id over a fixed set of
+ * single-threaded shards. A shard is the only writer of its wallets' in-memory balances, so it checks
+ * and applies movements without locks or balance reads. Each shard drains its queue in batches and
+ * commits a batch's transaction rows, plus one net balance UPDATE per wallet, in a single database
+ * transaction (group commit). Callers get their result once that transaction has committed.
+ * <p>
+ * A transfer between shards takes two steps. The source shard reserves the amount, taking it out of
+ * the balance without writing anything, and hands the credit to the target shard. That shard commits
+ * the transfer row and both balance changes; if it cannot, the source shard gets the amount back.
+ * <p>
+ * Balances live in this node's memory: run one node in this mode, and do not change wallet rows by
+ * other paths while it runs. Balance reads still go to the database. A wallet whose row refuses a
+ * debit anyway fails only its own movements and is reloaded; the rest of the batch commits.
+ */
+@Service
+@Slf4j
+public class ShardedWalletEngine {
+
+    private static final long POLL_MILLIS = 100;
+
+    private final WalletRepository walletRepository;
+    private final TransactionRepository transactionRepository;
+    private final PendingDepositRepository pendingDepositRepository;
+    private final StripedBalanceService stripedBalanceService;
+    private final BalanceCheckpointService balanceCheckpointService;
+    private final TransactionOutbox transactionOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final WalletProperties properties;
+    private final Shard[] shards;
+    private volatile boolean running = true;
+
+    public ShardedWalletEngine(WalletRepository walletRepository, TransactionRepository transactionRepository,
+                               PendingDepositRepository pendingDepositRepository,
+                               StripedBalanceService stripedBalanceService,
+                               BalanceCheckpointService balanceCheckpointService, TransactionOutbox transactionOutbox,
+                               PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                               WalletProperties properties, MeterRegistry meterRegistry) {
+        this.walletRepository = walletRepository;
+        this.transactionRepository = transactionRepository;
+        this.pendingDepositRepository = pendingDepositRepository;
+        this.stripedBalanceService = stripedBalanceService;
+        this.balanceCheckpointService = balanceCheckpointService;
+        this.transactionOutbox = transactionOutbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.properties = properties;
+        // Other modes never submit, so they do not pay for idle shard threads
+        int count = properties.getConcurrency().getMode() == ConcurrencyMode.SHARDED
+                ? Math.max(1, properties.getSharding().getShards())
+                : 0;
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i);
+            shards[i].thread.start();
+        }
+        Gauge.builder("wallet.shard.queued", this, ShardedWalletEngine::queued).register(meterRegistry);
+    }
+
+    public Transaction deposit(UUID walletId, Money amount) {
+        return submit(walletId, new Deposit(walletId, amount, new CompletableFuture<>()));
+    }
+
+    public Transaction withdraw(UUID walletId, Money amount) {
+        return submit(walletId, new Withdraw(walletId, amount, new CompletableFuture<>()));
+    }
+
+    public Transaction transfer(UUID fromWalletId, UUID toWalletId, Money amount) {
+        return submit(fromWalletId, new Transfer(fromWalletId, toWalletId, amount, new CompletableFuture<>()));
+    }
+
+    /**
+     * Requests waiting in all shard queues.
+     */
+    int queued() {
+        return Arrays.stream(shards).mapToInt(shard -> shard.waiting.get()).sum();
+    }
+
+    int shardIndex(UUID walletId) {
+        return Math.floorMod(walletId.hashCode(), shards.length);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Shard shard : shards) {
+            shard.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        // A transfer forwarded to a shard that had already stopped must not leave its caller waiting
+        for (Shard shard : shards) {
+            Command command;
+            while ((command = shard.queue.poll()) != null) {
+                if (command instanceof Request request) {
+                    request.result().completeExceptionally(new DatabaseBusyException("Wallet engine is shutting down"));
+                } else if (command instanceof Credit credit) {
+                    credit.transfer().result().completeExceptionally(new DatabaseBusyException("Wallet engine is shutting down"));
+                }
+            }
+        }
+    }
+
+    private Transaction submit(UUID walletId, Request request) {
+        if (shards.length == 0) {
+            throw new IllegalStateException("Wallet engine is only started in SHARDED mode");
+        }
+        shards[shardIndex(walletId)].submit(request);
+        try {
+            return request.result().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private sealed interface Command permits Request, Credit, Release, Reload {
+    }
+
+    /**
+     * A caller's movement, queued on the shard of the wallet it debits or credits first.
+     */
+    private sealed interface Request extends Command permits Deposit, Withdraw, Transfer {
+        CompletableFuture<Transaction> result();
+    }
+
+    private record Deposit(UUID walletId, Money amount, CompletableFuture<Transaction> result) implements Request {
+    }
+
+    private record Withdraw(UUID walletId, Money amount, CompletableFuture<Transaction> result) implements Request {
+    }
+
+    private record Transfer(UUID fromWalletId, UUID toWalletId, Money amount,
+                            CompletableFuture<Transaction> result) implements Request {
+    }
+
+    /**
+     * Second step of a transfer between shards, on the target shard; the source has reserved the amount.
+     */
+    private record Credit(Transfer transfer, Shard source) implements Command {
+    }
+
+    /**
+     * Returns a reservation whose transfer did not commit.
+     */
+    private record Release(UUID walletId, Money amount) implements Command {
+    }
+
+    /**
+     * Drops the shard's copy of a balance the database refused, so the next movement loads it again.
+     */
+    private record Reload(UUID walletId) implements Command {
+    }
+
+    /**
+     * A movement applied in memory and waiting for its batch to commit.
+     *
+     * @param undo    reverts the in-memory change when the commit fails
+     * @param release returns the source shard's reservation when the commit fails, or null
+     */
+    private record Entry(TransactionType type, UUID walletId, UUID relatedWalletId, Money amount,
+                         CompletableFuture<Transaction> result, Runnable undo, Runnable release) {
+
+        boolean touches(UUID wallet) {
+            return walletId.equals(wallet) || wallet.equals(relatedWalletId);
+        }
+
+        void fail(RuntimeException ex) {
+            undo.run();
+            if (release != null) {
+                release.run();
+            }
+            result.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * A wallet row refused the net debit its shard computed: the row changed behind the shard's back.
+     */
+    private static final class BalanceMismatchException extends IllegalStateException {
+        private final UUID walletId;
+
+        private BalanceMismatchException(UUID walletId) {
+            super("Wallet " + walletId + " no longer matches its shard balance");
+            this.walletId = walletId;
+        }
+    }
+
+    private static final class Account {
+        private long balance;
+
+        private Account(long balance) {
+            this.balance = balance;
+        }
+    }
+
+    private final class Shard implements Runnable {
+        private final int index;
+        private final Thread thread;
+        private final BlockingQueue<Command> queue = new LinkedBlockingQueue<>();
+        /**
+         * Requests in the queue; steps forwarded by other shards are not counted or refused, so two
+         * shards never wait on each other.
+         */
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final Map<UUID, Account> accounts = new HashMap<>();
+
+        private Shard(int index) {
+            this.index = index;
+            this.thread = new Thread(this, "wallet-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void submit(Request request) {
+            if (!running) {
+                throw new DatabaseBusyException("Wallet engine is shutting down");
+            }
+            if (waiting.incrementAndGet() > properties.getSharding().getQueueCapacity()) {
+                waiting.decrementAndGet();
+                throw new DatabaseBusyException("Wallet shard " + index + " is full, retry later");
+            }
+            queue.add(request);
+        }
+
+        void forward(Command command) {
+            queue.add(command);
+        }
+
+        @Override
+        public void run() {
+            int maxBatchSize = Math.max(1, properties.getSharding().getMaxBatchSize());
+            List<Command> commands = new ArrayList<>(maxBatchSize);
+            while (running) {
+                Command first;
+                try {
+                    first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (first == null) {
+                    continue;
+                }
+                commands.add(first);
+                queue.drainTo(commands, maxBatchSize - 1);
+                List<Entry> entries = new ArrayList<>(commands.size());
+                for (Command command : commands) {
+                    if (command instanceof Request) {
+                        waiting.decrementAndGet();
+                    }
+                    try {
+                        apply(command, entries);
+                    } catch (RuntimeException ex) {
+                        reject(command, ex);
+                    }
+                }
+                commands.clear();
+                if (!entries.isEmpty()) {
+                    commit(entries);
+                }
+            }
+        }
+
+        private void apply(Command command, List<Entry> entries) {
+            switch (command) {
+                case Deposit deposit -> {
+                    Account account = account(deposit.walletId());
+                    Money amount = deposit.amount();
+                    account.balance = Money.ofMinor(account.balance).plus(amount).minorUnits();
+                    entries.add(new Entry(TransactionType.DEPOSIT, deposit.walletId(), null, amount, deposit.result(),
+                            () -> account.balance -= amount.minorUnits(), null));
+                }
+                case Withdraw withdraw -> {
+                    Account account = account(withdraw.walletId());
+                    Money amount = withdraw.amount();
+                    if (account.balance < amount.minorUnits()) {
+                        throw new InsufficientBalanceException("Insufficient balance in wallet: " + withdraw.walletId());
+                    }
+                    account.balance -= amount.minorUnits();
+                    entries.add(new Entry(TransactionType.WITHDRAW, withdraw.walletId(), null, amount, withdraw.result(),
+                            () -> account.balance += amount.minorUnits(), null));
+                }
+                case Transfer transfer -> {
+                    Account from = account(transfer.fromWalletId());
+                    Money amount = transfer.amount();
+                    if (from.balance < amount.minorUnits()) {
+                        throw new InsufficientBalanceException("Insufficient balance in source wallet: " + transfer.fromWalletId());
+                    }
+                    Shard target = shards[shardIndex(transfer.toWalletId())];
+                    if (target != this) {
+                        from.balance -= amount.minorUnits();
+                        target.forward(new Credit(transfer, this));
+                        return;
+                    }
+                    Account to = account(transfer.toWalletId());
+                    // Computed before either balance changes, so an overflow leaves both untouched
+                    long credited = Money.ofMinor(to.balance).plus(amount).minorUnits();
+                    from.balance -= amount.minorUnits();
+                    to.balance = credited;
+                    entries.add(new Entry(TransactionType.TRANSFER, transfer.fromWalletId(), transfer.toWalletId(), amount,
+                            transfer.result(), () -> {
+                                from.balance += amount.minorUnits();
+                                to.balance -= amount.minorUnits();
+                            }, null));
+                }
+                case Credit credit -> {
+                    Transfer transfer = credit.transfer();
+                    Account to = account(transfer.toWalletId());
+                    Money amount = transfer.amount();
+                    to.balance = Money.ofMinor(to.balance).plus(amount).minorUnits();
+                    entries.add(new Entry(TransactionType.TRANSFER, transfer.fromWalletId(), transfer.toWalletId(), amount,
+                            transfer.result(), () -> to.balance -= amount.minorUnits(),
+                            () -> credit.source().forward(new Release(transfer.fromWalletId(), amount))));
+                }
+                case Release release -> {
+                    // Reloaded meanwhile: the database never saw the reservation, nothing to return
+                    Account account = accounts.get(release.walletId());
+                    if (account != null) {
+                        account.balance += release.amount().minorUnits();
+                    }
+                }
+                case Reload reload -> accounts.remove(reload.walletId());
+            }
+        }
+
+        private void reject(Command command, RuntimeException ex) {
+            switch (command) {
+                case Request request -> request.result().completeExceptionally(ex);
+                case Credit credit -> {
+                    // Returned first, so the caller's next request on the source wallet sees the amount back
+                    credit.source().forward(new Release(credit.transfer().fromWalletId(), credit.transfer().amount()));
+                    credit.transfer().result().completeExceptionally(ex);
+                }
+                case Release release -> log.error("Could not return {} to wallet {}", release.amount(), release.walletId(), ex);
+                case Reload reload -> log.error("Could not reload wallet {}", reload.walletId(), ex);
+            }
+        }
+
+        /**
+         * Loaded on the wallet's first movement, and again after the database refused the shard's copy;
+         * in between the shard's copy is the reference.
+         */
+        private Account account(UUID walletId) {
+            Account account = accounts.get(walletId);
+            if (account == null) {
+                // Inside a transaction so the database limiter lets it through: callers waiting on
+                // this shard may hold every permit
+                Long balance = transactionTemplate.execute(status -> absorb(walletId));
+                if (balance == null) {
+                    throw new WalletNotFoundException("Wallet not found: " + walletId);
+                }
+                account = new Account(balance);
+                accounts.put(walletId, account);
+            }
+            return account;
+        }
+
+        private void commit(List<Entry> entries) {
+            List<Entry> pending = entries;
+            while (!pending.isEmpty()) {
+                List<Entry> batch = pending;
+                List<Transaction> saved;
+                try {
+                    saved = transactionTemplate.execute(status -> write(batch));
+                } catch (BalanceMismatchException ex) {
+                    // Only that wallet's movements fail; the others run again without them
+                    log.warn("Wallet {} on wallet shard {} no longer matches the database, reloading it", ex.walletId, index);
+                    List<Entry> remaining = new ArrayList<>(batch.size());
+                    for (Entry entry : batch) {
+                        if (entry.touches(ex.walletId)) {
+                            entry.fail(ex);
+                        } else {
+                            remaining.add(entry);
+                        }
+                    }
+                    reload(ex.walletId);
+                    pending = remaining;
+                    continue;
+                } catch (RuntimeException ex) {
+                    log.warn("Group commit of {} movements on wallet shard {} failed", batch.size(), index, ex);
+                    batch.forEach(entry -> entry.fail(ex));
+                    return;
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result().complete(saved.get(i));
+                }
+                log.debug("Committed {} movements on wallet shard {}", batch.size(), index);
+                return;
+            }
+        }
+
+        private void reload(UUID walletId) {
+            Shard owner = shards[shardIndex(walletId)];
+            if (owner == this) {
+                accounts.remove(walletId);
+            } else {
+                owner.forward(new Reload(walletId));
+            }
+        }
+    }
+
+    /**
+     * Moves the wallet's stripes and pending deposits into its row, so that the row alone holds the
+     * balance {@link #write} updates, and returns it; null when the wallet does not exist. Pending
+     * rows are locked before the wallet row, as a flush takes them, and waited for rather than
+     * skipped, so a flush that claimed some of them has committed before the row is read.
+     */
+    private Long absorb(UUID walletId) {
+        // Wallet row before its pending rows, the order DepositAggregator takes them in
+        Optional<Wallet> found = walletRepository.findByIdForUpdate(walletId);
+        if (found.isEmpty()) {
+            return null;
+        }
+        List<PendingDeposit> deposits = pendingDepositRepository.lockByWalletId(walletId);
+        Wallet wallet = found.get();
+        stripedBalanceService.collapse(wallet);
+        Money balance = Money.ofMinor(wallet.getBalance());
+        for (PendingDeposit deposit : deposits) {
+            balance = balance.plus(Money.ofMinor(deposit.getAmount()));
+        }
+        wallet.setBalance(balance.minorUnits());
+        pendingDepositRepository.deleteAllInBatch(deposits);
+        return wallet.getBalance();
+    }
+
+    private List<Transaction> write(List<Entry> entries) {
+        Map<UUID, Long> deltas = new TreeMap<>(LockOrdering.WALLET_IDS);
+        for (Entry entry : entries) {
+            long amount = entry.amount().minorUnits();
+            switch (entry.type()) {
+                case DEPOSIT -> deltas.merge(entry.walletId(), amount, Math::addExact);
+                case WITHDRAW -> deltas.merge(entry.walletId(), -amount, Math::addExact);
+                case TRANSFER -> {
+                    deltas.merge(entry.walletId(), -amount, Math::addExact);
+                    deltas.merge(entry.relatedWalletId(), amount, Math::addExact);
+                }
+            }
+        }
+        deltas.forEach((walletId, delta) -> {
+            int updated = delta >= 0 ? walletRepository.credit(walletId, delta) : walletRepository.debit(walletId, -delta);
+            if (updated == 0) {
+                // The shard checked the balance; a refused debit means the row changed behind its back
+                throw new BalanceMismatchException(walletId);
+            }
+        });
+
+        // Taken with the rows locked, so it follows every transaction committed on them before
+        LocalDateTime timestamp = LocalDateTime.now();
+        List<Transaction> transactions = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            Transaction transaction = new Transaction();
+            transaction.setWallet(walletRepository.getReferenceById(entry.walletId()));
+            transaction.setType(entry.type());
+            transaction.setAmount(entry.amount().minorUnits());
+            transaction.setTimestamp(timestamp);
+            if (entry.relatedWalletId() != null) {
+                transaction.setRelatedWallet(walletRepository.getReferenceById(entry.relatedWalletId()));
+            }
+            transactions.add(transaction);
+        }
+        List<Transaction> saved = transactionRepository.saveAll(transactions);
+        transactionOutbox.recordAll(saved);
+        // All rows share one timestamp, so a checkpoint of the final balance is valid for any of them
+        saved.forEach(balanceCheckpointService::onTransactionRecorded);
+        deltas.keySet().forEach(walletId -> eventPublisher.publishEvent(new BalanceChangedEvent(walletId, null)));
+        return saved;
+    }
+}
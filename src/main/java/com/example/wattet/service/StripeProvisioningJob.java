@@ -0,0 +1,83 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.model.WalletStripe;
+import com.example.wattet.repository.WalletRepository;
+import com.example.wattet.repository.WalletStripeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Creates the missing stripe rows of every configured hot wallet and folds the stripes of wallets
+ * no longer configured back into their wallet row, so non-striped code paths see the whole balance.
+ */
+@Component
+@Slf4j
+public class StripeProvisioningJob implements ApplicationRunner {
+
+    private final WalletRepository walletRepository;
+    private final WalletStripeRepository stripeRepository;
+    private final StripedBalanceService stripedBalanceService;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletProperties properties;
+
+    public StripeProvisioningJob(WalletRepository walletRepository, WalletStripeRepository stripeRepository,
+                                 StripedBalanceService stripedBalanceService,
+                                 PlatformTransactionManager transactionManager, WalletProperties properties) {
+        this.walletRepository = walletRepository;
+        this.stripeRepository = stripeRepository;
+        this.stripedBalanceService = stripedBalanceService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        WalletProperties.Striping config = properties.getStriping();
+        for (UUID walletId : config.getWalletIds()) {
+            provision(walletId, config.getStripes());
+        }
+        for (UUID walletId : stripeRepository.findWalletIdsWithStripeBalance()) {
+            if (!config.getWalletIds().contains(walletId)) {
+                transactionTemplate.executeWithoutResult(status -> walletRepository.findByIdForUpdate(walletId)
+                        .ifPresent(stripedBalanceService::collapse));
+                log.info("Folded stripes of wallet {} back into its balance", walletId);
+            }
+        }
+    }
+
+    private void provision(UUID walletId, int stripes) {
+        if (!walletRepository.existsById(walletId)) {
+            log.warn("Striped wallet {} does not exist", walletId);
+            return;
+        }
+        Set<Integer> existing = new HashSet<>(stripeRepository.findStripeNumbers(walletId));
+        List<WalletStripe> missing = new ArrayList<>();
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            if (!existing.contains(stripe)) {
+                WalletStripe row = new WalletStripe();
+                row.setWallet(walletRepository.getReferenceById(walletId));
+                row.setStripe(stripe);
+                row.setBalance(0);
+                missing.add(row);
+            }
+        }
+        try {
+            stripeRepository.saveAll(missing);
+        } catch (DataIntegrityViolationException ex) {
+            // Another instance provisioned the same wallet at the same time
+            log.debug("Stripes of wallet {} already provisioned", walletId);
+        }
+    }
+}
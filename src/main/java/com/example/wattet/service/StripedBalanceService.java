@@ -0,0 +1,138 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ReadConsistency;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.exception.InsufficientBalanceException;
+import com.example.wattet.exception.WalletNotFoundException;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.model.WalletStripe;
+import com.example.wattet.repository.WalletRepository;
+import com.example.wattet.repository.WalletStripeRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Balance operations for the hot wallets listed in {@code wallet.striping.wallet-ids}. Credits land
+ * on a random stripe with a single UPDATE, so concurrent deposits rarely touch the same row; debits
+ * try each stripe and then the wallet row, and only lock the lot when no single row holds the
+ * amount. Must be called inside a transaction.
+ */
+@Service
+public class StripedBalanceService {
+
+    private final WalletStripeRepository stripeRepository;
+    private final WalletRepository walletRepository;
+    private final WalletProperties properties;
+    private final Cache<UUID, Money> aggregates;
+
+    public StripedBalanceService(WalletStripeRepository stripeRepository, WalletRepository walletRepository,
+                                 WalletProperties properties) {
+        this.stripeRepository = stripeRepository;
+        this.walletRepository = walletRepository;
+        this.properties = properties;
+        WalletProperties.Striping config = properties.getStriping();
+        this.aggregates = config.getAggregateTtl().isZero() ? null : Caffeine.newBuilder()
+                .maximumSize(Math.max(1, config.getWalletIds().size()))
+                .expireAfterWrite(config.getAggregateTtl())
+                .build();
+    }
+
+    public boolean isStriped(UUID walletId) {
+        return properties.getStriping().getWalletIds().contains(walletId);
+    }
+
+    /**
+     * @return the sum read within the last {@code aggregate-ttl}, or null when there is none
+     */
+    public Money cachedBalance(UUID walletId) {
+        return aggregates == null ? null : aggregates.getIfPresent(walletId);
+    }
+
+    /**
+     * Remembers the sum for {@link #cachedBalance} unless the replica answered.
+     */
+    public Money balance(UUID walletId) {
+        ReadConsistency.takeReplicaRead();
+        Long minorUnits = walletRepository.findBalanceById(walletId);
+        if (minorUnits == null) {
+            throw new WalletNotFoundException("Wallet not found: " + walletId);
+        }
+        Money total = Money.ofMinor(minorUnits);
+        if (aggregates != null && !ReadConsistency.takeReplicaRead()) {
+            aggregates.put(walletId, total);
+        }
+        return total;
+    }
+
+    void credit(UUID walletId, Money amount) {
+        int stripe = ThreadLocalRandom.current().nextInt(stripes());
+        // A stripe that was never provisioned falls back to the wallet row
+        if (stripeRepository.credit(walletId, stripe, amount.minorUnits()) == 0
+                && walletRepository.credit(walletId, amount.minorUnits()) == 0) {
+            throw new WalletNotFoundException("Wallet not found: " + walletId);
+        }
+    }
+
+    void debit(UUID walletId, Money amount, String insufficientMessage) {
+        int stripes = stripes();
+        int start = ThreadLocalRandom.current().nextInt(stripes);
+        for (int i = 0; i < stripes; i++) {
+            if (stripeRepository.debit(walletId, (start + i) % stripes, amount.minorUnits()) == 1) {
+                return;
+            }
+        }
+        if (walletRepository.debit(walletId, amount.minorUnits()) == 1) {
+            return;
+        }
+        drain(walletId, amount, insufficientMessage);
+    }
+
+    /**
+     * Moves every stripe's balance into the already locked wallet row, for code paths that work on
+     * {@code wallet.balance} alone.
+     */
+    void collapse(Wallet lockedWallet) {
+        Money total = Money.ofMinor(lockedWallet.getBalance());
+        for (WalletStripe stripe : stripeRepository.findAllByWalletIdForUpdate(lockedWallet.getId())) {
+            total = total.plus(Money.ofMinor(stripe.getBalance()));
+            stripe.setBalance(0);
+        }
+        lockedWallet.setBalance(total.minorUnits());
+    }
+
+    /**
+     * No single row holds the amount: lock all of them, stripes first as on the fast path, and
+     * take it piecewise.
+     */
+    private void drain(UUID walletId, Money amount, String insufficientMessage) {
+        List<WalletStripe> stripes = stripeRepository.findAllByWalletIdForUpdate(walletId);
+        Wallet wallet = walletRepository.findByIdForUpdate(walletId)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found: " + walletId));
+        Money total = Money.ofMinor(wallet.getBalance());
+        for (WalletStripe stripe : stripes) {
+            total = total.plus(Money.ofMinor(stripe.getBalance()));
+        }
+        if (total.isLessThan(amount)) {
+            throw new InsufficientBalanceException(insufficientMessage + walletId);
+        }
+
+        // Stripes never go negative, so every difference below is within range
+        long remaining = amount.minorUnits();
+        for (WalletStripe stripe : stripes) {
+            long taken = Math.min(stripe.getBalance(), remaining);
+            stripe.setBalance(stripe.getBalance() - taken);
+            remaining -= taken;
+        }
+        wallet.setBalance(wallet.getBalance() - remaining);
+    }
+
+    private int stripes() {
+        return Math.max(1, properties.getStriping().getStripes());
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.ExportFormat;
+import com.example.wattet.dto.TransactionCursor;
+import com.example.wattet.dto.TransactionDTO;
+import com.example.wattet.dto.TransactionPageDTO;
+import com.example.wattet.dto.TransactionRow;
+import com.example.wattet.mapper.TransactionMapper;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.repository.TransactionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Read side of a wallet's transaction history: keyset pages for the API and a constant-memory
+ * export for full downloads.
+ */
+@Service
+public class TransactionHistoryService {
+
+    private static final String CSV_HEADER = "id,walletId,type,amount,timestamp,relatedWalletId";
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionMapper transactionMapper;
+    private final ObjectMapper objectMapper;
+    private final WalletProperties properties;
+
+    public TransactionHistoryService(TransactionRepository transactionRepository, TransactionMapper transactionMapper,
+                                     ObjectMapper objectMapper, WalletProperties properties) {
+        this.transactionRepository = transactionRepository;
+        this.transactionMapper = transactionMapper;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    @Transactional(readOnly = true)
+    public TransactionPageDTO findPage(UUID walletId, TransactionType type, LocalDateTime from, LocalDateTime to,
+                                       String cursor, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        TransactionCursor position = cursor == null || cursor.isBlank() ? null : TransactionCursor.decode(cursor);
+
+        // One extra row tells us whether another page exists without a count query
+        List<TransactionRow> rows = transactionRepository.findHistoryPage(walletId, type, from, to,
+                position == null ? null : position.timestamp(),
+                position == null ? null : position.id(),
+                PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = rows.size() > pageSize;
+        List<TransactionRow> page = hasMore ? rows.subList(0, pageSize) : rows;
+        List<TransactionDTO> items = page.stream()
+                .map(transactionMapper::toDto)
+                .toList();
+        String nextCursor = hasMore ? TransactionCursor.of(page.get(pageSize - 1)).encode() : null;
+        return new TransactionPageDTO(items, nextCursor);
+    }
+
+    /**
+     * Writes the full (filtered) history in chronological order. Rows are projections, not entities,
+     * so nothing accumulates in the persistence context however long the history is.
+     */
+    @Transactional(readOnly = true)
+    public void export(UUID walletId, TransactionType type, LocalDateTime from, LocalDateTime to,
+                       ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<TransactionRow> transactions = transactionRepository.streamHistory(walletId, type, from, to)) {
+            Iterator<TransactionRow> iterator = transactions.iterator();
+            switch (format) {
+                case NDJSON -> writeNdjson(iterator, out);
+                case CSV -> writeCsv(iterator, out);
+            }
+        }
+    }
+
+    private void writeNdjson(Iterator<TransactionRow> transactions, OutputStream out) throws IOException {
+        try (SequenceWriter writer = objectMapper.writerFor(TransactionDTO.class)
+                .withRootValueSeparator("\n")
+                .writeValues(out)) {
+            while (transactions.hasNext()) {
+                writer.write(transactionMapper.toDto(transactions.next()));
+            }
+        }
+    }
+
+    private void writeCsv(Iterator<TransactionRow> transactions, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        while (transactions.hasNext()) {
+            TransactionRow row = transactions.next();
+            writer.write(String.valueOf(row.id()));
+            writer.write(',');
+            writer.write(String.valueOf(row.walletId()));
+            writer.write(',');
+            writer.write(row.type().name());
+            writer.write(',');
+            writer.write(row.amount().toString());
+            writer.write(',');
+            writer.write(row.timestamp().toString());
+            writer.write(',');
+            if (row.relatedWalletId() != null) {
+                writer.write(row.relatedWalletId().toString());
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private int resolvePageSize(Integer limit) {
+        WalletProperties.History config = properties.getHistory();
+        if (limit == null) {
+            return config.getDefaultPageSize();
+        }
+        return Math.max(1, Math.min(limit, config.getMaxPageSize()));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.model.OutboxEvent;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.repository.OutboxEventRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Write side of the outbox ({@code wallet.outbox}): an event row per recorded transaction, inserted
+ * in the caller's transaction so it commits if and only if the movement does. {@link OutboxRelay}
+ * delivers the rows afterwards.
+ */
+@Service
+public class TransactionOutbox {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final WalletProperties properties;
+
+    public TransactionOutbox(OutboxEventRepository outboxEventRepository, WalletProperties properties) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * Must be called after the transaction got its id and, to keep a wallet's events in order,
+     * after its wallet rows are locked or written. Paths that never lock the wallet row (stripes,
+     * aggregated deposits) get no order, see {@link com.example.wattet.event.TransactionRecordedEvent}.
+     */
+    void record(Transaction transaction) {
+        if (properties.getOutbox().isEnabled()) {
+            outboxEventRepository.save(toEvent(transaction));
+        }
+    }
+
+    void recordAll(Collection<Transaction> transactions) {
+        if (properties.getOutbox().isEnabled() && !transactions.isEmpty()) {
+            List<OutboxEvent> events = transactions.stream().map(TransactionOutbox::toEvent).toList();
+            outboxEventRepository.saveAll(events);
+        }
+    }
+
+    private static OutboxEvent toEvent(Transaction transaction) {
+        OutboxEvent event = new OutboxEvent();
+        event.setTransactionId(transaction.getId());
+        event.setWalletId(transaction.getWallet().getId());
+        event.setRelatedWalletId(transaction.getRelatedWallet() == null ? null : transaction.getRelatedWallet().getId());
+        event.setType(transaction.getType());
+        event.setAmount(transaction.getAmount());
+        event.setOccurredAt(transaction.getTimestamp());
+        return event;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the monthly partitions of the transaction table created {@code months-ahead} months in
+ * advance, at startup and daily, so inserts never land in the default partition. Only for databases
+ * migrated with {@code classpath:db/partitioning}; enabled with {@code wallet.schema.partitioning.enabled}.
+ */
+@Component
+@Slf4j
+public class TransactionPartitionJob implements ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WalletProperties properties;
+
+    public TransactionPartitionJob(JdbcTemplate jdbcTemplate, WalletProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        ensurePartitions();
+    }
+
+    @Scheduled(cron = "${wallet.schema.partitioning.cron:0 0 3 * * *}")
+    public void ensurePartitions() {
+        WalletProperties.Schema.Partitioning config = properties.getSchema().getPartitioning();
+        if (!config.isEnabled()) {
+            return;
+        }
+        Integer created = jdbcTemplate.queryForObject("select ensure_transaction_partitions(current_date, ?)",
+                Integer.class, config.getMonthsAhead());
+        if (created != null && created > 0) {
+            log.info("Created {} transaction partitions", created);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.wattet.service;
+
+import com.example.wattet.dto.ProvisioningSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line front end of {@link WalletProvisioningService}:
+ * {@code --provision-wallets=accounts.txt [--provision-output=results.csv]} provisions the file and
+ * exits. The results go next to the input as {@code <input>.results.csv} unless an output is given.
+ * {@link #configure} keeps such a run from starting the web server and the scheduled jobs.
+ */
+@Component
+@Slf4j
+public class WalletProvisioningJob implements ApplicationRunner {
+
+    static final String INPUT_OPTION = "provision-wallets";
+    static final String OUTPUT_OPTION = "provision-output";
+
+    private final WalletProvisioningService walletProvisioningService;
+    private final ApplicationContext context;
+
+    public WalletProvisioningJob(WalletProvisioningService walletProvisioningService, ApplicationContext context) {
+        this.walletProvisioningService = walletProvisioningService;
+        this.context = context;
+    }
+
+    /**
+     * For a provisioning run, defaults the application to no web server and no scheduled jobs; both
+     * can still be turned back on explicitly.
+     */
+    public static void configure(SpringApplication application, String... args) {
+        boolean provisioning = Arrays.stream(args)
+                .anyMatch(arg -> arg.equals("--" + INPUT_OPTION) || arg.startsWith("--" + INPUT_OPTION + "="));
+        if (provisioning) {
+            application.setWebApplicationType(WebApplicationType.NONE);
+            application.setDefaultProperties(Map.of("wallet.scheduling.enabled", "false"));
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!args.containsOption(INPUT_OPTION)) {
+            return;
+        }
+        Path input = Path.of(single(args, INPUT_OPTION));
+        Path output = args.containsOption(OUTPUT_OPTION)
+                ? Path.of(single(args, OUTPUT_OPTION))
+                : input.resolveSibling(input.getFileName() + ".results.csv");
+        log.info("Provisioning wallets from {} into {}", input, output);
+        try (BufferedReader accountIds = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter results = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            ProvisioningSummary summary = walletProvisioningService.provision(accountIds, results);
+            log.info("Provisioned {} accounts, results in {}", summary.total(), output);
+        }
+        // A one-off run: exit even when a web server or scheduler was turned on explicitly
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    private static String single(ApplicationArguments args, String option) {
+        List<String> values = args.getOptionValues(option);
+        if (values == null || values.size() != 1 || values.get(0).isBlank()) {
+            throw new IllegalArgumentException("--" + option + " takes exactly one path");
+        }
+        return values.get(0);
+    }
+}
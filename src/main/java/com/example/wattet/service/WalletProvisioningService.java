@@ -0,0 +1,263 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.ProvisioningStatus;
+import com.example.wattet.dto.ProvisioningSummary;
+import com.example.wattet.model.UuidV7;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Bulk wallet creation for onboarding. Reads account ids, one per line, and writes one CSV result
+ * line per account in input order. Works through the input in chunks of
+ * {@code wallet.provisioning.chunk-size}, one transaction each, so memory stays flat however long
+ * the input is. A chunk is staged in a temporary table (with COPY on PostgreSQL, JDBC batches
+ * elsewhere) and inserted with one {@code INSERT ... ON CONFLICT DO NOTHING}. An account that
+ * already has a wallet keeps it. Results are written after their chunk has committed, so running
+ * an interrupted input again is safe: what was created the first time comes back as EXISTING.
+ * The last line is {@code # complete: ...} with the counts, or {@code # failed after ...} with the
+ * error, so a reader can tell a finished result from a truncated one.
+ */
+@Service
+@Slf4j
+public class WalletProvisioningService {
+
+    private static final String CSV_HEADER = "line,accountId,walletId,status";
+    private static final long PROGRESS_EVERY = 100_000;
+
+    private static final String CREATE_STAGING = "create local temporary table if not exists wallet_provisioning"
+            + " (line bigint not null, account_id uuid not null, id uuid not null)";
+    private static final String CLEAR_STAGING = "delete from wallet_provisioning";
+    private static final String COPY_STAGING = "copy wallet_provisioning (line, account_id, id) from stdin (format csv)";
+    private static final String INSERT_STAGING = "insert into wallet_provisioning (line, account_id, id) values (?, ?, ?)";
+    // In line order, so the first of repeated accounts is the one created
+    private static final String INSERT_WALLETS = "insert into wallet (id, account_id, balance, version)"
+            + " select id, account_id, 0, 0 from wallet_provisioning order by line on conflict do nothing";
+    // A wallet carrying the id staged for the line was created by that line
+    private static final String FIND_WALLETS = "select p.line, w.id, p.id from wallet_provisioning p"
+            + " join wallet w on w.account_id = p.account_id";
+
+    private final DataSource dataSource;
+    private final WalletProperties properties;
+
+    public WalletProvisioningService(DataSource dataSource, WalletProperties properties) {
+        this.dataSource = dataSource;
+        this.properties = properties;
+    }
+
+    /**
+     * Blank lines are skipped; any other line that is not a UUID is reported as INVALID.
+     *
+     * @param results receives {@code line,accountId,walletId,status} rows, flushed after every chunk,
+     *                and the closing {@code #} line
+     */
+    public ProvisioningSummary provision(Reader accountIds, Writer results) throws IOException {
+        int chunkSize = Math.max(1, properties.getProvisioning().getChunkSize());
+        BufferedReader reader = accountIds instanceof BufferedReader buffered ? buffered : new BufferedReader(accountIds);
+        Progress progress = new Progress();
+        Exception failure = null;
+        try {
+            results.write(CSV_HEADER);
+            results.write('\n');
+            provisionAll(reader, results, progress, chunkSize);
+            ProvisioningSummary summary = progress.summary();
+            results.write("# complete: " + summary.created() + " created, " + summary.existing() + " existing, "
+                    + summary.invalid() + " invalid\n");
+            log.info("Provisioning finished: {} created, {} existing, {} invalid",
+                    summary.created(), summary.existing(), summary.invalid());
+            return summary;
+        } catch (IOException | RuntimeException ex) {
+            failure = ex;
+            try {
+                // The rows above stay valid; the marker tells the reader the rest is missing
+                results.write("# failed after " + progress.total() + " accounts: "
+                        + String.valueOf(ex.getMessage()).replaceAll("[\\r\\n]+", " ") + "\n");
+            } catch (IOException writeFailure) {
+                ex.addSuppressed(writeFailure);
+            }
+            throw ex;
+        } finally {
+            try {
+                results.flush();
+            } catch (IOException flushFailure) {
+                if (failure == null) {
+                    throw flushFailure;
+                }
+                failure.addSuppressed(flushFailure);
+            }
+        }
+    }
+
+    private void provisionAll(BufferedReader reader, Writer results, Progress progress, int chunkSize) throws IOException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_STAGING);
+            }
+            connection.commit();
+            List<Line> chunk = new ArrayList<>(chunkSize);
+            long number = 0;
+            String text;
+            while ((text = reader.readLine()) != null) {
+                number++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                chunk.add(new Line(number, parse(text.trim())));
+                if (chunk.size() == chunkSize) {
+                    provisionChunk(connection, chunk, results, progress);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                provisionChunk(connection, chunk, results, progress);
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Provisioning failed after " + progress.total() + " accounts", ex);
+        }
+    }
+
+    private void provisionChunk(Connection connection, List<Line> chunk, Writer results, Progress progress)
+            throws SQLException, IOException {
+        Map<Long, UUID> walletIds = new HashMap<>();
+        Set<Long> created = new HashSet<>();
+        List<Line> accounts = chunk.stream().filter(line -> line.accountId() != null).toList();
+        if (!accounts.isEmpty()) {
+            try {
+                stage(connection, accounts);
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate(INSERT_WALLETS);
+                    try (ResultSet rows = statement.executeQuery(FIND_WALLETS)) {
+                        while (rows.next()) {
+                            long line = rows.getLong(1);
+                            UUID walletId = rows.getObject(2, UUID.class);
+                            walletIds.put(line, walletId);
+                            if (walletId.equals(rows.getObject(3, UUID.class))) {
+                                created.add(line);
+                            }
+                        }
+                    }
+                }
+                connection.commit();
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            }
+        }
+
+        long before = progress.total();
+        for (Line line : chunk) {
+            ProvisioningStatus status;
+            if (line.accountId() == null) {
+                status = ProvisioningStatus.INVALID;
+            } else {
+                status = created.contains(line.number()) ? ProvisioningStatus.CREATED : ProvisioningStatus.EXISTING;
+            }
+            progress.count(status);
+            writeResult(results, line, walletIds.get(line.number()), status);
+        }
+        results.flush();
+        if (progress.total() / PROGRESS_EVERY > before / PROGRESS_EVERY) {
+            log.info("Provisioned {} accounts: {} created, {} existing, {} invalid",
+                    progress.total(), progress.created, progress.existing, progress.invalid);
+        }
+    }
+
+    private void stage(Connection connection, List<Line> accounts) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(CLEAR_STAGING);
+        }
+        if (connection.isWrapperFor(PGConnection.class)) {
+            StringBuilder csv = new StringBuilder(accounts.size() * 96);
+            for (Line line : accounts) {
+                csv.append(line.number()).append(',').append(line.accountId()).append(',').append(UuidV7.next()).append('\n');
+            }
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING, new StringReader(csv.toString()));
+            return;
+        }
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_STAGING)) {
+            for (Line line : accounts) {
+                insert.setLong(1, line.number());
+                insert.setObject(2, line.accountId());
+                insert.setObject(3, UuidV7.next());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private static void writeResult(Writer results, Line line, UUID walletId, ProvisioningStatus status) throws IOException {
+        results.write(Long.toString(line.number()));
+        results.write(',');
+        if (line.accountId() != null) {
+            results.write(line.accountId().toString());
+        }
+        results.write(',');
+        if (walletId != null) {
+            results.write(walletId.toString());
+        }
+        results.write(',');
+        results.write(status.name());
+        results.write('\n');
+    }
+
+    private static UUID parse(String text) {
+        // fromString alone also takes shortened groups such as 1-2-3-4-5
+        if (text.length() != 36) {
+            return null;
+        }
+        try {
+            return UUID.fromString(text);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @param accountId null when the text is not an account id
+     */
+    private record Line(long number, UUID accountId) {
+    }
+
+    private static final class Progress {
+        private long created;
+        private long existing;
+        private long invalid;
+
+        void count(ProvisioningStatus status) {
+            switch (status) {
+                case CREATED -> created++;
+                case EXISTING -> existing++;
+                case INVALID -> invalid++;
+            }
+        }
+
+        long total() {
+            return created + existing + invalid;
+        }
+
+        ProvisioningSummary summary() {
+            return new ProvisioningSummary(created, existing, invalid);
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package com.example.wattet.service;
 
+import com.example.wattet.aspect.GroupCommit;
+import com.example.wattet.aspect.RetryOnConcurrencyFailure;
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.ReadConsistency;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.BalanceSnapshot;
+import com.example.wattet.event.BalanceChangedEvent;
 import com.example.wattet.exception.InsufficientBalanceException;
 import com.example.wattet.exception.InvalidAmountException;
 import com.example.wattet.exception.WalletAlreadyExistsException;
 import com.example.wattet.exception.WalletNotFoundException;
+import com.example.wattet.model.Money;
 import com.example.wattet.model.Transaction;
 import com.example.wattet.model.TransactionType;
 import com.example.wattet.model.Wallet;
@@ -12,14 +20,14 @@ import com.example.wattet.repository.WalletRepository;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -28,10 +36,35 @@ public class WalletService {
 
     private final WalletRepository walletRepository;
     private final TransactionRepository transactionRepository;
+    private final BalanceCheckpointService balanceCheckpointService;
+    private final LedgerService ledgerService;
+    private final StripedBalanceService stripedBalanceService;
+    private final DepositAggregator depositAggregator;
+    private final TransactionOutbox transactionOutbox;
+    private final BalanceCache balanceCache;
+    private final BalanceLoader balanceLoader;
+    private final ShardedWalletEngine shardedWalletEngine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final WalletProperties properties;
 
-    public WalletService(WalletRepository walletRepository, TransactionRepository transactionRepository) {
+    public WalletService(WalletRepository walletRepository, TransactionRepository transactionRepository,
+                         BalanceCheckpointService balanceCheckpointService, LedgerService ledgerService,
+                         StripedBalanceService stripedBalanceService, DepositAggregator depositAggregator,
+                         TransactionOutbox transactionOutbox, BalanceCache balanceCache, BalanceLoader balanceLoader,
+                         ShardedWalletEngine shardedWalletEngine, ApplicationEventPublisher eventPublisher,
+                         WalletProperties properties) {
         this.walletRepository = walletRepository;
         this.transactionRepository = transactionRepository;
+        this.balanceCheckpointService = balanceCheckpointService;
+        this.ledgerService = ledgerService;
+        this.stripedBalanceService = stripedBalanceService;
+        this.depositAggregator = depositAggregator;
+        this.transactionOutbox = transactionOutbox;
+        this.balanceCache = balanceCache;
+        this.balanceLoader = balanceLoader;
+        this.shardedWalletEngine = shardedWalletEngine;
+        this.eventPublisher = eventPublisher;
+        this.properties = properties;
     }
 
     @Transactional
@@ -42,109 +75,259 @@ public class WalletService {
 
         Wallet wallet = new Wallet();
         wallet.setAccountId(accountId);
-        wallet.setBalance(BigDecimal.ZERO);
+        wallet.setBalance(0);
         return walletRepository.save(wallet);
     }
 
-    public BigDecimal getBalance(@NotNull @Valid UUID walletId) {
-        Wallet wallet = walletRepository.findById(walletId)
-                .orElseThrow(() -> new WalletNotFoundException("Wallet not found: " + walletId));
-        return wallet.getBalance();
+    public Money getBalance(@NotNull @Valid UUID walletId) {
+        return getBalance(walletId, false);
     }
 
+    /**
+     * Not transactional itself: a cache hit touches no connection, only {@link BalanceLoader} reads
+     * the database. A read carrying a {@link ReadConsistency} token skips the caches, which cannot
+     * tell whether they saw the write behind it.
+     *
+     * @param strict read the committed balance from the database instead of the local cache; with
+     *               {@code wallet.replica} that database may still be the replica, bounded by max-staleness
+     */
+    public Money getBalance(@NotNull @Valid UUID walletId, boolean strict) {
+        strict |= ReadConsistency.current() != null;
+        if (isStriped(walletId)) {
+            Money cached = strict ? null : stripedBalanceService.cachedBalance(walletId);
+            return cached != null ? cached : balanceLoader.loadStriped(walletId);
+        }
+        BalanceSnapshot snapshot = strict
+                ? balanceLoader.load(walletId)
+                : balanceCache.get(walletId, balanceLoader::load);
+        return snapshot.balance();
+    }
+
+    @RetryOnConcurrencyFailure
+    @GroupCommit
     @Transactional
-    public Transaction deposit(@NotNull UUID walletId, BigDecimal amount) {
+    public Transaction deposit(@NotNull UUID walletId, Money amount) {
         validateAmount(amount);
-        Wallet wallet = getWalletById(walletId);
-        wallet.setBalance(wallet.getBalance().add(amount));
+        if (isSharded()) {
+            return shardedWalletEngine.deposit(walletId, amount);
+        }
+        if (isLedger()) {
+            LedgerService.Session ledger = ledgerService.open(List.of(walletId));
+            Transaction transaction = createTransaction(walletRepository.getReferenceById(walletId), TransactionType.DEPOSIT, amount, null);
+            writeLedger(ledger, transaction, walletId);
+            log.debug("Deposit of {} made to wallet {}", amount, walletId);
+            return transaction;
+        }
+        if (depositAggregator.isEnabled()) {
+            depositAggregator.enqueue(walletId, amount);
+            eventPublisher.publishEvent(new BalanceChangedEvent(walletId, null));
+            log.debug("Deposit of {} to wallet {} queued", amount, walletId);
+            return createTransaction(walletRepository.getReferenceById(walletId), TransactionType.DEPOSIT, amount, null);
+        }
+        if (isAtomic() || isStriped(walletId)) {
+            credit(walletId, amount);
+            eventPublisher.publishEvent(new BalanceChangedEvent(walletId, null));
+            log.debug("Deposit of {} made to wallet {}", amount, walletId);
+            return createTransaction(walletRepository.getReferenceById(walletId), TransactionType.DEPOSIT, amount, null);
+        }
+        Wallet wallet = getWalletForUpdate(walletId);
+        wallet.setBalance(Money.ofMinor(wallet.getBalance()).plus(amount).minorUnits());
         walletRepository.save(wallet);
-        log.info("Deposit of {} made to wallet {}", amount, walletId);
+        eventPublisher.publishEvent(new BalanceChangedEvent(walletId, wallet));
+        log.debug("Deposit of {} made to wallet {}", amount, walletId);
         return createTransaction(wallet, TransactionType.DEPOSIT, amount, null);
     }
 
+    @RetryOnConcurrencyFailure
+    @GroupCommit
     @Transactional
-    public Transaction withdraw(@NotNull UUID walletId, BigDecimal amount) {
+    public Transaction withdraw(@NotNull UUID walletId, Money amount) {
         validateAmount(amount);
-        Wallet wallet = getWalletById(walletId);
-        if (wallet.getBalance().compareTo(amount) < 0) {
+        if (isSharded()) {
+            return shardedWalletEngine.withdraw(walletId, amount);
+        }
+        if (isLedger()) {
+            LedgerService.Session ledger = ledgerService.open(List.of(walletId));
+            if (ledger.balance(walletId).isLessThan(amount)) {
+                throw new InsufficientBalanceException("Insufficient balance in wallet: " + walletId);
+            }
+            Transaction transaction = createTransaction(walletRepository.getReferenceById(walletId), TransactionType.WITHDRAW, amount, null);
+            writeLedger(ledger, transaction, walletId);
+            log.debug("Withdrawal of {} made from wallet {}", amount, walletId);
+            return transaction;
+        }
+        depositAggregator.fold(walletId);
+        if (isAtomic() || isStriped(walletId)) {
+            debit(walletId, amount, "Insufficient balance in wallet: ");
+            eventPublisher.publishEvent(new BalanceChangedEvent(walletId, null));
+            log.debug("Withdrawal of {} made from wallet {}", amount, walletId);
+            return createTransaction(walletRepository.getReferenceById(walletId), TransactionType.WITHDRAW, amount, null);
+        }
+        Wallet wallet = getWalletForUpdate(walletId);
+        Money balance = Money.ofMinor(wallet.getBalance());
+        if (balance.isLessThan(amount)) {
             throw new InsufficientBalanceException("Insufficient balance in wallet: " + walletId);
         }
-        wallet.setBalance(wallet.getBalance().subtract(amount));
+        wallet.setBalance(balance.minus(amount).minorUnits());
         walletRepository.save(wallet);
-        log.info("Withdrawal of {} made from wallet {}", amount, walletId);
+        eventPublisher.publishEvent(new BalanceChangedEvent(walletId, wallet));
+        log.debug("Withdrawal of {} made from wallet {}", amount, walletId);
         return createTransaction(wallet, TransactionType.WITHDRAW, amount, null);
     }
 
+    @RetryOnConcurrencyFailure
+    @GroupCommit
     @Transactional
-    public Transaction transfer(@NotNull UUID fromWalletId, @NotNull UUID toWalletId, BigDecimal amount) {
+    public Transaction transfer(@NotNull UUID fromWalletId, @NotNull UUID toWalletId, Money amount) {
         validateAmount(amount);
         if (fromWalletId.equals(toWalletId)) {
             throw new RuntimeException("Cannot transfer to the same wallet");
         }
-        Wallet fromWallet = getWalletById(fromWalletId);
-        Wallet toWallet = getWalletById(toWalletId);
+        if (isSharded()) {
+            return shardedWalletEngine.transfer(fromWalletId, toWalletId, amount);
+        }
+        // Always lock the lower id first so two opposite transfers cannot deadlock each other
+        boolean fromFirst = LockOrdering.WALLET_IDS.compare(fromWalletId, toWalletId) < 0;
+        if (isLedger()) {
+            LedgerService.Session ledger = ledgerService.open(List.of(fromWalletId, toWalletId));
+            if (ledger.balance(fromWalletId).isLessThan(amount)) {
+                throw new InsufficientBalanceException("Insufficient balance in source wallet: " + fromWalletId);
+            }
+            Transaction transaction = createTransaction(walletRepository.getReferenceById(fromWalletId), TransactionType.TRANSFER, amount,
+                    walletRepository.getReferenceById(toWalletId));
+            writeLedger(ledger, transaction, fromWalletId, toWalletId);
+            log.debug("Transfer of {} from wallet {} to wallet {}", amount, fromWalletId, toWalletId);
+            return transaction;
+        }
+        // The target too, so the fold takes both rows in lock order before the locks below
+        depositAggregator.fold(fromWalletId, toWalletId);
+        if (isAtomic() || isStriped(fromWalletId) || isStriped(toWalletId)) {
+            if (fromFirst) {
+                debit(fromWalletId, amount, "Insufficient balance in source wallet: ");
+                credit(toWalletId, amount);
+            } else {
+                credit(toWalletId, amount);
+                debit(fromWalletId, amount, "Insufficient balance in source wallet: ");
+            }
+            eventPublisher.publishEvent(new BalanceChangedEvent(fromWalletId, null));
+            eventPublisher.publishEvent(new BalanceChangedEvent(toWalletId, null));
+            log.debug("Transfer of {} from wallet {} to wallet {}", amount, fromWalletId, toWalletId);
+            return createTransaction(walletRepository.getReferenceById(fromWalletId), TransactionType.TRANSFER, amount,
+                    walletRepository.getReferenceById(toWalletId));
+        }
+        Wallet first = getWalletForUpdate(fromFirst ? fromWalletId : toWalletId);
+        Wallet second = getWalletForUpdate(fromFirst ? toWalletId : fromWalletId);
+        Wallet fromWallet = fromFirst ? first : second;
+        Wallet toWallet = fromFirst ? second : first;
 
-        if (fromWallet.getBalance().compareTo(amount) < 0) {
+        Money fromBalance = Money.ofMinor(fromWallet.getBalance());
+        if (fromBalance.isLessThan(amount)) {
             throw new InsufficientBalanceException("Insufficient balance in source wallet: " + fromWalletId);
         }
 
-        fromWallet.setBalance(fromWallet.getBalance().subtract(amount));
-        toWallet.setBalance(toWallet.getBalance().add(amount));
+        // Both computed before either entity changes, so an overflow leaves them untouched
+        long credited = Money.ofMinor(toWallet.getBalance()).plus(amount).minorUnits();
+        fromWallet.setBalance(fromBalance.minus(amount).minorUnits());
+        toWallet.setBalance(credited);
         walletRepository.save(fromWallet);
         walletRepository.save(toWallet);
-        log.info("Transfer of {} from wallet {} to wallet {}", amount, fromWalletId, toWalletId);
+        eventPublisher.publishEvent(new BalanceChangedEvent(fromWalletId, fromWallet));
+        eventPublisher.publishEvent(new BalanceChangedEvent(toWalletId, toWallet));
+        log.debug("Transfer of {} from wallet {} to wallet {}", amount, fromWalletId, toWalletId);
         return createTransaction(fromWallet, TransactionType.TRANSFER, amount, toWallet);
     }
 
-    private Wallet getWalletById(UUID walletId) {
-        return walletRepository.findById(walletId)
-                .orElseThrow(() -> new WalletNotFoundException("Wallet not found: " + walletId));
+    private boolean isAtomic() {
+        return properties.getConcurrency().getMode() == ConcurrencyMode.ATOMIC;
+    }
+
+    private boolean isLedger() {
+        return properties.getConcurrency().getMode() == ConcurrencyMode.LEDGER;
+    }
+
+    private boolean isSharded() {
+        return properties.getConcurrency().getMode() == ConcurrencyMode.SHARDED;
+    }
+
+    private void writeLedger(LedgerService.Session ledger, Transaction transaction, UUID... walletIds) {
+        ledger.append(transaction);
+        ledger.write();
+        for (UUID walletId : walletIds) {
+            eventPublisher.publishEvent(new BalanceChangedEvent(walletId, null));
+        }
+    }
+
+    /**
+     * Hot wallets are striped in every mode but LEDGER, where nothing updates balance rows anyway,
+     * and SHARDED, where one shard writes the row once per batch.
+     */
+    private boolean isStriped(UUID walletId) {
+        return !isLedger() && !isSharded() && stripedBalanceService.isStriped(walletId);
     }
 
-    private void validateAmount(BigDecimal amount) {
+    private void credit(UUID walletId, Money amount) {
+        if (isStriped(walletId)) {
+            stripedBalanceService.credit(walletId, amount);
+            return;
+        }
+        if (walletRepository.credit(walletId, amount.minorUnits()) == 0) {
+            throw new WalletNotFoundException("Wallet not found: " + walletId);
+        }
+    }
+
+    private void debit(UUID walletId, Money amount, String insufficientMessage) {
+        if (isStriped(walletId)) {
+            stripedBalanceService.debit(walletId, amount, insufficientMessage);
+            return;
+        }
+        if (walletRepository.debit(walletId, amount.minorUnits()) == 0) {
+            // Zero rows is ambiguous, only the failure path pays for the extra lookup
+            if (!walletRepository.existsById(walletId)) {
+                throw new WalletNotFoundException("Wallet not found: " + walletId);
+            }
+            throw new InsufficientBalanceException(insufficientMessage + walletId);
+        }
+    }
+
+    private Wallet getWalletForUpdate(UUID walletId) {
+        Optional<Wallet> wallet = properties.getConcurrency().getMode() == ConcurrencyMode.PESSIMISTIC
+                ? walletRepository.findByIdForUpdate(walletId)
+                : walletRepository.findById(walletId);
+        return wallet.orElseThrow(() -> new WalletNotFoundException("Wallet not found: " + walletId));
+    }
+
+    private void validateAmount(Money amount) {
         Objects.requireNonNull(amount, "Amount cannot be null");
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+        if (amount.signum() <= 0) {
             throw new InvalidAmountException("Amount must be greater than zero");
         }
     }
 
-    private Transaction createTransaction(Wallet wallet, TransactionType type, BigDecimal amount, Wallet relatedWallet) {
+    private Transaction createTransaction(Wallet wallet, TransactionType type, Money amount, Wallet relatedWallet) {
         Transaction transaction = new Transaction();
         transaction.setWallet(wallet);
         transaction.setType(type);
-        transaction.setAmount(amount);
+        transaction.setAmount(amount.minorUnits());
         transaction.setTimestamp(LocalDateTime.now());
         transaction.setRelatedWallet(relatedWallet);
-        return transactionRepository.save(transaction);
+        Transaction saved = transactionRepository.save(transaction);
+        balanceCheckpointService.onTransactionRecorded(saved);
+        transactionOutbox.record(saved);
+        return saved;
     }
 
-    public BigDecimal getHistoricalBalance(@NotNull UUID walletId, LocalDateTime timestamp) {
-        Wallet wallet = walletRepository.findById(walletId)
-                .orElseThrow(() -> new RuntimeException("Wallet not found"));
-
-        List<Transaction> transactions = transactionRepository
-                .findByWalletIdAndTimestampLessThanEqual(walletId, timestamp);
-
-        transactions.sort(Comparator.comparing(Transaction::getTimestamp)
-                .thenComparing(Transaction::getId));
-
-        BigDecimal historicalBalance = wallet.getBalance();
-
-        for (Transaction transaction : transactions) {
-            switch (transaction.getType()) {
-                case DEPOSIT -> historicalBalance = historicalBalance.subtract(transaction.getAmount());
-                case WITHDRAW -> historicalBalance = historicalBalance.add(transaction.getAmount());
-                case TRANSFER -> {
-                    if (walletId.equals(transaction.getWallet().getId())) {
-                        historicalBalance = historicalBalance.add(transaction.getAmount());
-                    } else {
-                        historicalBalance = historicalBalance.subtract(transaction.getAmount());
-                    }
-                }
+    @Transactional(readOnly = true)
+    public Money getHistoricalBalance(@NotNull UUID walletId, LocalDateTime timestamp) {
+        if (!walletRepository.existsById(walletId)) {
+            throw new WalletNotFoundException("Wallet not found: " + walletId);
+        }
+        if (isLedger()) {
+            Optional<Money> balance = ledgerService.balanceAt(walletId, timestamp);
+            if (balance.isPresent()) {
+                return balance.get();
             }
         }
-
-        return historicalBalance;
+        return balanceCheckpointService.balanceAt(walletId, timestamp);
     }
 
 }
\ No newline at end of file
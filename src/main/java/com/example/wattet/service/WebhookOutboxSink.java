@@ -0,0 +1,39 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.event.TransactionRecordedEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+
+/**
+ * POSTs each batch as a JSON array to {@code wallet.outbox.webhook.url}. Any response other than
+ * 2xx, or a timeout, fails the batch and the relay backs off before sending it again.
+ */
+@Component
+@ConditionalOnProperty(prefix = "wallet.outbox", name = "sink", havingValue = "webhook")
+public class WebhookOutboxSink implements OutboxSink {
+
+    private final RestTemplate restTemplate;
+    private final String url;
+
+    public WebhookOutboxSink(RestTemplateBuilder restTemplateBuilder, WalletProperties properties) {
+        WalletProperties.Outbox.Webhook webhook = properties.getOutbox().getWebhook();
+        if (webhook.getUrl() == null || webhook.getUrl().isBlank()) {
+            throw new IllegalStateException("wallet.outbox.webhook.url is required with the webhook sink");
+        }
+        this.url = webhook.getUrl();
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(webhook.getConnectTimeout())
+                .setReadTimeout(webhook.getReadTimeout())
+                .build();
+    }
+
+    @Override
+    public void publish(List<TransactionRecordedEvent> events) {
+        restTemplate.postForLocation(url, events);
+    }
+}
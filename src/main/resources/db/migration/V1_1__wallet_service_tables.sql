@@ -0,0 +1,60 @@
+-- Columns and tables the service gained before migrations were introduced: optimistic locking,
+-- idempotency keys, the ledger, balance stripes and pending deposits. Runs on new databases and on
+-- databases baselined at V1 alike. Only adds: existing wallets start at version 0.
+
+alter table wallet add column version bigint default 0 not null;
+
+create sequence wallet_stripe_seq start with 1 increment by 50;
+create sequence pending_deposit_seq start with 1 increment by 50;
+
+create table idempotency_key (
+    idempotency_key   varchar(255)  not null,
+    fingerprint       varchar(255)  not null,
+    transaction_id    uuid          not null,
+    wallet_id         uuid,
+    type              varchar(255)  check (type in ('DEPOSIT', 'WITHDRAW', 'TRANSFER')),
+    amount            numeric(19,2),
+    timestamp         timestamp(6),
+    related_wallet_id uuid,
+    created_at        timestamp(6)  not null,
+    constraint pk_idempotency_key primary key (idempotency_key)
+);
+
+create index idx_idempotency_key_created_at on idempotency_key (created_at);
+
+create table posting (
+    id             uuid          not null,
+    wallet_id      uuid          not null,
+    transaction_id uuid          not null,
+    seq            bigint        not null,
+    amount         numeric(19,2) not null,
+    balance        numeric(19,2) not null,
+    timestamp      timestamp(6)  not null,
+    constraint pk_posting primary key (id),
+    constraint uk_posting_wallet_seq unique (wallet_id, seq),
+    constraint fk_posting_wallet foreign key (wallet_id) references wallet (id),
+    constraint fk_posting_transaction foreign key (transaction_id) references transaction (id)
+);
+
+create index idx_posting_wallet_timestamp_seq on posting (wallet_id, timestamp, seq);
+
+create table wallet_stripe (
+    id        bigint        not null,
+    wallet_id uuid          not null,
+    stripe    integer       not null,
+    balance   numeric(19,2) not null,
+    constraint pk_wallet_stripe primary key (id),
+    constraint uk_wallet_stripe unique (wallet_id, stripe),
+    constraint fk_wallet_stripe_wallet foreign key (wallet_id) references wallet (id)
+);
+
+create table pending_deposit (
+    id         bigint        not null,
+    wallet_id  uuid          not null,
+    amount     numeric(19,2) not null,
+    created_at timestamp(6)  not null,
+    constraint pk_pending_deposit primary key (id),
+    constraint fk_pending_deposit_wallet foreign key (wallet_id) references wallet (id)
+);
+
+create index idx_pending_deposit_wallet on pending_deposit (wallet_id);
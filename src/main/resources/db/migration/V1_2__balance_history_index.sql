@@ -0,0 +1,6 @@
+-- Index for the historical balance lookup (latest checkpoint at or before a timestamp). A baselined
+-- database may already hold a large balance_history, so it is built CONCURRENTLY, which Flyway runs
+-- outside a transaction.
+
+create index concurrently if not exists idx_balance_history_wallet_timestamp
+    on balance_history (wallet_id, timestamp);
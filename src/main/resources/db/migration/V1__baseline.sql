@@ -0,0 +1,36 @@
+-- Schema as Hibernate's ddl-auto left it before migrations were introduced: the wallet, transaction
+-- and balance_history tables of the original service. Databases created that way are baselined at
+-- this version (spring.flyway.baseline-on-migrate) and start at V1.1.
+
+create sequence balance_history_seq start with 1 increment by 50;
+
+create table wallet (
+    id         uuid          not null,
+    account_id uuid          not null,
+    balance    numeric(19,2) not null,
+    constraint pk_wallet primary key (id),
+    constraint uk_wallet_account_id unique (account_id)
+);
+
+create table transaction (
+    id                uuid          not null,
+    type              varchar(255)  check (type in ('DEPOSIT', 'WITHDRAW', 'TRANSFER')),
+    amount            numeric(38,2),
+    timestamp         timestamp(6),
+    wallet_id         uuid,
+    related_wallet_id uuid,
+    created_by        varchar(255),
+    updated_by        varchar(255),
+    constraint pk_transaction primary key (id),
+    constraint fk_transaction_wallet foreign key (wallet_id) references wallet (id),
+    constraint fk_transaction_related_wallet foreign key (related_wallet_id) references wallet (id)
+);
+
+create table balance_history (
+    id        bigint        not null,
+    wallet_id uuid,
+    balance   numeric(38,2),
+    timestamp timestamp(6),
+    constraint pk_balance_history primary key (id),
+    constraint fk_balance_history_wallet foreign key (wallet_id) references wallet (id)
+);
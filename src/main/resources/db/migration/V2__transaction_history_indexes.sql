@@ -0,0 +1,17 @@
+-- Covering indexes for the transaction repository queries. Built CONCURRENTLY, which Flyway runs
+-- outside a transaction, so writes keep flowing while a large table is indexed.
+
+-- findByWalletId*, findHistoryPage, streamHistory and the wallet side of sumBalanceDelta and
+-- streamBalanceMovements: equality on wallet_id, range and order on (timestamp, id). The included
+-- columns let the balance queries run as index-only scans.
+create index concurrently if not exists idx_transaction_wallet_history
+    on transaction (wallet_id, timestamp, id) include (type, amount, related_wallet_id);
+
+-- Incoming transfers, the other side of the OR in sumBalanceDelta and streamBalanceMovements.
+-- Only transfers have a related wallet, so the partial index stays small.
+create index concurrently if not exists idx_transaction_related_wallet_timestamp
+    on transaction (related_wallet_id, timestamp) include (type, amount)
+    where related_wallet_id is not null;
+
+-- Superseded by idx_transaction_wallet_history
+drop index concurrently if exists idx_transaction_wallet_timestamp_id;
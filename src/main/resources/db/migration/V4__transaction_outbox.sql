@@ -0,0 +1,16 @@
+-- Transaction events waiting for the outbox relay. Ids come from an unpooled sequence: with the
+-- usual increment of 50 each node would hand out its own block, and two nodes' events for one
+-- wallet could sort in the wrong order.
+
+create sequence transaction_outbox_seq start with 1 increment by 1;
+
+create table transaction_outbox (
+    id                bigint        not null,
+    transaction_id    uuid          not null,
+    wallet_id         uuid          not null,
+    related_wallet_id uuid,
+    type              varchar(255)  not null check (type in ('DEPOSIT', 'WITHDRAW', 'TRANSFER')),
+    amount            numeric(19,2) not null,
+    occurred_at       timestamp(6)  not null,
+    constraint pk_transaction_outbox primary key (id)
+);
@@ -0,0 +1,26 @@
+-- Amounts and balances move from numeric(19,2), numeric(38,2) for transaction.amount, to bigint minor
+-- units (cents), the representation the entities use. Every stored value has scale 2, so multiplying
+-- by 100 is exact; a transaction amount beyond the bigint range fails the migration instead of being
+-- truncated. Each statement rewrites its table under an ACCESS EXCLUSIVE lock; run it in a maintenance
+-- window on large tables.
+--
+-- The opt-in db/partitioning V3 still declares transaction.amount as numeric: apply it before this
+-- migration, not out of order after it.
+
+alter table wallet alter column balance type bigint using (balance * 100)::bigint;
+
+alter table transaction alter column amount type bigint using (amount * 100)::bigint;
+
+alter table balance_history alter column balance type bigint using (balance * 100)::bigint;
+
+alter table idempotency_key alter column amount type bigint using (amount * 100)::bigint;
+
+alter table posting
+    alter column amount type bigint using (amount * 100)::bigint,
+    alter column balance type bigint using (balance * 100)::bigint;
+
+alter table wallet_stripe alter column balance type bigint using (balance * 100)::bigint;
+
+alter table pending_deposit alter column amount type bigint using (amount * 100)::bigint;
+
+alter table transaction_outbox alter column amount type bigint using (amount * 100)::bigint;
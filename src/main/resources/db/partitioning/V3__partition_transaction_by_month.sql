@@ -0,0 +1,81 @@
+-- Optional: only applied when classpath:db/partitioning is added to spring.flyway.locations. Enable it
+-- when the database is created, or set spring.flyway.out-of-order=true to add it later; it rewrites
+-- the whole transaction table, so run it in a maintenance window.
+--
+-- Converts transaction into a table range-partitioned by month on timestamp. History and balance
+-- queries all bound timestamp, so old months are pruned, and retiring a month is a DETACH instead
+-- of a mass DELETE. Queries by wallet alone still probe every partition's index.
+
+-- A partitioned table's primary key has to include the partition key, so transaction.id alone is no
+-- longer unique at the database level and cannot be the target of a foreign key.
+do $$
+declare
+    fk record;
+begin
+    for fk in select conname, conrelid::regclass as owner
+              from pg_constraint
+              where contype = 'f' and confrelid = 'transaction'::regclass
+    loop
+        execute format('alter table %s drop constraint %I', fk.owner, fk.conname);
+    end loop;
+end $$;
+
+alter table transaction rename to transaction_unpartitioned;
+
+create table transaction (
+    id                uuid          not null,
+    type              varchar(255)  check (type in ('DEPOSIT', 'WITHDRAW', 'TRANSFER')),
+    amount            numeric(38,2),
+    timestamp         timestamp(6)  not null,
+    wallet_id         uuid,
+    related_wallet_id uuid,
+    created_by        varchar(255),
+    updated_by        varchar(255),
+    constraint pk_transaction_partitioned primary key (id, timestamp),
+    constraint fk_transaction_partitioned_wallet foreign key (wallet_id) references wallet (id),
+    constraint fk_transaction_partitioned_related_wallet foreign key (related_wallet_id) references wallet (id)
+) partition by range (timestamp);
+
+-- Catches rows outside every monthly partition; should stay empty
+create table transaction_default partition of transaction default;
+
+-- Creates the missing monthly partitions from from_month up to months_ahead months past the current
+-- one. Called again by TransactionPartitionJob so inserts never fall into the default partition.
+create or replace function ensure_transaction_partitions(from_month date, months_ahead integer)
+    returns integer
+    language plpgsql
+as $$
+declare
+    month   date := date_trunc('month', from_month)::date;
+    last    date := (date_trunc('month', now()) + make_interval(months => months_ahead))::date;
+    created integer := 0;
+    name    text;
+begin
+    while month <= last loop
+        name := 'transaction_' || to_char(month, 'YYYY_MM');
+        if to_regclass(name) is null then
+            execute format('create table %I partition of transaction for values from (%L) to (%L)',
+                           name, month, (month + interval '1 month')::date);
+            created := created + 1;
+        end if;
+        month := (month + interval '1 month')::date;
+    end loop;
+    return created;
+end $$;
+
+select ensure_transaction_partitions(
+        coalesce((select min(timestamp) from transaction_unpartitioned), now())::date, 3);
+
+insert into transaction (id, type, amount, timestamp, wallet_id, related_wallet_id, created_by, updated_by)
+select id, type, amount, timestamp, wallet_id, related_wallet_id, created_by, updated_by
+from transaction_unpartitioned;
+
+drop table transaction_unpartitioned;
+
+-- Same indexes as V2, declared on the parent so every partition, present and future, gets them
+create index idx_transaction_wallet_history
+    on transaction (wallet_id, timestamp, id) include (type, amount, related_wallet_id);
+
+create index idx_transaction_related_wallet_timestamp
+    on transaction (related_wallet_id, timestamp) include (type, amount)
+    where related_wallet_id is not null;
@@ -0,0 +1,60 @@
+package com.example.wattet.aspect;
+
+import com.example.wattet.exception.InsufficientBalanceException;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.service.WalletService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WalletMetricsAspectTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WalletService target = mock(WalletService.class);
+    private WalletService walletService;
+
+    @BeforeEach
+    void setUp() {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new WalletMetricsAspect(meterRegistry));
+        walletService = factory.getProxy();
+    }
+
+    @Test
+    void successfulDepositIsTimedAndAddsToVolume() {
+        Transaction transaction = new Transaction();
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setAmount(1_250);
+        when(target.deposit(any(), any())).thenReturn(transaction);
+
+        walletService.deposit(UUID.randomUUID(), Money.ofMinor(1_250));
+
+        assertEquals(1, meterRegistry.get("wallet.operation")
+                .tags("operation", "deposit", "outcome", "success").timer().count());
+        assertEquals(12.5, meterRegistry.get("wallet.money.volume").tag("type", "DEPOSIT").counter().count());
+    }
+
+    @Test
+    void failureIsCountedByExceptionType() {
+        when(target.withdraw(any(), any())).thenThrow(new InsufficientBalanceException("no funds"));
+
+        assertThrows(InsufficientBalanceException.class,
+                () -> walletService.withdraw(UUID.randomUUID(), Money.ofMinor(1_000)));
+
+        assertEquals(1, meterRegistry.get("wallet.operation.results")
+                .tags("operation", "withdraw", "exception", "InsufficientBalanceException").counter().count());
+        assertEquals(0, meterRegistry.get("wallet.money.volume").tag("type", "WITHDRAW").counter().count());
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.wattet.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two embedded H2 databases stand in for primary and replica; each answers with its own name and
+ * reports the WAL position held in its {@code wal} table.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private WalletProperties properties;
+    private ReplicaLagMonitor monitor;
+    private JdbcTemplate jdbcTemplate;
+    private JdbcTemplate primaryWal;
+    private JdbcTemplate replicaWal;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+        properties = new WalletProperties();
+        properties.getReplica().setPrimaryLsnQuery("select lsn from wal");
+        properties.getReplica().setReplayLsnQuery("select lsn from wal");
+        monitor = new ReplicaLagMonitor(primary, replica, properties, new SimpleMeterRegistry());
+        primaryWal = new JdbcTemplate(primary);
+        replicaWal = new JdbcTemplate(replica);
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(monitor);
+        routing.setTargetDataSources(Map.<Object, Object>of(
+                ReplicaRoutingDataSource.Route.PRIMARY, primary,
+                ReplicaRoutingDataSource.Route.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadConsistency.clear();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplica() {
+        monitor.check();
+
+        assertEquals("replica", readOnly.execute(status -> database()));
+        assertEquals("primary", readWrite.execute(status -> database()));
+        assertEquals("primary", database());
+    }
+
+    @Test
+    void replicaReadsAreReportedToTheThread() {
+        monitor.check();
+        ReadConsistency.takeReplicaRead();
+
+        readWrite.execute(status -> database());
+        assertFalse(ReadConsistency.takeReplicaRead());
+        readOnly.execute(status -> database());
+        assertTrue(ReadConsistency.takeReplicaRead());
+        assertFalse(ReadConsistency.takeReplicaRead());
+    }
+
+    @Test
+    void unknownReplicaStateKeepsReadsOnThePrimary() {
+        assertEquals("primary", readOnly.execute(status -> database()));
+    }
+
+    @Test
+    void laggingReplicaFallsBackToThePrimary() {
+        advance(primaryWal, 20);
+        monitor.check();
+
+        assertEquals("primary", readOnly.execute(status -> database()));
+    }
+
+    @Test
+    void replicaTrailingABusyPrimaryServesOnceItReplayedAnEarlierCheck() {
+        advance(primaryWal, 20);
+        monitor.check();
+        advance(primaryWal, 30);
+        advance(replicaWal, 20);
+        monitor.check();
+
+        assertEquals("replica", readOnly.execute(status -> database()));
+    }
+
+    @Test
+    void failingLagCheckAgesOutTheLastGoodResult() {
+        monitor.check();
+        properties.getReplica().setReplayLsnQuery("select lsn from missing_table");
+        monitor.check();
+        assertEquals("replica", readOnly.execute(status -> database()));
+
+        properties.getReplica().setMaxStaleness(Duration.ZERO.minusMillis(1));
+        assertEquals("primary", readOnly.execute(status -> database()));
+    }
+
+    @Test
+    void tokenAheadOfTheReplicaRoutesToThePrimary() {
+        monitor.check();
+        advance(primaryWal, 20);
+
+        ReadConsistency.require(monitor.primaryLsn());
+        assertEquals("primary", readOnly.execute(status -> database()));
+
+        ReadConsistency.require(10L);
+        assertEquals("replica", readOnly.execute(status -> database()));
+
+        ReadConsistency.requirePrimary();
+        assertEquals("primary", readOnly.execute(status -> database()));
+    }
+
+    private String database() {
+        return jdbcTemplate.queryForObject("select name from marker", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table marker (name varchar(16))");
+        jdbc.update("insert into marker values (?)", name);
+        jdbc.execute("create table wal (lsn bigint)");
+        jdbc.update("insert into wal values (10)");
+        return dataSource;
+    }
+
+    private static void advance(JdbcTemplate database, long lsn) {
+        database.update("update wal set lsn = ?", lsn);
+    }
+}
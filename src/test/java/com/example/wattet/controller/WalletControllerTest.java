@@ -1,5 +1,6 @@
 package com.example.wattet.controller;
 
+import com.example.wattet.model.Money;
 import com.example.wattet.model.Transaction;
 import com.example.wattet.model.TransactionType;
 import com.example.wattet.model.Wallet;
@@ -9,18 +10,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
+@ActiveProfiles("test")
 @AutoConfigureMockMvc
 class WalletControllerTest {
 
@@ -37,7 +40,7 @@ class WalletControllerTest {
         Wallet wallet = new Wallet();
         wallet.setId(walletId);
         wallet.setAccountId(accountId);
-        wallet.setBalance(BigDecimal.ZERO);
+        wallet.setBalance(0);
 
         when(walletService.createWallet(accountId)).thenReturn(wallet);
 
@@ -50,7 +53,7 @@ class WalletControllerTest {
     @Test
     void testDeposit() throws Exception {
         UUID walletId = UUID.randomUUID();
-        BigDecimal amount = BigDecimal.valueOf(100);
+        Money amount = Money.ofMinor(10_000);
 
         Wallet wallet = new Wallet();
         wallet.setId(walletId);
@@ -59,7 +62,7 @@ class WalletControllerTest {
         transaction.setId(UUID.randomUUID());
         transaction.setWallet(wallet);
         transaction.setType(TransactionType.DEPOSIT);
-        transaction.setAmount(amount);
+        transaction.setAmount(amount.minorUnits());
         transaction.setTimestamp(LocalDateTime.now());
 
         when(walletService.deposit(walletId, amount)).thenReturn(transaction);
@@ -68,14 +71,25 @@ class WalletControllerTest {
                         .param("amount", amount.toString()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").exists())
-                .andExpect(jsonPath("$.type").value("DEPOSIT"));
+                .andExpect(jsonPath("$.type").value("DEPOSIT"))
+                .andExpect(jsonPath("$.amount").value(100.0));
+    }
+
+    @Test
+    void testAmountBelowTheCurrencyScaleIsRejected() throws Exception {
+        mockMvc.perform(post("/wallets/{walletId}/deposit", UUID.randomUUID())
+                        .param("amount", "10.005"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid Amount"));
+
+        verifyNoInteractions(walletService);
     }
 
     @Test
     void testTransfer() throws Exception {
         UUID fromWalletId = UUID.randomUUID();
         UUID toWalletId = UUID.randomUUID();
-        BigDecimal amount = BigDecimal.valueOf(50);
+        Money amount = Money.ofMinor(5_000);
 
         Wallet fromWallet = new Wallet();
         fromWallet.setId(fromWalletId);
@@ -87,7 +101,7 @@ class WalletControllerTest {
         transaction.setId(UUID.randomUUID());
         transaction.setWallet(fromWallet);
         transaction.setType(TransactionType.TRANSFER);
-        transaction.setAmount(amount);
+        transaction.setAmount(amount.minorUnits());
         transaction.setTimestamp(LocalDateTime.now());
         transaction.setRelatedWallet(toWallet);
 
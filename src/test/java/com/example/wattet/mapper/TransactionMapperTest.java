@@ -0,0 +1,95 @@
+package com.example.wattet.mapper;
+
+import com.example.wattet.dto.TransactionDTO;
+import com.example.wattet.dto.TransactionRow;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.model.Wallet;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The hand-written mapper must produce exactly what the ModelMapper bean it replaced produced. The
+ * amount is stored in minor units now, which ModelMapper would copy as is, so it is checked on its
+ * own against the decimal ModelMapper used to read.
+ */
+class TransactionMapperTest {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final TransactionMapper transactionMapper = new TransactionMapper();
+
+    @Test
+    void testDepositMatchesModelMapper() {
+        BigDecimal amount = new BigDecimal("100.25");
+
+        assertParity(transaction(TransactionType.DEPOSIT, amount, null), amount);
+    }
+
+    @Test
+    void testTransferMatchesModelMapper() {
+        BigDecimal amount = new BigDecimal("0.10");
+
+        assertParity(transaction(TransactionType.TRANSFER, amount, wallet()), amount);
+    }
+
+    @Test
+    void testSparseTransactionMatchesModelMapper() {
+        Transaction sparse = new Transaction();
+        sparse.setId(UUID.randomUUID());
+
+        assertParity(sparse, BigDecimal.ZERO);
+    }
+
+    @Test
+    void testHighPrecisionAmountMatchesModelMapper() {
+        BigDecimal amount = new BigDecimal("12345678901234567.89");
+
+        assertParity(transaction(TransactionType.WITHDRAW, amount, null), amount);
+    }
+
+    @Test
+    void testRowMapsLikeTheEntity() {
+        Transaction transfer = transaction(TransactionType.TRANSFER, new BigDecimal("7.50"), wallet());
+        TransactionRow row = new TransactionRow(transfer.getId(), transfer.getWallet().getId(), transfer.getType(),
+                Money.ofMinor(transfer.getAmount()), transfer.getTimestamp(), transfer.getRelatedWallet().getId());
+
+        assertEquals(transactionMapper.toDto(transfer), transactionMapper.toDto(row));
+    }
+
+    private void assertParity(Transaction transaction, BigDecimal amount) {
+        TransactionDTO actual = transactionMapper.toDto(transaction);
+        assertEquals(amount.doubleValue(), actual.getAmount());
+
+        TransactionDTO expected = modelMapper.map(transaction, TransactionDTO.class);
+        assertEquals((double) transaction.getAmount(), expected.getAmount());
+        // Every other field must match ModelMapper exactly
+        expected.setAmount(actual.getAmount());
+        assertEquals(expected, actual);
+    }
+
+    private Transaction transaction(TransactionType type, BigDecimal amount, Wallet relatedWallet) {
+        Transaction transaction = new Transaction();
+        transaction.setId(UUID.randomUUID());
+        transaction.setWallet(wallet());
+        transaction.setType(type);
+        transaction.setAmount(Money.of(amount).minorUnits());
+        transaction.setTimestamp(LocalDateTime.now());
+        transaction.setRelatedWallet(relatedWallet);
+        return transaction;
+    }
+
+    private Wallet wallet() {
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        wallet.setAccountId(UUID.randomUUID());
+        wallet.setBalance(1_000);
+        return wallet;
+    }
+}
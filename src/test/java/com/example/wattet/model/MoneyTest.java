@@ -0,0 +1,73 @@
+package com.example.wattet.model;
+
+import com.example.wattet.exception.AmountOverflowException;
+import com.example.wattet.exception.InvalidAmountException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+
+    @Test
+    void parseReadsPlainDecimalsIntoMinorUnits() {
+        assertEquals(Money.ofMinor(1_000), Money.parse("10"));
+        assertEquals(Money.ofMinor(1_050), Money.parse("10.5"));
+        assertEquals(Money.ofMinor(1_050), Money.parse("10.50"));
+        assertEquals(Money.ofMinor(1_050), Money.parse("10.500"));
+        assertEquals(Money.ofMinor(1), Money.parse("0.01"));
+        assertEquals(Money.ofMinor(50), Money.parse(".5"));
+        assertEquals(Money.ofMinor(-350), Money.parse("-3.5"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", ".", "-", " 1", "1e3", "1,000", "10.501", "--1", "0x10"})
+    void parseRejectsAnythingButAPlainDecimalAtCurrencyScale(String text) {
+        assertThrows(InvalidAmountException.class, () -> Money.parse(text));
+    }
+
+    @Test
+    void parseRejectsAmountsBeyondTheLongRange() {
+        assertThrows(AmountOverflowException.class, () -> Money.parse("92233720368547758.08"));
+    }
+
+    @Test
+    void ofChecksScaleAndRange() {
+        assertEquals(Money.ofMinor(123), Money.of(new BigDecimal("1.230")));
+        assertThrows(InvalidAmountException.class, () -> Money.of(new BigDecimal("1.234")));
+        assertThrows(AmountOverflowException.class, () -> Money.of(new BigDecimal("1E+20")));
+    }
+
+    @Test
+    void arithmeticFailsInsteadOfWrappingAround() {
+        Money max = Money.ofMinor(Long.MAX_VALUE);
+
+        assertEquals(Money.ofMinor(Long.MAX_VALUE - 1), max.minus(Money.ofMinor(1)));
+        assertThrows(AmountOverflowException.class, () -> max.plus(Money.ofMinor(1)));
+        assertThrows(AmountOverflowException.class, () -> Money.ofMinor(Long.MIN_VALUE).minus(Money.ofMinor(1)));
+        assertThrows(AmountOverflowException.class, () -> Money.ofMinor(Long.MIN_VALUE).negate());
+    }
+
+    @Test
+    void conversionsMatchTheDecimalValue() {
+        Money amount = Money.ofMinor(-1_205);
+
+        assertEquals(new BigDecimal("-12.05"), amount.toBigDecimal());
+        assertEquals(-12.05, amount.toDouble());
+        assertEquals("-12.05", amount.toString());
+        assertEquals("0.07", Money.ofMinor(7).toString());
+        Money large = Money.ofMinor(1_234_567_890_123_456_789L);
+        assertEquals(large.toBigDecimal().doubleValue(), large.toDouble());
+    }
+
+    @Test
+    void ordersByValue() {
+        assertTrue(Money.ofMinor(99).isLessThan(Money.ofMinor(100)));
+        assertTrue(Money.ofMinor(100).compareTo(Money.ofMinor(-100)) > 0);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.wattet.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UuidV7Test {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void carriesVersionVariantAndTimestamp() {
+        UUID id = new UuidV7(() -> NOW).generate();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertEquals(NOW, UuidV7.timestamp(id));
+    }
+
+    @Test
+    void idsWithinOneMillisecondAreStrictlyIncreasing() {
+        UuidV7 generator = new UuidV7(() -> NOW);
+
+        UUID previous = generator.generate();
+        for (int i = 0; i < 10_000; i++) {
+            UUID next = generator.generate();
+            assertTrue(previous.compareTo(next) < 0, previous + " !< " + next);
+            previous = next;
+        }
+        // 4096 ids fit in a millisecond; the rest borrowed the following ones
+        assertEquals(NOW + 10_000 / 4096, UuidV7.timestamp(previous));
+    }
+
+    @Test
+    void clockSteppingBackDoesNotBreakTheOrder() {
+        AtomicLong clock = new AtomicLong(NOW);
+        UuidV7 generator = new UuidV7(clock::get);
+
+        UUID before = generator.generate();
+        clock.set(NOW - 1_000);
+        UUID after = generator.generate();
+
+        assertTrue(before.compareTo(after) < 0);
+        assertEquals(NOW, UuidV7.timestamp(after));
+    }
+
+    @Test
+    void concurrentCallersGetDistinctIds() throws Exception {
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    Set<UUID> local = new HashSet<>();
+                    for (int i = 0; i < 10_000; i++) {
+                        local.add(UuidV7.next());
+                    }
+                    ids.addAll(local);
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(80_000, ids.size());
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.wattet.repository;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs EXPLAIN on the SQL Hibernate generates for the repository queries and fails when one of them
+ * no longer uses the index it was written for, e.g. after a query or an index was changed.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.wattet.repository.QueryPlanTest$CapturingInspector")
+@ActiveProfiles("test")
+class QueryPlanTest {
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private BalanceHistoryRepository balanceHistoryRepository;
+
+    @Autowired
+    private PostingRepository postingRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final UUID walletId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        matchMigratedSchema();
+        CapturingInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    void transactionsByWalletUseTheHistoryIndex() {
+        transactionRepository.findByWalletId(walletId);
+
+        assertUsesIndex("idx_transaction_wallet_history");
+    }
+
+    @Test
+    void transactionsUpToATimestampUseTheHistoryIndex() {
+        transactionRepository.findByWalletIdAndTimestampLessThanEqual(walletId, LocalDateTime.now());
+
+        assertUsesIndex("idx_transaction_wallet_history");
+    }
+
+    @Test
+    void historyPageUsesTheHistoryIndex() {
+        transactionRepository.findHistoryPage(walletId, null, null, null, null, null, PageRequest.of(0, 50));
+
+        assertUsesIndex("idx_transaction_wallet_history");
+    }
+
+    @Test
+    void checkpointLookupUsesTheCheckpointIndex() {
+        balanceHistoryRepository.findFirstByWalletIdAndTimestampLessThanEqualOrderByTimestampDesc(walletId, LocalDateTime.now());
+
+        assertUsesIndex("idx_balance_history_wallet_timestamp");
+    }
+
+    @Test
+    void ledgerHeadUsesTheSeqKey() {
+        postingRepository.findFirstByWalletIdOrderBySeqDesc(walletId);
+
+        assertUsesIndex("uk_posting_wallet_seq");
+    }
+
+    @Test
+    void ledgerBalanceAtUsesThePostingTimestampIndex() {
+        postingRepository.findFirstByWalletIdAndTimestampLessThanEqualOrderByTimestampDescSeqDesc(walletId, LocalDateTime.now());
+
+        assertUsesIndex("idx_posting_wallet_timestamp_seq");
+    }
+
+    private void assertUsesIndex(String index) {
+        List<String> selects = CapturingInspector.STATEMENTS.stream()
+                .filter(sql -> sql.trim().toLowerCase(Locale.ROOT).startsWith("select"))
+                .toList();
+        assertFalse(selects.isEmpty(), "No query was captured");
+        String sql = selects.get(selects.size() - 1);
+        String plan = explain(sql);
+        assertTrue(plan.toLowerCase(Locale.ROOT).contains(index), () -> "Expected " + index + " in plan:\n" + plan);
+    }
+
+    /**
+     * The schema here is built from the entities and differs from the migrated one in two ways that
+     * change plans. H2 backs every foreign key with an index of its own, which PostgreSQL does not,
+     * and on empty tables picks it over the composite index the query was written for. Hibernate
+     * also orders the columns of uk_posting_wallet_seq by name, (seq, wallet_id), where the migrations have
+     * (wallet_id, seq).
+     */
+    private void matchMigratedSchema() {
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            List<String> statements = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("select table_name, constraint_name"
+                         + " from information_schema.table_constraints"
+                         + " where constraint_type = 'FOREIGN KEY' and table_schema = 'PUBLIC'")) {
+                while (rows.next()) {
+                    statements.add("alter table \"" + rows.getString(1) + "\" drop constraint \"" + rows.getString(2) + "\"");
+                }
+            }
+            statements.add("alter table posting drop constraint if exists uk_posting_wallet_seq");
+            statements.add("alter table posting add constraint uk_posting_wallet_seq unique (wallet_id, seq)");
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : statements) {
+                    statement.execute(sql);
+                }
+            }
+        });
+    }
+
+    /**
+     * Parameters are bound as null: the plan is chosen when the statement is prepared, not from the values.
+     */
+    private String explain(String sql) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+                int parameters = statement.getParameterMetaData().getParameterCount();
+                for (int i = 1; i <= parameters; i++) {
+                    statement.setObject(i, null);
+                }
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        plan.append(rows.getString(1)).append('\n');
+                    }
+                }
+                return plan.toString();
+            }
+        });
+    }
+
+    public static class CapturingInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
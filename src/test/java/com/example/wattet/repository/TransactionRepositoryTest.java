@@ -0,0 +1,127 @@
+package com.example.wattet.repository;
+
+import com.example.wattet.dto.TransactionRow;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.model.Wallet;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class TransactionRepositoryTest {
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Test
+    void testSumBalanceDeltaCountsIncomingTransfers() {
+        Wallet wallet = newWallet();
+        Wallet other = newWallet();
+        // timestamp(6) rounds nanoseconds, which could move the withdrawal past the lower bound
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+
+        save(wallet, TransactionType.DEPOSIT, 50, now.minusMinutes(40), null);
+        save(wallet, TransactionType.WITHDRAW, 30, now.minusMinutes(3), null);
+        save(wallet, TransactionType.TRANSFER, 20, now.minusMinutes(2), other);
+        save(other, TransactionType.TRANSFER, 10, now.minusMinutes(1), wallet);
+
+        // 50 - 30 - 20 + 10
+        assertEquals(10, transactionRepository.sumBalanceDelta(wallet.getId(), null, now));
+        // Only the two transfers fall after the withdrawal
+        assertEquals(-10, transactionRepository.sumBalanceDelta(wallet.getId(), now.minusMinutes(3), now));
+        assertEquals(0, transactionRepository.sumBalanceDelta(wallet.getId(), null, now.minusHours(1)));
+    }
+
+    @Test
+    void testFindHistoryPageWalksKeysetNewestFirst() {
+        Wallet wallet = newWallet();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 5; i++) {
+            save(wallet, TransactionType.DEPOSIT, i + 1, now.minusMinutes(5 - i), null);
+        }
+
+        List<TransactionRow> first = transactionRepository.findHistoryPage(wallet.getId(), null, null, null,
+                null, null, PageRequest.of(0, 3));
+        assertEquals(3, first.size());
+        assertEquals(Money.ofMinor(5), first.get(0).amount());
+        assertEquals(wallet.getId(), first.get(0).walletId());
+
+        TransactionRow last = first.get(2);
+        List<TransactionRow> second = transactionRepository.findHistoryPage(wallet.getId(), null, null, null,
+                last.timestamp(), last.id(), PageRequest.of(0, 3));
+        assertEquals(2, second.size());
+        assertEquals(Money.ofMinor(2), second.get(0).amount());
+        assertEquals(Money.ofMinor(1), second.get(1).amount());
+
+        List<TransactionRow> withdrawals = transactionRepository.findHistoryPage(wallet.getId(), TransactionType.WITHDRAW,
+                null, null, null, null, PageRequest.of(0, 3));
+        assertTrue(withdrawals.isEmpty());
+    }
+
+    @Test
+    void testHistoryPageKeepsDepositsAndReadsRelatedWalletFromTheForeignKey() {
+        Wallet wallet = newWallet();
+        Wallet other = newWallet();
+        LocalDateTime now = LocalDateTime.now();
+        save(wallet, TransactionType.DEPOSIT, 5, now.minusMinutes(2), null);
+        save(wallet, TransactionType.TRANSFER, 3, now.minusMinutes(1), other);
+
+        List<TransactionRow> page = transactionRepository.findHistoryPage(wallet.getId(), null, null, null,
+                null, null, PageRequest.of(0, 10));
+
+        assertEquals(2, page.size());
+        assertEquals(other.getId(), page.get(0).relatedWalletId());
+        assertNull(page.get(1).relatedWalletId());
+    }
+
+    @Test
+    void testTransactionsWithTheSameTimestampKeepInsertOrder() {
+        Wallet wallet = newWallet();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 20; i++) {
+            save(wallet, TransactionType.DEPOSIT, i + 1, now, null);
+        }
+
+        List<TransactionRow> page = transactionRepository.findHistoryPage(wallet.getId(), null, null, null,
+                null, null, PageRequest.of(0, 20));
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Money.ofMinor(20 - i), page.get(i).amount());
+            assertEquals(7, page.get(i).id().version());
+        }
+    }
+
+    private Wallet newWallet() {
+        Wallet wallet = new Wallet();
+        wallet.setAccountId(UUID.randomUUID());
+        wallet.setBalance(0);
+        return walletRepository.save(wallet);
+    }
+
+    private void save(Wallet wallet, TransactionType type, long amount, LocalDateTime timestamp, Wallet relatedWallet) {
+        Transaction transaction = new Transaction();
+        transaction.setWallet(wallet);
+        transaction.setType(type);
+        transaction.setAmount(amount);
+        transaction.setTimestamp(timestamp);
+        transaction.setRelatedWallet(relatedWallet);
+        transactionRepository.save(transaction);
+    }
+}
@@ -1,12 +1,12 @@
 package com.example.wattet.repository;
 
+import com.example.wattet.model.Money;
 import com.example.wattet.model.Wallet;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.test.context.ActiveProfiles;
 
-import java.math.BigDecimal;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -25,7 +25,7 @@ class WalletRepositoryTest {
         UUID accountId = UUID.randomUUID();
         Wallet wallet = new Wallet();
         wallet.setAccountId(accountId);
-        wallet.setBalance(BigDecimal.ZERO);
+        wallet.setBalance(0);
         walletRepository.save(wallet);
 
         Optional<Wallet> foundWallet = walletRepository.findByAccountId(accountId);
@@ -33,4 +33,20 @@ class WalletRepositoryTest {
         assertTrue(foundWallet.isPresent());
         assertEquals(accountId, foundWallet.get().getAccountId());
     }
+
+    @Test
+    void testBalanceStatementsWorkInMinorUnits() {
+        Wallet wallet = new Wallet();
+        wallet.setAccountId(UUID.randomUUID());
+        wallet.setBalance(1_050);
+        UUID walletId = walletRepository.saveAndFlush(wallet).getId();
+
+        assertEquals(1, walletRepository.credit(walletId, 25));
+        assertEquals(0, walletRepository.debit(walletId, 1_076));
+        assertEquals(1, walletRepository.debit(walletId, 1_075));
+        assertEquals(1, walletRepository.credit(walletId, 1));
+
+        assertEquals(1L, walletRepository.findBalanceById(walletId));
+        assertEquals(Money.ofMinor(1), walletRepository.findBalanceSnapshotById(walletId).orElseThrow().balance());
+    }
 }
\ No newline at end of file
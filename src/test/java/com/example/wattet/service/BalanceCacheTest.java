@@ -0,0 +1,107 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ReadConsistency;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.BalanceSnapshot;
+import com.example.wattet.event.BalanceChangedEvent;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Wallet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BalanceCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    private BalanceCache balanceCache;
+    private UUID walletId;
+
+    @BeforeEach
+    void setUp() {
+        balanceCache = new BalanceCache(new WalletProperties(), meterRegistry);
+        walletId = UUID.randomUUID();
+    }
+
+    @Test
+    void loadsOnceAndServesHitsFromMemory() {
+        balanceCache.get(walletId, this::load);
+        balanceCache.get(walletId, this::load);
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void committedWriteReplacesCachedBalance() {
+        balanceCache.get(walletId, this::load);
+
+        balanceCache.onBalanceChanged(new BalanceChangedEvent(walletId, wallet(1_000, 2L)));
+
+        assertEquals(Money.ofMinor(1_000), balanceCache.get(walletId, this::load).balance());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void olderVersionNeverOverwritesNewerOne() {
+        balanceCache.onBalanceChanged(new BalanceChangedEvent(walletId, wallet(1_000, 5L)));
+        balanceCache.onBalanceChanged(new BalanceChangedEvent(walletId, wallet(100, 4L)));
+
+        assertEquals(Money.ofMinor(1_000), balanceCache.get(walletId, this::load).balance());
+    }
+
+    @Test
+    void changeWithoutEntityInvalidates() {
+        balanceCache.get(walletId, this::load);
+
+        balanceCache.onBalanceChanged(new BalanceChangedEvent(walletId, null));
+        balanceCache.get(walletId, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void loadOverlappingAChangeIsNotCached() {
+        BalanceSnapshot stale = balanceCache.get(walletId, id -> {
+            // The change commits after the loader read the row but before its result is stored
+            balanceCache.onBalanceChanged(new BalanceChangedEvent(walletId, null));
+            return load(id);
+        });
+
+        assertEquals(Money.ZERO, stale.balance());
+        balanceCache.get(walletId, this::load);
+        balanceCache.get(walletId, this::load);
+        assertEquals(2, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void loadAnsweredByTheReplicaIsNotCached() {
+        balanceCache.get(walletId, id -> {
+            ReadConsistency.markReplicaRead();
+            return load(id);
+        });
+        balanceCache.get(walletId, this::load);
+        balanceCache.get(walletId, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    private BalanceSnapshot load(UUID id) {
+        loads.incrementAndGet();
+        return new BalanceSnapshot(Money.ZERO, 1L);
+    }
+
+    private Wallet wallet(long balance, long version) {
+        Wallet wallet = new Wallet();
+        wallet.setId(walletId);
+        wallet.setBalance(balance);
+        wallet.setVersion(version);
+        return wallet;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.model.BalanceHistory;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.repository.BalanceHistoryRepository;
+import com.example.wattet.repository.TransactionRepository;
+import com.example.wattet.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BalanceCheckpointServiceTest {
+
+    @Mock
+    private BalanceHistoryRepository balanceHistoryRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private StripedBalanceService stripedBalanceService;
+
+    @Mock
+    private DepositAggregator depositAggregator;
+
+    @Spy
+    private WalletProperties properties = new WalletProperties();
+
+    @InjectMocks
+    private BalanceCheckpointService balanceCheckpointService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testBalanceAtReplaysOnlyDeltaAfterNearestCheckpoint() {
+        UUID walletId = UUID.randomUUID();
+        LocalDateTime timestamp = LocalDateTime.now();
+        BalanceHistory checkpoint = new BalanceHistory();
+        checkpoint.setBalance(10_000);
+        checkpoint.setTimestamp(timestamp.minusHours(1));
+
+        when(balanceHistoryRepository.findFirstByWalletIdAndTimestampLessThanEqualOrderByTimestampDesc(walletId, timestamp))
+                .thenReturn(Optional.of(checkpoint));
+        when(transactionRepository.sumBalanceDelta(walletId, checkpoint.getTimestamp(), timestamp))
+                .thenReturn(1_000L);
+
+        assertEquals(Money.ofMinor(11_000), balanceCheckpointService.balanceAt(walletId, timestamp));
+    }
+
+    @Test
+    void testBalanceAtWithoutCheckpointStartsFromZero() {
+        UUID walletId = UUID.randomUUID();
+        LocalDateTime timestamp = LocalDateTime.now();
+
+        when(balanceHistoryRepository.findFirstByWalletIdAndTimestampLessThanEqualOrderByTimestampDesc(walletId, timestamp))
+                .thenReturn(Optional.empty());
+        when(transactionRepository.sumBalanceDelta(walletId, null, timestamp)).thenReturn(4_000L);
+
+        assertEquals(Money.ofMinor(4_000), balanceCheckpointService.balanceAt(walletId, timestamp));
+    }
+
+    @Test
+    void testTransferCheckpointsBothWallets() {
+        properties.getCheckpoint().setInterval(1);
+        Wallet from = wallet();
+        Wallet to = wallet();
+        Transaction transfer = new Transaction();
+        transfer.setId(UUID.randomUUID());
+        transfer.setWallet(from);
+        transfer.setRelatedWallet(to);
+        transfer.setTimestamp(LocalDateTime.now());
+
+        when(walletRepository.findBalanceById(any())).thenReturn(1_000L);
+
+        balanceCheckpointService.onTransactionRecorded(transfer);
+
+        verify(walletRepository).findByIdForUpdate(from.getId());
+        verify(walletRepository).findByIdForUpdate(to.getId());
+        verify(balanceHistoryRepository, times(2)).save(any(BalanceHistory.class));
+    }
+
+    @Test
+    void testStripedWalletIsNotCheckpointed() {
+        properties.getCheckpoint().setInterval(1);
+        Wallet from = wallet();
+        Wallet to = wallet();
+        Transaction transfer = new Transaction();
+        transfer.setId(UUID.randomUUID());
+        transfer.setWallet(from);
+        transfer.setRelatedWallet(to);
+        transfer.setTimestamp(LocalDateTime.now());
+
+        when(stripedBalanceService.isStriped(to.getId())).thenReturn(true);
+        when(walletRepository.findBalanceById(any())).thenReturn(1_000L);
+
+        balanceCheckpointService.onTransactionRecorded(transfer);
+
+        // Its stripes may hold an uncommitted credit with an earlier timestamp
+        verify(walletRepository, never()).findBalanceById(to.getId());
+        verify(balanceHistoryRepository, times(1)).save(any(BalanceHistory.class));
+    }
+
+    @Test
+    void testAggregatedDepositsWriteNoCheckpoints() {
+        properties.getCheckpoint().setInterval(1);
+        Transaction deposit = new Transaction();
+        deposit.setId(UUID.randomUUID());
+        deposit.setWallet(wallet());
+        deposit.setTimestamp(LocalDateTime.now());
+
+        when(depositAggregator.isEnabled()).thenReturn(true);
+
+        balanceCheckpointService.onTransactionRecorded(deposit);
+
+        verify(balanceHistoryRepository, never()).save(any(BalanceHistory.class));
+    }
+
+    @Test
+    void testDisabledIntervalWritesNothing() {
+        properties.getCheckpoint().setInterval(0);
+        Transaction deposit = new Transaction();
+        deposit.setId(UUID.randomUUID());
+        deposit.setWallet(wallet());
+
+        balanceCheckpointService.onTransactionRecorded(deposit);
+
+        verify(balanceHistoryRepository, never()).save(any(BalanceHistory.class));
+    }
+
+    private Wallet wallet() {
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        return wallet;
+    }
+}
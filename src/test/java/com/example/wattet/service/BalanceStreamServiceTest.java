@@ -0,0 +1,154 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.BalanceUpdate;
+import com.example.wattet.event.BalanceChangedEvent;
+import com.example.wattet.exception.SubscriptionLimitException;
+import com.example.wattet.model.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BalanceStreamServiceTest {
+
+    @Mock
+    private WalletService walletService;
+
+    private final LinkedList<Runnable> tasks = new LinkedList<>();
+
+    private WalletProperties properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private BalanceStreamService service;
+
+    private UUID walletId;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        walletId = UUID.randomUUID();
+        when(walletService.getBalance(walletId, false)).thenReturn(Money.ZERO);
+        properties = new WalletProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        service = new BalanceStreamService(walletService, tasks::add, properties, meterRegistry);
+    }
+
+    @Test
+    void subscriberStartsWithTheCurrentBalance() {
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        service.subscribe(walletId, emitter);
+        runAll();
+
+        assertEquals(List.of(Money.ZERO), emitter.balances());
+    }
+
+    @Test
+    void oneReadPerChangeIsFannedOutToEverySubscriber() {
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        service.subscribe(walletId, first);
+        service.subscribe(walletId, second);
+        when(walletService.getBalance(walletId, true)).thenReturn(Money.ofMinor(1_000));
+
+        service.onBalanceChanged(new BalanceChangedEvent(walletId, null));
+        service.onBalanceChanged(new BalanceChangedEvent(walletId, null));
+        runAll();
+
+        verify(walletService, times(1)).getBalance(walletId, true);
+        assertEquals(List.of(Money.ZERO, Money.ofMinor(1_000)), first.balances());
+        assertEquals(List.of(Money.ZERO, Money.ofMinor(1_000)), second.balances());
+    }
+
+    @Test
+    void changesOfUnwatchedWalletsAreIgnored() {
+        service.onBalanceChanged(new BalanceChangedEvent(UUID.randomUUID(), null));
+        runAll();
+
+        verify(walletService, never()).getBalance(any(), anyBoolean());
+    }
+
+    @Test
+    void slowSubscriberIsCoalescedToTheLatestBalance() {
+        properties.getBalanceStream().setBufferSize(1);
+        RecordingEmitter emitter = new RecordingEmitter();
+        service.subscribe(walletId, emitter);
+        when(walletService.getBalance(walletId, true)).thenReturn(Money.ofMinor(100), Money.ofMinor(200), Money.ofMinor(1_000));
+
+        // The subscriber's drain task stays queued while three changes are dispatched
+        for (int i = 0; i < 3; i++) {
+            service.onBalanceChanged(new BalanceChangedEvent(walletId, null));
+            tasks.removeLast().run();
+        }
+        runAll();
+
+        assertEquals(List.of(Money.ofMinor(1_000)), emitter.balances());
+        assertEquals(3.0, meterRegistry.counter("wallet.balance-stream.coalesced").count());
+    }
+
+    @Test
+    void subscriberWhoseConnectionFailedIsDropped() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.failing = true;
+        service.subscribe(walletId, emitter);
+        runAll();
+
+        service.onBalanceChanged(new BalanceChangedEvent(walletId, null));
+        runAll();
+
+        verify(walletService, never()).getBalance(walletId, true);
+    }
+
+    @Test
+    void subscriptionsAreCapped() {
+        properties.getBalanceStream().setMaxSubscribers(1);
+        service.subscribe(walletId, new RecordingEmitter());
+
+        assertThrows(SubscriptionLimitException.class, () -> service.subscribe(walletId, new RecordingEmitter()));
+    }
+
+    private void runAll() {
+        while (!tasks.isEmpty()) {
+            tasks.removeFirst().run();
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<Object> sent = new ArrayList<>();
+        private boolean failing;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("Broken pipe");
+            }
+            builder.build().forEach(part -> sent.add(part.getData()));
+        }
+
+        List<Money> balances() {
+            return sent.stream()
+                    .filter(BalanceUpdate.class::isInstance)
+                    .map(data -> Money.of(((BalanceUpdate) data).balance()))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.BatchItemStatus;
+import com.example.wattet.dto.BatchMode;
+import com.example.wattet.dto.BatchOperationDTO;
+import com.example.wattet.dto.BatchRequestDTO;
+import com.example.wattet.dto.BatchResponseDTO;
+import com.example.wattet.exception.InvalidBatchException;
+import com.example.wattet.mapper.TransactionMapper;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.repository.TransactionRepository;
+import com.example.wattet.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchServiceTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private BalanceCheckpointService balanceCheckpointService;
+
+    @Spy
+    private TransactionMapper transactionMapper = new TransactionMapper();
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private StripedBalanceService stripedBalanceService;
+
+    @Mock
+    private DepositAggregator depositAggregator;
+
+    @Mock
+    private TransactionOutbox transactionOutbox;
+
+    @Spy
+    private WalletProperties properties = new WalletProperties();
+
+    @InjectMocks
+    private BatchService batchService;
+
+    private Wallet source;
+    private Wallet target;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        source = wallet(100);
+        target = wallet(0);
+        when(walletRepository.findAllByIdForUpdate(anyList())).thenReturn(List.of(source, target));
+    }
+
+    @Test
+    void testBestEffortSkipsFailedItemsAndNetsBalances() {
+        BatchResponseDTO response = batchService.apply(new BatchRequestDTO(BatchMode.BEST_EFFORT, List.of(
+                new BatchOperationDTO(TransactionType.TRANSFER, source.getId(), target.getId(), BigDecimal.valueOf(60)),
+                new BatchOperationDTO(TransactionType.WITHDRAW, source.getId(), null, BigDecimal.valueOf(50)),
+                new BatchOperationDTO(TransactionType.DEPOSIT, source.getId(), null, BigDecimal.valueOf(5)))));
+
+        assertEquals(2, response.applied());
+        assertEquals(1, response.failed());
+        assertEquals(BatchItemStatus.FAILED, response.results().get(1).status());
+        assertEquals(4_500, source.getBalance());
+        assertEquals(6_000, target.getBalance());
+        verify(transactionRepository).saveAll(anyList());
+    }
+
+    @Test
+    void testAllOrNothingWritesNothingWhenAnItemFails() {
+        BatchResponseDTO response = batchService.apply(new BatchRequestDTO(BatchMode.ALL_OR_NOTHING, List.of(
+                new BatchOperationDTO(TransactionType.DEPOSIT, target.getId(), null, BigDecimal.TEN),
+                new BatchOperationDTO(TransactionType.WITHDRAW, source.getId(), null, BigDecimal.valueOf(500)))));
+
+        assertEquals(0, response.applied());
+        assertEquals(BatchItemStatus.NOT_APPLIED, response.results().get(0).status());
+        assertEquals(BatchItemStatus.FAILED, response.results().get(1).status());
+        assertEquals(0, target.getBalance());
+        verify(transactionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void testAmountBelowTheCurrencyScaleFailsOnlyItsItem() {
+        BatchResponseDTO response = batchService.apply(new BatchRequestDTO(BatchMode.BEST_EFFORT, List.of(
+                new BatchOperationDTO(TransactionType.DEPOSIT, target.getId(), null, new BigDecimal("0.005")),
+                new BatchOperationDTO(TransactionType.DEPOSIT, target.getId(), null, new BigDecimal("0.50")))));
+
+        assertEquals(BatchItemStatus.FAILED, response.results().get(0).status());
+        assertEquals(BatchItemStatus.APPLIED, response.results().get(1).status());
+        assertEquals(50, target.getBalance());
+    }
+
+    @Test
+    void testOversizedBatchIsRejected() {
+        properties.getBatch().setMaxOperations(1);
+        BatchOperationDTO deposit = new BatchOperationDTO(TransactionType.DEPOSIT, target.getId(), null, BigDecimal.ONE);
+
+        assertThrows(InvalidBatchException.class,
+                () -> batchService.apply(new BatchRequestDTO(BatchMode.BEST_EFFORT, List.of(deposit, deposit))));
+    }
+
+    private static Wallet wallet(long balance) {
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        wallet.setAccountId(UUID.randomUUID());
+        wallet.setBalance(balance * 100);
+        return wallet;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.model.Money;
+import com.example.wattet.repository.PendingDepositRepository;
+import com.example.wattet.repository.WalletRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The scheduled flush is pushed out of the way so the test decides when deposits are flushed.
+ */
+@SpringBootTest(properties = {
+        "wallet.deposit-aggregation.enabled=true",
+        "wallet.deposit-aggregation.flush-interval=PT1H",
+        "wallet.deposit-aggregation.max-batch-size=1000"
+})
+@ActiveProfiles("test")
+class DepositAggregatorConcurrencyTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private PendingDepositRepository pendingDepositRepository;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private WalletProperties properties;
+
+    @Test
+    void withdrawWaitsForAFlushHoldingTheWalletsDeposits() throws Exception {
+        UUID walletId = walletService.createWallet(UUID.randomUUID()).getId();
+        walletService.deposit(walletId, Money.ofMinor(100));
+        assertEquals(Money.ofMinor(100), walletService.getBalance(walletId, true));
+
+        // A second flusher that stops once it holds the wallet's pending deposits
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PendingDepositRepository pausing = (PendingDepositRepository) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{PendingDepositRepository.class}, (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(pendingDepositRepository, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                    if (method.getName().equals("lockByWalletIds")) {
+                        holding.countDown();
+                        release.await(10, TimeUnit.SECONDS);
+                    }
+                    return result;
+                });
+        DepositAggregator flusher = new DepositAggregator(pausing, walletRepository, transactionManager, Runnable::run, properties);
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(flusher::flush);
+        assertTrue(holding.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> withdraw = CompletableFuture.runAsync(() -> walletService.withdraw(walletId, Money.ofMinor(100)));
+        Thread.sleep(200);
+        assertFalse(withdraw.isDone(), "the withdraw should wait for the flush, not miss its deposits");
+
+        release.countDown();
+        flush.get(10, TimeUnit.SECONDS);
+        withdraw.get(10, TimeUnit.SECONDS);
+
+        assertEquals(Money.ZERO, walletService.getBalance(walletId, true));
+        assertEquals(0, pendingDepositRepository.count());
+    }
+}
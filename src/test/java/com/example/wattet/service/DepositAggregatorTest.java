@@ -0,0 +1,218 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.exception.WalletNotFoundException;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.PendingDeposit;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.repository.PendingDepositRepository;
+import com.example.wattet.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class DepositAggregatorTest {
+
+    @Mock
+    private PendingDepositRepository pendingDepositRepository;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private Executor executor;
+
+    private WalletProperties properties;
+
+    private DepositAggregator aggregator;
+
+    private UUID low;
+    private UUID high;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(walletRepository.getReferenceById(any())).thenAnswer(invocation -> wallet(invocation.getArgument(0), 0));
+        properties = new WalletProperties();
+        properties.getDepositAggregation().setEnabled(true);
+        properties.getDepositAggregation().setMaxBatchSize(3);
+        aggregator = new DepositAggregator(pendingDepositRepository, walletRepository, transactionManager, executor, properties);
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        low = LockOrdering.WALLET_IDS.compare(a, b) < 0 ? a : b;
+        high = low == a ? b : a;
+    }
+
+    @Test
+    void disabledInLedgerMode() {
+        properties.getConcurrency().setMode(ConcurrencyMode.LEDGER);
+
+        assertFalse(aggregator.isEnabled());
+    }
+
+    @Test
+    void enqueueRejectsUnknownWallet() {
+        when(walletRepository.existsById(low)).thenReturn(false);
+
+        assertThrows(WalletNotFoundException.class, () -> aggregator.enqueue(low, Money.ofMinor(1_000)));
+        verify(pendingDepositRepository, never()).save(any());
+    }
+
+    @Test
+    void enqueueStartsAFlushOnceTheBatchSizeIsQueued() {
+        when(walletRepository.existsById(low)).thenReturn(true);
+
+        aggregator.enqueue(low, Money.ofMinor(100));
+        aggregator.enqueue(low, Money.ofMinor(100));
+        verifyNoInteractions(executor);
+        aggregator.enqueue(low, Money.ofMinor(100));
+        aggregator.enqueue(low, Money.ofMinor(100));
+
+        verify(pendingDepositRepository, times(4)).save(any(PendingDeposit.class));
+        verify(executor).execute(any());
+    }
+
+    @Test
+    void flushCreditsOneSumPerWalletInLockOrder() {
+        List<PendingDeposit> first = List.of(pending(high, 5), pending(low, 1), pending(high, 2));
+        when(pendingDepositRepository.findOldestWalletIds(any(Pageable.class))).thenReturn(List.of(high, low, high), List.of());
+        when(walletRepository.lockAvailableByIds(Set.of(low, high))).thenReturn(List.of(wallet(low, 0), wallet(high, 0)));
+        when(pendingDepositRepository.lockByWalletIds(Set.of(low, high))).thenReturn(first);
+
+        aggregator.flush();
+
+        InOrder inOrder = inOrder(walletRepository, pendingDepositRepository);
+        inOrder.verify(walletRepository).lockAvailableByIds(any());
+        inOrder.verify(pendingDepositRepository).lockByWalletIds(any());
+        inOrder.verify(walletRepository).credit(low, 1);
+        inOrder.verify(walletRepository).credit(high, 7);
+        inOrder.verify(pendingDepositRepository).deleteAllInBatch(first);
+        // A full batch means more may be waiting
+        verify(pendingDepositRepository, times(2)).findOldestWalletIds(any(Pageable.class));
+    }
+
+    @Test
+    void flushStopsOnAShortBatch() {
+        when(pendingDepositRepository.findOldestWalletIds(any(Pageable.class))).thenReturn(List.of(low));
+        when(walletRepository.lockAvailableByIds(any())).thenReturn(List.of(wallet(low, 0)));
+        when(pendingDepositRepository.lockByWalletIds(any())).thenReturn(List.of(pending(low, 1)));
+
+        aggregator.flush();
+
+        verify(pendingDepositRepository, times(1)).findOldestWalletIds(any(Pageable.class));
+    }
+
+    @Test
+    void flushSkipsWalletsHeldElsewhereAndStops() {
+        when(pendingDepositRepository.findOldestWalletIds(any(Pageable.class))).thenReturn(List.of(low, high, high));
+        // Another transaction holds the high wallet, and is applying its deposits itself
+        when(walletRepository.lockAvailableByIds(any())).thenReturn(List.of(wallet(low, 0)));
+        List<PendingDeposit> lowDeposits = List.of(pending(low, 4));
+        when(pendingDepositRepository.lockByWalletIds(Set.of(low))).thenReturn(lowDeposits);
+
+        aggregator.flush();
+
+        verify(walletRepository).credit(low, 4);
+        verify(walletRepository, never()).credit(eq(high), anyLong());
+        verify(pendingDepositRepository).deleteAllInBatch(lowDeposits);
+        verify(pendingDepositRepository, times(1)).findOldestWalletIds(any(Pageable.class));
+    }
+
+    @Test
+    void foldLocksTheWalletsBeforeWaitingForTheirDeposits() {
+        List<PendingDeposit> pending = List.of(pending(low, 3), pending(low, 4));
+        when(pendingDepositRepository.existsByWalletIdIn(List.of(low, high))).thenReturn(true);
+        when(pendingDepositRepository.lockByWalletIds(List.of(low, high))).thenReturn(pending);
+
+        aggregator.fold(low, high);
+
+        // Same order as a flush, so a fold waits for a flush holding these deposits instead of missing them
+        InOrder inOrder = inOrder(walletRepository, pendingDepositRepository);
+        inOrder.verify(walletRepository).findAllByIdForUpdate(List.of(low, high));
+        inOrder.verify(pendingDepositRepository).lockByWalletIds(List.of(low, high));
+        inOrder.verify(walletRepository).credit(low, 7);
+        verify(walletRepository, times(1)).credit(any(), anyLong());
+        verify(pendingDepositRepository).deleteAllInBatch(pending);
+    }
+
+    @Test
+    void foldWithNothingPendingTakesNoLocks() {
+        when(pendingDepositRepository.existsByWalletIdIn(List.of(low))).thenReturn(false);
+
+        aggregator.fold(low);
+
+        verify(walletRepository, never()).findAllByIdForUpdate(any());
+        verify(pendingDepositRepository, never()).lockByWalletIds(any());
+    }
+
+    @Test
+    void foldIntoAddsToLockedEntities() {
+        Wallet wallet = wallet(low, 10);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<UUID>> ids = ArgumentCaptor.forClass(Collection.class);
+        when(pendingDepositRepository.lockByWalletIds(ids.capture())).thenReturn(List.of(pending(low, 5)));
+
+        aggregator.foldInto(List.of(wallet));
+
+        assertEquals(15, wallet.getBalance());
+        assertEquals(List.of(low), List.copyOf(ids.getValue()));
+        verify(walletRepository, never()).credit(any(), anyLong());
+    }
+
+    @Test
+    void disabledAggregatorStopsOnceDrained() {
+        properties.getDepositAggregation().setEnabled(false);
+        when(pendingDepositRepository.findOldestWalletIds(any(Pageable.class))).thenReturn(List.of());
+
+        aggregator.flushScheduled();
+        aggregator.flushScheduled();
+        aggregator.fold(low);
+
+        verify(pendingDepositRepository, times(1)).findOldestWalletIds(any(Pageable.class));
+        verify(pendingDepositRepository, never()).lockByWalletIds(any());
+    }
+
+    private PendingDeposit pending(UUID walletId, long amount) {
+        PendingDeposit deposit = new PendingDeposit();
+        deposit.setWallet(wallet(walletId, 0));
+        deposit.setAmount(amount);
+        return deposit;
+    }
+
+    private Wallet wallet(UUID id, long balance) {
+        Wallet wallet = new Wallet();
+        wallet.setId(id);
+        wallet.setBalance(balance);
+        return wallet;
+    }
+}
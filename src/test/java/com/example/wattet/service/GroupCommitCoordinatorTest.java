@@ -0,0 +1,253 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.exception.InsufficientBalanceException;
+import com.example.wattet.repository.WalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GroupCommitCoordinatorTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private StripedBalanceService stripedBalanceService;
+
+    private WalletProperties properties;
+
+    private GroupCommitCoordinator coordinator;
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+        when(session.doReturningWork(any())).thenReturn(mock(Savepoint.class));
+        properties = new WalletProperties();
+        properties.getGroupCommit().setEnabled(true);
+        properties.getGroupCommit().setWorkers(1);
+        properties.getGroupCommit().setMaxWait(Duration.ZERO);
+        coordinator = new GroupCommitCoordinator(transactionManager, entityManager, walletRepository,
+                stripedBalanceService, properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        coordinator.stop();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void notStartedInShardedMode() throws InterruptedException {
+        properties.getConcurrency().setMode(ConcurrencyMode.SHARDED);
+        GroupCommitCoordinator sharded = new GroupCommitCoordinator(transactionManager, entityManager, walletRepository,
+                stripedBalanceService, properties, new SimpleMeterRegistry());
+
+        assertFalse(sharded.isEnabled());
+        sharded.stop();
+    }
+
+    @Test
+    void callsQueuedDuringACommitShareTheNextTransaction() throws Exception {
+        CountDownLatch inFirstGroup = new CountDownLatch(1);
+        CountDownLatch releaseFirstGroup = new CountDownLatch(1);
+        CompletableFuture<String> blocking = submit(() -> {
+            inFirstGroup.countDown();
+            await(releaseFirstGroup);
+            return "first";
+        });
+        assertTrue(inFirstGroup.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = submit(() -> "second");
+        CompletableFuture<String> third = submit(() -> "third");
+        CompletableFuture<String> fourth = submit(() -> "fourth");
+        awaitQueued(3);
+        releaseFirstGroup.countDown();
+
+        assertEquals("first", blocking.get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+        assertEquals("third", third.get(5, TimeUnit.SECONDS));
+        assertEquals("fourth", fourth.get(5, TimeUnit.SECONDS));
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager, times(2)).commit(any());
+        verify(entityManager, times(4)).flush();
+    }
+
+    @Test
+    void failingCallIsRolledBackAloneAndTheRestCommits() throws Exception {
+        CountDownLatch inFirstGroup = new CountDownLatch(1);
+        CountDownLatch releaseFirstGroup = new CountDownLatch(1);
+        CompletableFuture<String> blocking = submit(() -> {
+            inFirstGroup.countDown();
+            await(releaseFirstGroup);
+            return "first";
+        });
+        assertTrue(inFirstGroup.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> failing = submit(() -> {
+            throw new InsufficientBalanceException("Insufficient balance in wallet");
+        });
+        CompletableFuture<String> after = submit(() -> "after");
+        awaitQueued(2);
+        releaseFirstGroup.countDown();
+
+        assertEquals("first", blocking.get(5, TimeUnit.SECONDS));
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof InsufficientBalanceException);
+        assertEquals("after", after.get(5, TimeUnit.SECONDS));
+        verify(session).doWork(any());
+        verify(entityManager).clear();
+        verify(transactionManager, times(2)).commit(any());
+        verify(transactionManager, never()).rollback(any());
+    }
+
+    @Test
+    void groupLocksEveryWalletInLockOrderBeforeItsCalls() throws Exception {
+        // UUID.compareTo would put high first, lock ordering compares unsigned
+        UUID low = new UUID(1, 0);
+        UUID high = new UUID(-1, 0);
+        List<Object> steps = new CopyOnWriteArrayList<>();
+        when(walletRepository.findAllByIdForUpdate(any())).thenAnswer(invocation -> {
+            steps.add(List.copyOf(invocation.<Collection<UUID>>getArgument(0)));
+            return List.of();
+        });
+        CountDownLatch inFirstGroup = new CountDownLatch(1);
+        CountDownLatch releaseFirstGroup = new CountDownLatch(1);
+        CompletableFuture<String> blocking = submit(() -> {
+            inFirstGroup.countDown();
+            await(releaseFirstGroup);
+            return "first";
+        });
+        assertTrue(inFirstGroup.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = submit(List.of(high), () -> {
+            steps.add("second");
+            return "second";
+        });
+        CompletableFuture<String> third = submit(List.of(low, high), () -> {
+            steps.add("third");
+            return "third";
+        });
+        awaitQueued(2);
+        releaseFirstGroup.countDown();
+
+        assertEquals("first", blocking.get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+        assertEquals("third", third.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of(low, high), "second", "third"), steps);
+    }
+
+    @Test
+    void ledgerGroupsLockNoWalletRows() {
+        properties.getConcurrency().setMode(ConcurrencyMode.LEDGER);
+
+        assertEquals("grouped", coordinator.execute(List.of(UUID.randomUUID()), () -> "grouped", () -> "alone"));
+        verify(walletRepository, never()).findAllByIdForUpdate(any());
+    }
+
+    @Test
+    void callsOnStripedWalletsRunAlone() {
+        UUID striped = UUID.randomUUID();
+        when(stripedBalanceService.isStriped(striped)).thenReturn(true);
+
+        assertEquals("alone", coordinator.execute(List.of(UUID.randomUUID(), striped), () -> "grouped", () -> "alone"));
+        verify(transactionManager, never()).getTransaction(any());
+    }
+
+    @Test
+    void databaseFailureRunsTheGroupAgainAlone() {
+        String result = coordinator.execute(List.of(), () -> {
+            throw new CannotAcquireLockException("deadlock detected");
+        }, () -> "alone");
+
+        assertEquals("alone", result);
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    void stoppedCoordinatorRunsCallsAlone() throws InterruptedException {
+        coordinator.stop();
+
+        assertEquals("alone", coordinator.execute(List.of(), () -> "grouped", () -> "alone"));
+    }
+
+    @Test
+    void windowFollowsTheLoad() {
+        long maxWait = TimeUnit.MILLISECONDS.toNanos(2);
+
+        long opened = GroupCommitCoordinator.nextWindow(0, 5, 50, maxWait);
+        assertTrue(opened > 0);
+        assertEquals(2 * opened, GroupCommitCoordinator.nextWindow(opened, 5, 50, maxWait));
+        assertEquals(maxWait, GroupCommitCoordinator.nextWindow(maxWait, 5, 50, maxWait));
+        assertEquals(maxWait / 2, GroupCommitCoordinator.nextWindow(maxWait, 1, 50, maxWait));
+        assertEquals(maxWait / 2, GroupCommitCoordinator.nextWindow(maxWait, 50, 50, maxWait));
+        assertEquals(0, GroupCommitCoordinator.nextWindow(0, 1, 50, maxWait));
+    }
+
+    private CompletableFuture<String> submit(Supplier<String> work) {
+        return submit(List.of(), work);
+    }
+
+    private CompletableFuture<String> submit(List<UUID> walletIds, Supplier<String> work) {
+        return CompletableFuture.supplyAsync(() -> coordinator.execute(walletIds, work, () -> "alone"), callers);
+    }
+
+    private void awaitQueued(int calls) {
+        while (coordinator.queued() < calls) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.TransactionDTO;
+import com.example.wattet.exception.IdempotencyKeyException;
+import com.example.wattet.mapper.TransactionMapper;
+import com.example.wattet.model.IdempotencyRecord;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.model.Wallet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTest {
+
+    private IdempotencyStore idempotencyStore;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyStore = mock(IdempotencyStore.class);
+        idempotencyService = new IdempotencyService(idempotencyStore, new TransactionMapper(), new WalletProperties());
+    }
+
+    @Test
+    void testReplayIsServedFromCache() {
+        when(idempotencyStore.executeOnce(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            Supplier<Transaction> operation = invocation.getArgument(2);
+            return record(invocation.getArgument(0), invocation.getArgument(1), operation.get());
+        });
+        AtomicInteger executions = new AtomicInteger();
+
+        TransactionDTO first = idempotencyService.execute("key-1", "deposit", () -> transaction(executions));
+        TransactionDTO second = idempotencyService.execute("key-1", "deposit", () -> transaction(executions));
+
+        assertEquals(first, second);
+        assertEquals(1, executions.get());
+        verify(idempotencyStore, times(1)).executeOnce(anyString(), anyString(), any());
+    }
+
+    @Test
+    void testConcurrentDuplicatesCollapseIntoOneExecution() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        when(idempotencyStore.executeOnce(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            Supplier<Transaction> operation = invocation.getArgument(2);
+            return record(invocation.getArgument(0), invocation.getArgument(1), operation.get());
+        });
+
+        CompletableFuture<TransactionDTO> first = CompletableFuture.supplyAsync(
+                () -> idempotencyService.execute("key-2", "withdraw", () -> transaction(executions)));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<TransactionDTO> duplicate = CompletableFuture.supplyAsync(
+                () -> idempotencyService.execute("key-2", "withdraw", () -> transaction(executions)));
+        release.countDown();
+
+        assertEquals(first.get(5, TimeUnit.SECONDS), duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testKeyReusedForDifferentRequestIsRejected() {
+        when(idempotencyStore.executeOnce(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            Supplier<Transaction> operation = invocation.getArgument(2);
+            return record(invocation.getArgument(0), invocation.getArgument(1), operation.get());
+        });
+        AtomicInteger executions = new AtomicInteger();
+        idempotencyService.execute("key-3", "deposit:a:10", () -> transaction(executions));
+
+        assertThrows(IdempotencyKeyException.class,
+                () -> idempotencyService.execute("key-3", "deposit:a:20", () -> transaction(executions)));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testKeyIsRefusedInShardedMode() {
+        WalletProperties properties = new WalletProperties();
+        properties.getConcurrency().setMode(ConcurrencyMode.SHARDED);
+        IdempotencyService sharded = new IdempotencyService(idempotencyStore, new TransactionMapper(), properties);
+        AtomicInteger executions = new AtomicInteger();
+
+        assertThrows(IdempotencyKeyException.class,
+                () -> sharded.execute("key-4", "deposit:a:10", () -> transaction(executions)));
+        assertEquals(0, executions.get());
+        verifyNoInteractions(idempotencyStore);
+
+        // Requests without a key are unaffected
+        sharded.execute(null, "deposit:a:10", () -> transaction(executions));
+        assertEquals(1, executions.get());
+    }
+
+    private static Transaction transaction(AtomicInteger executions) {
+        executions.incrementAndGet();
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        Transaction transaction = new Transaction();
+        transaction.setId(UUID.randomUUID());
+        transaction.setWallet(wallet);
+        transaction.setType(TransactionType.DEPOSIT);
+        transaction.setAmount(Money.parse("10").minorUnits());
+        transaction.setTimestamp(LocalDateTime.now());
+        return transaction;
+    }
+
+    private static IdempotencyRecord record(String key, String fingerprint, Transaction transaction) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setKey(key);
+        record.setFingerprint(fingerprint);
+        record.setTransactionId(transaction.getId());
+        record.setWalletId(transaction.getWallet().getId());
+        record.setType(transaction.getType());
+        record.setAmount(transaction.getAmount());
+        record.setTimestamp(transaction.getTimestamp());
+        return record;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.model.IdempotencyRecord;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IdempotencyStoreTest {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository = mock(IdempotencyRecordRepository.class);
+
+    private final IdempotencyStore idempotencyStore = new IdempotencyStore(idempotencyRecordRepository, new WalletProperties());
+
+    @Test
+    void amountBeyondExactDoublesIsRecordedExactly() {
+        when(idempotencyRecordRepository.findById("key")).thenReturn(Optional.empty());
+        when(idempotencyRecordRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        long amount = (1L << 53) + 1;
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        Transaction deposit = new Transaction();
+        deposit.setId(UUID.randomUUID());
+        deposit.setWallet(wallet);
+        deposit.setType(TransactionType.DEPOSIT);
+        deposit.setAmount(amount);
+        deposit.setTimestamp(LocalDateTime.now());
+
+        IdempotencyRecord record = idempotencyStore.executeOnce("key", "deposit", () -> deposit);
+
+        assertEquals(amount, record.getAmount());
+        assertEquals(wallet.getId(), record.getWalletId());
+        assertEquals(deposit.getId(), record.getTransactionId());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class IndexCheckJobTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private WalletProperties properties;
+
+    private IndexCheckJob job;
+
+    @BeforeEach
+    void setUp() {
+        properties = new WalletProperties();
+        job = new IndexCheckJob(entityManagerFactory, dataSource, properties);
+    }
+
+    @Test
+    void schemaBuiltFromTheEntitiesHasEveryIndex() {
+        assertTrue(job.findMissingIndexes().isEmpty());
+    }
+
+    @Test
+    void droppedIndexIsReported() {
+        // Not one H2 reuses for a foreign key, those cannot be dropped
+        entityManager.createNativeQuery("drop index idx_balance_history_wallet_timestamp").executeUpdate();
+        try {
+            assertEquals(List.of("balance_history.idx_balance_history_wallet_timestamp"), job.findMissingIndexes());
+
+            properties.getSchema().setFailOnMissingIndex(true);
+            assertThrows(IllegalStateException.class, () -> job.run(null));
+        } finally {
+            entityManager.createNativeQuery(
+                    "create index idx_balance_history_wallet_timestamp on balance_history (wallet_id, timestamp)")
+                    .executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.wattet.service;
+
+import com.example.wattet.dto.BalanceSnapshot;
+import com.example.wattet.exception.InsufficientBalanceException;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Posting;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.repository.PostingRepository;
+import com.example.wattet.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LedgerServiceTest {
+
+    @Mock
+    private PostingRepository postingRepository;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @InjectMocks
+    private LedgerService ledgerService;
+
+    private UUID source;
+    private UUID target;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        source = UUID.randomUUID();
+        target = UUID.randomUUID();
+        when(walletRepository.getReferenceById(any())).thenAnswer(invocation -> wallet(invocation.getArgument(0)));
+    }
+
+    @Test
+    void walletWithoutPostingsStartsFromItsBalanceColumn() {
+        when(postingRepository.findFirstByWalletIdOrderBySeqDesc(source)).thenReturn(Optional.empty());
+        when(walletRepository.findBalanceSnapshotById(source)).thenReturn(Optional.of(new BalanceSnapshot(Money.ofMinor(1_000), 7L)));
+
+        assertEquals(new BalanceSnapshot(Money.ofMinor(1_000), 0L), ledgerService.findBalance(source).orElseThrow());
+    }
+
+    @Test
+    void transferAppendsDebitAndCreditWithRunningBalances() {
+        when(postingRepository.findFirstByWalletIdOrderBySeqDesc(source)).thenReturn(Optional.of(posting(4, "100")));
+        when(postingRepository.findFirstByWalletIdOrderBySeqDesc(target)).thenReturn(Optional.of(posting(9, "5")));
+        // write() clears its pending list after saving, so copy it while the call is made
+        List<Posting> written = new ArrayList<>();
+        when(postingRepository.saveAllAndFlush(any())).thenAnswer(invocation -> {
+            written.addAll(invocation.getArgument(0));
+            return List.copyOf(written);
+        });
+
+        LedgerService.Session ledger = ledgerService.open(List.of(source, target));
+        ledger.append(transaction(TransactionType.TRANSFER, "30"));
+        ledger.append(transaction(TransactionType.TRANSFER, "20"));
+        ledger.write();
+
+        verify(postingRepository).saveAllAndFlush(any());
+        assertEquals(4, written.size());
+        assertEquals(Money.parse("50"), ledger.balance(source));
+        assertEquals(Money.parse("55"), ledger.balance(target));
+        Posting lastDebit = written.stream()
+                .filter(p -> p.getWallet().getId().equals(source) && p.getSeq() == 6)
+                .findFirst().orElseThrow();
+        assertEquals(Money.parse("-20").minorUnits(), lastDebit.getAmount());
+        assertEquals(Money.parse("50").minorUnits(), lastDebit.getBalance());
+    }
+
+    @Test
+    void overdraftIsRejectedBeforeWriting() {
+        when(postingRepository.findFirstByWalletIdOrderBySeqDesc(source)).thenReturn(Optional.of(posting(1, "10")));
+        when(postingRepository.findFirstByWalletIdOrderBySeqDesc(target)).thenReturn(Optional.of(posting(1, "0")));
+
+        LedgerService.Session ledger = ledgerService.open(List.of(source, target));
+
+        assertThrows(InsufficientBalanceException.class, () -> ledger.append(transaction(TransactionType.TRANSFER, "11")));
+    }
+
+    @Test
+    void postingNumberClashBecomesConcurrencyFailure() {
+        when(postingRepository.findFirstByWalletIdOrderBySeqDesc(source)).thenReturn(Optional.of(posting(1, "10")));
+        when(postingRepository.saveAllAndFlush(any())).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement", new RuntimeException("duplicate key value violates unique constraint \"uk_posting_wallet_seq\"")));
+
+        LedgerService.Session ledger = ledgerService.open(List.of(source));
+        ledger.append(transaction(TransactionType.DEPOSIT, "1"));
+
+        assertThrows(ConcurrencyFailureException.class, ledger::write);
+    }
+
+    @Test
+    void missingWalletIsLeftOutOfSession() {
+        when(postingRepository.findFirstByWalletIdOrderBySeqDesc(source)).thenReturn(Optional.empty());
+        when(walletRepository.findBalanceSnapshotById(source)).thenReturn(Optional.empty());
+
+        assertFalse(ledgerService.open(List.of(source)).contains(source));
+    }
+
+    private Transaction transaction(TransactionType type, String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setType(type);
+        transaction.setAmount(Money.parse(amount).minorUnits());
+        transaction.setTimestamp(LocalDateTime.now());
+        transaction.setWallet(wallet(source));
+        if (type == TransactionType.TRANSFER) {
+            transaction.setRelatedWallet(wallet(target));
+        }
+        return transaction;
+    }
+
+    private static Posting posting(long seq, String balance) {
+        Posting posting = new Posting();
+        posting.setSeq(seq);
+        posting.setBalance(Money.parse(balance).minorUnits());
+        return posting;
+    }
+
+    private static Wallet wallet(UUID id) {
+        Wallet wallet = new Wallet();
+        wallet.setId(id);
+        return wallet;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.event.TransactionRecordedEvent;
+import com.example.wattet.model.OutboxEvent;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private OutboxSink sink;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private WalletProperties properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        properties = new WalletProperties();
+        properties.getOutbox().setEnabled(true);
+        properties.getOutbox().setBatchSize(2);
+        properties.getOutbox().setInitialBackoff(Duration.ofMinutes(1));
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new OutboxRelay(outboxEventRepository, sink, transactionManager, properties, meterRegistry);
+    }
+
+    @Test
+    void deliversBatchesInSequenceOrderThenDeletesThem() {
+        List<OutboxEvent> first = List.of(event(1), event(2));
+        List<OutboxEvent> second = List.of(event(3));
+        when(outboxEventRepository.claim(any(Pageable.class))).thenReturn(first, second);
+
+        assertEquals(3, relay.relay());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TransactionRecordedEvent>> published = ArgumentCaptor.forClass(List.class);
+        InOrder inOrder = inOrder(sink, outboxEventRepository);
+        inOrder.verify(sink).publish(published.capture());
+        inOrder.verify(outboxEventRepository).deleteAllInBatch(first);
+        inOrder.verify(sink).publish(published.capture());
+        inOrder.verify(outboxEventRepository).deleteAllInBatch(second);
+        assertEquals(List.of(1L, 2L), published.getAllValues().get(0).stream().map(TransactionRecordedEvent::sequence).toList());
+        assertEquals(3.0, meterRegistry.counter("wallet.outbox.published").count());
+    }
+
+    @Test
+    void failedDeliveryKeepsTheEventsAndBacksOff() {
+        List<OutboxEvent> claimed = List.of(event(1));
+        when(outboxEventRepository.claim(any(Pageable.class))).thenReturn(claimed);
+        doThrow(new IllegalStateException("sink down")).when(sink).publish(any());
+
+        relay.relayScheduled();
+        relay.relayScheduled();
+
+        verify(outboxEventRepository, never()).deleteAllInBatch(any());
+        verify(outboxEventRepository, times(1)).claim(any(Pageable.class));
+        assertEquals(1.0, meterRegistry.counter("wallet.outbox.failures").count());
+    }
+
+    @Test
+    void batchHeldByAnotherRelayIsNotAFailure() {
+        when(outboxEventRepository.claim(any(Pageable.class)))
+                .thenThrow(new PessimisticLockingFailureException("could not obtain lock"))
+                .thenReturn(List.of());
+
+        relay.relayScheduled();
+        relay.relayScheduled();
+
+        verify(outboxEventRepository, times(2)).claim(any(Pageable.class));
+        assertEquals(0.0, meterRegistry.counter("wallet.outbox.failures").count());
+        verifyNoInteractions(sink);
+    }
+
+    @Test
+    void disabledOutboxIsNotPolled() {
+        properties.getOutbox().setEnabled(false);
+
+        relay.relayScheduled();
+
+        verifyNoInteractions(outboxEventRepository, sink);
+    }
+
+    private OutboxEvent event(long id) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(id);
+        event.setTransactionId(UUID.randomUUID());
+        event.setWalletId(UUID.randomUUID());
+        event.setType(TransactionType.DEPOSIT);
+        event.setAmount(1_000);
+        event.setOccurredAt(LocalDateTime.now());
+        return event;
+    }
+}
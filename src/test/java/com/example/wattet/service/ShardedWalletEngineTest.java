@@ -0,0 +1,303 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.exception.DatabaseBusyException;
+import com.example.wattet.exception.InsufficientBalanceException;
+import com.example.wattet.exception.WalletNotFoundException;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.TransactionType;
+import com.example.wattet.model.PendingDeposit;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.repository.PendingDepositRepository;
+import com.example.wattet.repository.TransactionRepository;
+import com.example.wattet.repository.WalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShardedWalletEngineTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private PendingDepositRepository pendingDepositRepository;
+
+    @Mock
+    private StripedBalanceService stripedBalanceService;
+
+    @Mock
+    private BalanceCheckpointService balanceCheckpointService;
+
+    @Mock
+    private TransactionOutbox transactionOutbox;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final Map<UUID, Long> balances = new HashMap<>();
+
+    private WalletProperties properties;
+
+    private ShardedWalletEngine engine;
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(walletRepository.findByIdForUpdate(any())).thenAnswer(invocation -> {
+            UUID walletId = invocation.getArgument(0);
+            return Optional.ofNullable(balances.get(walletId)).map(balance -> {
+                Wallet wallet = new Wallet();
+                wallet.setId(walletId);
+                wallet.setBalance(balance);
+                return wallet;
+            });
+        });
+        when(walletRepository.credit(any(), anyLong())).thenReturn(1);
+        when(walletRepository.debit(any(), anyLong())).thenReturn(1);
+        when(walletRepository.getReferenceById(any())).thenAnswer(invocation -> {
+            Wallet wallet = new Wallet();
+            wallet.setId(invocation.getArgument(0));
+            return wallet;
+        });
+        when(transactionRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        properties = new WalletProperties();
+        properties.getConcurrency().setMode(ConcurrencyMode.SHARDED);
+        properties.getSharding().setShards(2);
+        engine = new ShardedWalletEngine(walletRepository, transactionRepository, pendingDepositRepository,
+                stripedBalanceService, balanceCheckpointService, transactionOutbox, transactionManager, eventPublisher, properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        engine.stop();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void movementsAreCheckedInMemoryAndWrittenAsDeltas() {
+        UUID walletId = wallet(1_000);
+
+        engine.deposit(walletId, Money.ofMinor(500));
+        assertThrows(InsufficientBalanceException.class, () -> engine.withdraw(walletId, Money.ofMinor(2_000)));
+        Transaction withdrawal = engine.withdraw(walletId, Money.ofMinor(1_500));
+
+        assertEquals(TransactionType.WITHDRAW, withdrawal.getType());
+        assertEquals(1_500, withdrawal.getAmount());
+        verify(walletRepository).credit(walletId, 500);
+        verify(walletRepository).debit(walletId, 1_500);
+        verify(walletRepository, times(1)).findByIdForUpdate(walletId);
+        verify(balanceCheckpointService, times(2)).onTransactionRecorded(any());
+    }
+
+    @Test
+    void transferBetweenShardsCommitsBothSidesOnTheTarget() {
+        UUID[] wallets = onDifferentShards();
+        UUID from = wallets[0];
+        UUID to = wallets[1];
+        balances.put(from, 1_000L);
+        balances.put(to, 0L);
+
+        Transaction transfer = engine.transfer(from, to, Money.ofMinor(300));
+
+        assertEquals(TransactionType.TRANSFER, transfer.getType());
+        assertEquals(from, transfer.getWallet().getId());
+        assertEquals(to, transfer.getRelatedWallet().getId());
+        verify(walletRepository).debit(from, 300);
+        verify(walletRepository).credit(to, 300);
+        // The reservation stays taken once the transfer committed
+        assertThrows(InsufficientBalanceException.class, () -> engine.withdraw(from, Money.ofMinor(701)));
+    }
+
+    @Test
+    void transferToUnknownWalletReturnsTheReservation() {
+        UUID[] wallets = onDifferentShards();
+        UUID from = wallets[0];
+        balances.put(from, 1_000L);
+
+        assertThrows(WalletNotFoundException.class, () -> engine.transfer(from, wallets[1], Money.ofMinor(1_000)));
+
+        engine.withdraw(from, Money.ofMinor(1_000));
+        verify(walletRepository).debit(from, 1_000);
+    }
+
+    @Test
+    void failedCommitRevertsTheBatchAndReturnsTheReservation() {
+        UUID[] wallets = onDifferentShards();
+        UUID from = wallets[0];
+        UUID to = wallets[1];
+        balances.put(from, 1_000L);
+        balances.put(to, 0L);
+        when(walletRepository.credit(to, 1_000)).thenThrow(new IllegalStateException("connection reset")).thenReturn(1);
+
+        assertThrows(IllegalStateException.class, () -> engine.transfer(from, to, Money.ofMinor(1_000)));
+        // Neither the source's reservation nor the target's credit survived the failed commit
+        assertThrows(InsufficientBalanceException.class, () -> engine.withdraw(to, Money.ofMinor(1)));
+        engine.transfer(from, to, Money.ofMinor(1_000));
+
+        verify(walletRepository, times(2)).credit(to, 1_000);
+    }
+
+    @Test
+    void queuedMovementsShareOneCommit() throws Exception {
+        UUID walletId = wallet(0);
+        CountDownLatch inFirstCommit = new CountDownLatch(1);
+        CountDownLatch releaseFirstCommit = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        when(transactionRepository.saveAll(any())).thenAnswer(invocation -> {
+            if (first.getAndSet(false)) {
+                inFirstCommit.countDown();
+                assertTrue(releaseFirstCommit.await(5, TimeUnit.SECONDS));
+            }
+            return invocation.getArgument(0);
+        });
+
+        CompletableFuture<Transaction> blocking = CompletableFuture.supplyAsync(() -> engine.deposit(walletId, Money.ofMinor(1)), callers);
+        assertTrue(inFirstCommit.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<Transaction>> queued = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            queued.add(CompletableFuture.supplyAsync(() -> engine.deposit(walletId, Money.ofMinor(1)), callers));
+        }
+        while (engine.queued() < 5) {
+            Thread.onSpinWait();
+        }
+        releaseFirstCommit.countDown();
+        blocking.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Transaction> deposit : queued) {
+            deposit.get(5, TimeUnit.SECONDS);
+        }
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Transaction>> batches = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository, times(2)).saveAll(batches.capture());
+        assertEquals(5, batches.getAllValues().get(1).size());
+        verify(walletRepository).credit(walletId, 5);
+    }
+
+    @Test
+    void loadMovesPendingDepositsAndStripesIntoTheRow() {
+        UUID walletId = wallet(100);
+        PendingDeposit pending = new PendingDeposit();
+        pending.setAmount(50);
+        when(pendingDepositRepository.lockByWalletId(walletId)).thenReturn(List.of(pending));
+
+        assertThrows(InsufficientBalanceException.class, () -> engine.withdraw(walletId, Money.ofMinor(151)));
+        engine.withdraw(walletId, Money.ofMinor(150));
+
+        verify(stripedBalanceService).collapse(any());
+        verify(pendingDepositRepository).deleteAllInBatch(List.of(pending));
+        verify(walletRepository).debit(walletId, 150);
+    }
+
+    @Test
+    void refusedDebitFailsOnlyItsWalletAndReloadsIt() throws Exception {
+        UUID blocker = wallet(0);
+        UUID drifted = wallet(1_000);
+        UUID healthy = wallet(0);
+        while (engine.shardIndex(drifted) != engine.shardIndex(blocker)) {
+            balances.remove(drifted);
+            drifted = wallet(1_000);
+        }
+        while (engine.shardIndex(healthy) != engine.shardIndex(blocker)) {
+            balances.remove(healthy);
+            healthy = wallet(0);
+        }
+        UUID driftedWallet = drifted;
+        UUID healthyWallet = healthy;
+        engine.withdraw(driftedWallet, Money.ofMinor(400));
+        // The row was changed behind the shard's back
+        when(walletRepository.debit(driftedWallet, 600)).thenReturn(0);
+        CountDownLatch inFirstCommit = new CountDownLatch(1);
+        CountDownLatch releaseFirstCommit = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        when(transactionRepository.saveAll(any())).thenAnswer(invocation -> {
+            if (first.getAndSet(false)) {
+                inFirstCommit.countDown();
+                assertTrue(releaseFirstCommit.await(5, TimeUnit.SECONDS));
+            }
+            return invocation.getArgument(0);
+        });
+
+        CompletableFuture<Transaction> blocking = CompletableFuture.supplyAsync(() -> engine.deposit(blocker, Money.ofMinor(1)), callers);
+        assertTrue(inFirstCommit.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Transaction> refused = CompletableFuture.supplyAsync(() -> engine.withdraw(driftedWallet, Money.ofMinor(600)), callers);
+        CompletableFuture<Transaction> deposit = CompletableFuture.supplyAsync(() -> engine.deposit(healthyWallet, Money.ofMinor(5)), callers);
+        while (engine.queued() < 2) {
+            Thread.onSpinWait();
+        }
+        releaseFirstCommit.countDown();
+        blocking.get(5, TimeUnit.SECONDS);
+
+        assertEquals(5, deposit.get(5, TimeUnit.SECONDS).getAmount());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> refused.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        balances.put(driftedWallet, 300L);
+        assertThrows(InsufficientBalanceException.class, () -> engine.withdraw(driftedWallet, Money.ofMinor(301)));
+        verify(walletRepository, times(2)).findByIdForUpdate(driftedWallet);
+    }
+
+    @Test
+    void fullShardRefusesNewRequests() {
+        UUID walletId = wallet(0);
+        properties.getSharding().setQueueCapacity(0);
+
+        assertThrows(DatabaseBusyException.class, () -> engine.deposit(walletId, Money.ofMinor(1)));
+        verify(walletRepository, never()).findByIdForUpdate(walletId);
+    }
+
+    private UUID wallet(long balance) {
+        UUID walletId = UUID.randomUUID();
+        balances.put(walletId, balance);
+        return walletId;
+    }
+
+    private UUID[] onDifferentShards() {
+        UUID first = UUID.randomUUID();
+        UUID second;
+        do {
+            second = UUID.randomUUID();
+        } while (engine.shardIndex(second) == engine.shardIndex(first));
+        return new UUID[]{first, second};
+    }
+}
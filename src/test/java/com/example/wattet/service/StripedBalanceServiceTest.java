@@ -0,0 +1,196 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ReadConsistency;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.exception.InsufficientBalanceException;
+import com.example.wattet.exception.WalletNotFoundException;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Wallet;
+import com.example.wattet.model.WalletStripe;
+import com.example.wattet.repository.WalletRepository;
+import com.example.wattet.repository.WalletStripeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StripedBalanceServiceTest {
+
+    private static final Money TEN = Money.ofMinor(10);
+
+    @Mock
+    private WalletStripeRepository stripeRepository;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    private WalletProperties properties;
+
+    private UUID walletId;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        walletId = UUID.randomUUID();
+        properties = new WalletProperties();
+        properties.getStriping().setWalletIds(Set.of(walletId));
+        properties.getStriping().setStripes(4);
+    }
+
+    @Test
+    void onlyConfiguredWalletsAreStriped() {
+        StripedBalanceService service = service();
+
+        assertTrue(service.isStriped(walletId));
+        assertFalse(service.isStriped(UUID.randomUUID()));
+    }
+
+    @Test
+    void creditLandsOnOneStripeWithoutTouchingTheWalletRow() {
+        when(stripeRepository.credit(eq(walletId), anyInt(), anyLong())).thenReturn(1);
+
+        service().credit(walletId, TEN);
+
+        verify(stripeRepository).credit(eq(walletId), anyInt(), eq(10L));
+        verify(walletRepository, never()).credit(any(), anyLong());
+    }
+
+    @Test
+    void creditFallsBackToTheWalletRowWhenTheStripeIsMissing() {
+        when(stripeRepository.credit(eq(walletId), anyInt(), anyLong())).thenReturn(0);
+        when(walletRepository.credit(walletId, 10L)).thenReturn(1);
+
+        service().credit(walletId, TEN);
+
+        verify(walletRepository).credit(walletId, TEN.minorUnits());
+    }
+
+    @Test
+    void creditToUnknownWalletThrows() {
+        when(stripeRepository.credit(eq(walletId), anyInt(), anyLong())).thenReturn(0);
+        when(walletRepository.credit(walletId, 10L)).thenReturn(0);
+
+        assertThrows(WalletNotFoundException.class, () -> service().credit(walletId, TEN));
+    }
+
+    @Test
+    void debitTriesEveryStripeBeforeTheWalletRow() {
+        when(stripeRepository.debit(eq(walletId), anyInt(), anyLong())).thenReturn(0);
+        when(walletRepository.debit(walletId, 10L)).thenReturn(1);
+
+        service().debit(walletId, TEN, "Insufficient balance in wallet: ");
+
+        verify(stripeRepository, times(4)).debit(eq(walletId), anyInt(), eq(10L));
+        verify(stripeRepository, never()).findAllByWalletIdForUpdate(any());
+    }
+
+    @Test
+    void debitDrainsStripesPiecewiseWhenNoSingleRowHoldsTheAmount() {
+        Wallet wallet = wallet(5);
+        WalletStripe first = stripe(0, 4);
+        WalletStripe second = stripe(1, 3);
+        when(stripeRepository.debit(eq(walletId), anyInt(), anyLong())).thenReturn(0);
+        when(walletRepository.debit(walletId, 10L)).thenReturn(0);
+        when(stripeRepository.findAllByWalletIdForUpdate(walletId)).thenReturn(List.of(first, second));
+        when(walletRepository.findByIdForUpdate(walletId)).thenReturn(Optional.of(wallet));
+
+        service().debit(walletId, TEN, "Insufficient balance in wallet: ");
+
+        assertEquals(0, first.getBalance());
+        assertEquals(0, second.getBalance());
+        assertEquals(2, wallet.getBalance());
+    }
+
+    @Test
+    void debitBeyondTheStripedTotalThrows() {
+        Wallet wallet = wallet(1);
+        WalletStripe only = stripe(0, 4);
+        when(stripeRepository.debit(eq(walletId), anyInt(), anyLong())).thenReturn(0);
+        when(walletRepository.debit(walletId, 10L)).thenReturn(0);
+        when(stripeRepository.findAllByWalletIdForUpdate(walletId)).thenReturn(List.of(only));
+        when(walletRepository.findByIdForUpdate(walletId)).thenReturn(Optional.of(wallet));
+
+        assertThrows(InsufficientBalanceException.class,
+                () -> service().debit(walletId, TEN, "Insufficient balance in wallet: "));
+        assertEquals(4, only.getBalance());
+    }
+
+    @Test
+    void collapseFoldsStripesIntoTheWalletRow() {
+        Wallet wallet = wallet(1);
+        WalletStripe first = stripe(0, 2);
+        WalletStripe second = stripe(1, 3);
+        when(stripeRepository.findAllByWalletIdForUpdate(walletId)).thenReturn(List.of(first, second));
+
+        service().collapse(wallet);
+
+        assertEquals(6, wallet.getBalance());
+        assertEquals(0, first.getBalance());
+        assertEquals(0, second.getBalance());
+    }
+
+    @Test
+    void readAggregateIsCachedUntilTheNextRead() {
+        properties.getStriping().setAggregateTtl(Duration.ofMinutes(1));
+        StripedBalanceService service = service();
+        when(walletRepository.findBalanceById(walletId)).thenReturn(1L, 10L);
+
+        assertNull(service.cachedBalance(walletId));
+        assertEquals(Money.ofMinor(1), service.balance(walletId));
+        assertEquals(Money.ofMinor(1), service.cachedBalance(walletId));
+        assertEquals(TEN, service.balance(walletId));
+        assertEquals(TEN, service.cachedBalance(walletId));
+        verify(walletRepository, times(2)).findBalanceById(walletId);
+    }
+
+    @Test
+    void aggregateTheReplicaAnsweredIsNotCached() {
+        properties.getStriping().setAggregateTtl(Duration.ofMinutes(1));
+        StripedBalanceService service = service();
+        when(walletRepository.findBalanceById(walletId)).thenAnswer(invocation -> {
+            ReadConsistency.markReplicaRead();
+            return 1L;
+        });
+
+        assertEquals(Money.ofMinor(1), service.balance(walletId));
+        assertNull(service.cachedBalance(walletId));
+    }
+
+    private StripedBalanceService service() {
+        return new StripedBalanceService(stripeRepository, walletRepository, properties);
+    }
+
+    private Wallet wallet(long balance) {
+        Wallet wallet = new Wallet();
+        wallet.setId(walletId);
+        wallet.setBalance(balance);
+        return wallet;
+    }
+
+    private WalletStripe stripe(int number, long balance) {
+        WalletStripe stripe = new WalletStripe();
+        stripe.setStripe(number);
+        stripe.setBalance(balance);
+        return stripe;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.wattet.service;
+
+import com.example.wattet.dto.ExportFormat;
+import com.example.wattet.dto.TransactionPageDTO;
+import com.example.wattet.model.Money;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A history request must cost one statement however many transactions and related wallets the
+ * page holds: no lazy or eager wallet loads behind the projection.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class TransactionHistoryStatementCountTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private TransactionHistoryService transactionHistoryService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private UUID walletId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        walletId = walletService.createWallet(UUID.randomUUID()).getId();
+        walletService.deposit(walletId, Money.ofMinor(10_000));
+        for (int i = 0; i < 5; i++) {
+            UUID other = walletService.createWallet(UUID.randomUUID()).getId();
+            walletService.transfer(walletId, other, Money.ofMinor(100));
+        }
+        statistics.clear();
+    }
+
+    @Test
+    void historyPageIsOneStatement() {
+        TransactionPageDTO page = transactionHistoryService.findPage(walletId, null, null, null, null, 10);
+
+        assertEquals(6, page.items().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void exportIsOneStatement() throws Exception {
+        transactionHistoryService.export(walletId, null, null, null, ExportFormat.NDJSON, new ByteArrayOutputStream());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+}
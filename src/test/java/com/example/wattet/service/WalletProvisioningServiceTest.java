@@ -0,0 +1,105 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.ProvisioningSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs on H2 in PostgreSQL mode, which takes the JDBC batch path instead of COPY but the same
+ * INSERT ... ON CONFLICT DO NOTHING.
+ */
+class WalletProvisioningServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    private WalletProperties properties;
+
+    private WalletProvisioningService service;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:provisioning-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table wallet (id uuid not null primary key, account_id uuid not null unique,"
+                + " balance bigint not null, version bigint default 0 not null)");
+        properties = new WalletProperties();
+        properties.getProvisioning().setChunkSize(2);
+        service = new WalletProvisioningService(dataSource, properties);
+    }
+
+    @Test
+    void createsMissingWalletsAndReportsEveryLineInOrder() throws IOException {
+        UUID existingAccount = UUID.randomUUID();
+        UUID existingWallet = UUID.randomUUID();
+        jdbcTemplate.update("insert into wallet (id, account_id, balance, version) values (?, ?, 500, 3)",
+                existingWallet, existingAccount);
+        UUID newAccount = UUID.randomUUID();
+        String input = existingAccount + "\n\nnot-an-account\n" + newAccount + "\n " + newAccount + " \n1-2-3-4-5\n";
+        StringWriter results = new StringWriter();
+
+        ProvisioningSummary summary = service.provision(new StringReader(input), results);
+
+        UUID newWallet = jdbcTemplate.queryForObject("select id from wallet where account_id = ?", UUID.class, newAccount);
+        String expected = "line,accountId,walletId,status\n"
+                + "1," + existingAccount + "," + existingWallet + ",EXISTING\n"
+                + "3,,,INVALID\n"
+                + "4," + newAccount + "," + newWallet + ",CREATED\n"
+                + "5," + newAccount + "," + newWallet + ",EXISTING\n"
+                + "6,,,INVALID\n"
+                + "# complete: 1 created, 2 existing, 2 invalid\n";
+        assertEquals(expected, results.toString());
+        assertEquals(new ProvisioningSummary(1, 2, 2), summary);
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from wallet", Integer.class));
+        // The existing wallet is left as it was
+        assertEquals(500L, jdbcTemplate.queryForObject("select balance from wallet where id = ?", Long.class, existingWallet));
+    }
+
+    @Test
+    void runningTheSameInputAgainCreatesNothing() throws IOException {
+        String input = UUID.randomUUID() + "\n" + UUID.randomUUID() + "\n" + UUID.randomUUID() + "\n";
+        StringWriter first = new StringWriter();
+        service.provision(new StringReader(input), first);
+
+        StringWriter second = new StringWriter();
+        ProvisioningSummary summary = service.provision(new StringReader(input), second);
+
+        assertEquals(new ProvisioningSummary(0, 3, 0), summary);
+        assertEquals(first.toString().replace("CREATED", "EXISTING")
+                .replace("3 created, 0 existing", "0 created, 3 existing"), second.toString());
+        assertEquals(3, jdbcTemplate.queryForObject("select count(*) from wallet", Integer.class));
+    }
+
+    @Test
+    void emptyInputStillGetsHeaderAndSummary() throws IOException {
+        StringWriter results = new StringWriter();
+
+        service.provision(new StringReader(""), results);
+
+        assertEquals("line,accountId,walletId,status\n# complete: 0 created, 0 existing, 0 invalid\n", results.toString());
+    }
+
+    @Test
+    void failureEndsTheResultWithAnErrorLine() throws IOException {
+        jdbcTemplate.execute("drop table wallet");
+        StringWriter results = new StringWriter();
+
+        assertThrows(IllegalStateException.class,
+                () -> service.provision(new StringReader(UUID.randomUUID() + "\n"), results));
+
+        assertTrue(results.toString().startsWith("line,accountId,walletId,status\n# failed after 0 accounts: "));
+        assertTrue(results.toString().endsWith("\n"));
+    }
+}
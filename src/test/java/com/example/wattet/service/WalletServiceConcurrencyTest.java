@@ -0,0 +1,210 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.model.Money;
+import com.example.wattet.model.Transaction;
+import com.example.wattet.model.WalletStripe;
+import com.example.wattet.repository.TransactionRepository;
+import com.example.wattet.repository.WalletRepository;
+import com.example.wattet.repository.WalletStripeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Slf4j
+@SpringBootTest
+@ActiveProfiles("test")
+class WalletServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 50;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletProperties properties;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletStripeRepository walletStripeRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DepositAggregator depositAggregator;
+
+    private final WalletProperties.Concurrency defaults = new WalletProperties.Concurrency();
+
+    private WalletProperties configured;
+
+    @BeforeEach
+    void keepConfiguredSettings() {
+        configured = new WalletProperties();
+        configured.setCheckpoint(properties.getCheckpoint());
+        configured.setStriping(properties.getStriping());
+        configured.setDepositAggregation(properties.getDepositAggregation());
+    }
+
+    @AfterEach
+    void restoreConcurrencySettings() {
+        properties.setConcurrency(defaults);
+        properties.setCheckpoint(configured.getCheckpoint());
+        properties.setStriping(configured.getStriping());
+        properties.setDepositAggregation(configured.getDepositAggregation());
+    }
+
+    enum WritePath { ROW, STRIPES, PENDING }
+
+    /**
+     * Checkpoints on every deposit while other deposits are still uncommitted: a checkpoint that
+     * missed one with an earlier timestamp would leave every later historical balance short.
+     */
+    @ParameterizedTest
+    @EnumSource(WritePath.class)
+    void historicalBalancesCountEveryConcurrentDeposit(WritePath path) throws Exception {
+        useMode(ConcurrencyMode.ATOMIC);
+        WalletProperties.Checkpoint checkpoint = new WalletProperties.Checkpoint();
+        checkpoint.setInterval(1);
+        properties.setCheckpoint(checkpoint);
+        UUID walletId = walletService.createWallet(UUID.randomUUID()).getId();
+        if (path == WritePath.STRIPES) {
+            WalletProperties.Striping striping = new WalletProperties.Striping();
+            striping.setWalletIds(Set.of(walletId));
+            striping.setStripes(4);
+            properties.setStriping(striping);
+            for (int i = 0; i < 4; i++) {
+                WalletStripe stripe = new WalletStripe();
+                stripe.setWallet(walletRepository.getReferenceById(walletId));
+                stripe.setStripe(i);
+                walletStripeRepository.save(stripe);
+            }
+        }
+        if (path == WritePath.PENDING) {
+            WalletProperties.DepositAggregation aggregation = new WalletProperties.DepositAggregation();
+            aggregation.setEnabled(true);
+            properties.setDepositAggregation(aggregation);
+        }
+
+        runConcurrently(() -> walletService.deposit(walletId, Money.ofMinor(1)));
+        depositAggregator.flush();
+
+        // Expected balance at each stored timestamp: every deposit up to and including it
+        TreeMap<LocalDateTime, Long> expected = new TreeMap<>();
+        for (Transaction deposit : transactionRepository.findByWalletId(walletId)) {
+            expected.merge(deposit.getTimestamp(), 1L, Long::sum);
+        }
+        long running = 0;
+        for (var entry : expected.entrySet()) {
+            running += entry.getValue();
+            assertEquals(Money.ofMinor(running), walletService.getHistoricalBalance(walletId, entry.getKey()),
+                    "balance at " + entry.getKey());
+        }
+        assertEquals((long) THREADS * OPERATIONS_PER_THREAD, running);
+    }
+
+    @ParameterizedTest
+    // SHARDED starts its shards with the context; ShardedWalletEngineTest covers it
+    @EnumSource(value = ConcurrencyMode.class, names = "SHARDED", mode = EnumSource.Mode.EXCLUDE)
+    void concurrentDepositsOnHotWalletLoseNoUpdates(ConcurrencyMode mode) throws Exception {
+        useMode(mode);
+        UUID walletId = walletService.createWallet(UUID.randomUUID()).getId();
+
+        long elapsed = runConcurrently(() -> walletService.deposit(walletId, Money.ofMinor(1)));
+
+        Money expected = Money.ofMinor((long) THREADS * OPERATIONS_PER_THREAD);
+        assertEquals(expected, walletService.getBalance(walletId));
+        logThroughput(mode, "deposit", elapsed);
+    }
+
+    @ParameterizedTest
+    // SHARDED starts its shards with the context; ShardedWalletEngineTest covers it
+    @EnumSource(value = ConcurrencyMode.class, names = "SHARDED", mode = EnumSource.Mode.EXCLUDE)
+    void opposingTransfersNeitherDeadlockNorLoseMoney(ConcurrencyMode mode) throws Exception {
+        useMode(mode);
+        UUID first = walletService.createWallet(UUID.randomUUID()).getId();
+        UUID second = walletService.createWallet(UUID.randomUUID()).getId();
+        Money initial = Money.ofMinor(10_000);
+        walletService.deposit(first, initial);
+        walletService.deposit(second, initial);
+
+        long elapsed = runConcurrently(new Runnable() {
+            private final ThreadLocal<Boolean> forward = ThreadLocal.withInitial(() -> Thread.currentThread().threadId() % 2 == 0);
+
+            @Override
+            public void run() {
+                if (forward.get()) {
+                    walletService.transfer(first, second, Money.ofMinor(1));
+                } else {
+                    walletService.transfer(second, first, Money.ofMinor(1));
+                }
+            }
+        });
+
+        Money a = walletService.getBalance(first, true);
+        Money b = walletService.getBalance(second, true);
+        assertEquals(initial.plus(initial), a.plus(b));
+        logThroughput(mode, "transfer", elapsed);
+    }
+
+    private void useMode(ConcurrencyMode mode) {
+        WalletProperties.Concurrency concurrency = new WalletProperties.Concurrency();
+        concurrency.setMode(mode);
+        // Contention here is far above production levels, give optimistic writers room to converge
+        concurrency.setMaxAttempts(100);
+        properties.setConcurrency(concurrency);
+    }
+
+    private long runConcurrently(Runnable operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+                        operation.run();
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - begin;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void logThroughput(ConcurrencyMode mode, String operation, long elapsedNanos) {
+        int total = THREADS * OPERATIONS_PER_THREAD;
+        log.info("{} {}: {} ops in {} ms ({} ops/s)", mode, operation, total, elapsedNanos / 1_000_000,
+                Math.round(total / (elapsedNanos / 1_000_000_000.0)));
+    }
+}
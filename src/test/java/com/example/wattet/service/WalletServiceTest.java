@@ -1,6 +1,13 @@
 package com.example.wattet.service;
 
+import com.example.wattet.config.ConcurrencyMode;
+import com.example.wattet.config.ReadConsistency;
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.dto.BalanceSnapshot;
+import com.example.wattet.event.BalanceChangedEvent;
 import com.example.wattet.exception.InsufficientBalanceException;
+import com.example.wattet.exception.WalletNotFoundException;
+import com.example.wattet.model.Money;
 import com.example.wattet.model.Transaction;
 import com.example.wattet.model.TransactionType;
 import com.example.wattet.model.Wallet;
@@ -8,19 +15,25 @@ import com.example.wattet.repository.TransactionRepository;
 import com.example.wattet.repository.WalletRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class WalletServiceTest {
@@ -31,6 +44,36 @@ class WalletServiceTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Mock
+    private BalanceCheckpointService balanceCheckpointService;
+
+    @Mock
+    private BalanceCache balanceCache;
+
+    @Mock
+    private BalanceLoader balanceLoader;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private StripedBalanceService stripedBalanceService;
+
+    @Mock
+    private DepositAggregator depositAggregator;
+
+    @Mock
+    private TransactionOutbox transactionOutbox;
+
+    @Mock
+    private ShardedWalletEngine shardedWalletEngine;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private WalletProperties properties = new WalletProperties();
+
     @InjectMocks
     private WalletService walletService;
 
@@ -44,7 +87,7 @@ class WalletServiceTest {
         UUID accountId = UUID.randomUUID();
         Wallet wallet = new Wallet();
         wallet.setAccountId(accountId);
-        wallet.setBalance(BigDecimal.ZERO);
+        wallet.setBalance(0);
 
         when(walletRepository.findByAccountId(accountId)).thenReturn(Optional.empty());
         when(walletRepository.save(any(Wallet.class))).thenReturn(wallet);
@@ -53,23 +96,23 @@ class WalletServiceTest {
 
         assertNotNull(createdWallet);
         assertEquals(accountId, createdWallet.getAccountId());
-        assertEquals(BigDecimal.ZERO, createdWallet.getBalance());
+        assertEquals(0, createdWallet.getBalance());
     }
 
     @Test
     void testDeposit() {
         UUID walletId = UUID.randomUUID();
-        BigDecimal amount = BigDecimal.valueOf(100);
+        Money amount = Money.ofMinor(10_000);
         Wallet wallet = new Wallet();
         wallet.setId(walletId);
-        wallet.setBalance(BigDecimal.ZERO);
+        wallet.setBalance(0);
 
-        when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
+        when(walletRepository.findByIdForUpdate(walletId)).thenReturn(Optional.of(wallet));
         when(walletRepository.save(any(Wallet.class))).thenReturn(wallet);
 
         Transaction mockTransaction = new Transaction();
         mockTransaction.setType(TransactionType.DEPOSIT);
-        mockTransaction.setAmount(amount);
+        mockTransaction.setAmount(amount.minorUnits());
         mockTransaction.setWallet(wallet);
         mockTransaction.setTimestamp(LocalDateTime.now());
 
@@ -79,42 +122,131 @@ class WalletServiceTest {
 
         assertNotNull(transaction);
         assertEquals(TransactionType.DEPOSIT, transaction.getType());
-        assertEquals(amount, transaction.getAmount());
+        assertEquals(amount.minorUnits(), transaction.getAmount());
+        verify(transactionOutbox).record(mockTransaction);
     }
 
     @Test
     void testWithdrawInsufficientBalance() {
         UUID walletId = UUID.randomUUID();
-        BigDecimal amount = BigDecimal.valueOf(100);
+        Money amount = Money.ofMinor(10_000);
         Wallet wallet = new Wallet();
         wallet.setId(walletId);
-        wallet.setBalance(BigDecimal.ZERO);
+        wallet.setBalance(0);
+
+        when(walletRepository.findByIdForUpdate(walletId)).thenReturn(Optional.of(wallet));
+
+        assertThrows(InsufficientBalanceException.class, () -> walletService.withdraw(walletId, amount));
+    }
 
-        when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
+    @Test
+    void testAtomicWithdrawDistinguishesMissingWalletFromLowBalance() {
+        properties.getConcurrency().setMode(ConcurrencyMode.ATOMIC);
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.ofMinor(10_000);
 
+        when(walletRepository.debit(walletId, amount.minorUnits())).thenReturn(0);
+        when(walletRepository.existsById(walletId)).thenReturn(true);
         assertThrows(InsufficientBalanceException.class, () -> walletService.withdraw(walletId, amount));
+
+        when(walletRepository.existsById(walletId)).thenReturn(false);
+        assertThrows(WalletNotFoundException.class, () -> walletService.withdraw(walletId, amount));
+    }
+
+    @Test
+    void testAtomicDepositSkipsEntityRead() {
+        properties.getConcurrency().setMode(ConcurrencyMode.ATOMIC);
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.ofMinor(10_000);
+        Wallet reference = new Wallet();
+        reference.setId(walletId);
+
+        when(walletRepository.credit(walletId, amount.minorUnits())).thenReturn(1);
+        when(walletRepository.getReferenceById(walletId)).thenReturn(reference);
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transaction transaction = walletService.deposit(walletId, amount);
+
+        assertEquals(TransactionType.DEPOSIT, transaction.getType());
+        verify(walletRepository).credit(eq(walletId), eq(amount.minorUnits()));
+        verify(walletRepository, never()).findById(walletId);
+        verify(walletRepository, never()).findByIdForUpdate(walletId);
+    }
+
+    @Test
+    void testShardedMovementsGoToTheEngine() {
+        properties.getConcurrency().setMode(ConcurrencyMode.SHARDED);
+        UUID walletId = UUID.randomUUID();
+        UUID otherWalletId = UUID.randomUUID();
+        Money amount = Money.ofMinor(10_000);
+        Transaction recorded = new Transaction();
+        when(shardedWalletEngine.deposit(walletId, amount)).thenReturn(recorded);
+
+        assertSame(recorded, walletService.deposit(walletId, amount));
+        walletService.withdraw(walletId, amount);
+        walletService.transfer(walletId, otherWalletId, amount);
+
+        verify(shardedWalletEngine).withdraw(walletId, amount);
+        verify(shardedWalletEngine).transfer(walletId, otherWalletId, amount);
+        verifyNoInteractions(walletRepository, transactionRepository, depositAggregator, eventPublisher);
+    }
+
+    @Test
+    void testAggregatedDepositIsQueuedWithoutTouchingTheWalletRow() {
+        UUID walletId = UUID.randomUUID();
+        Money amount = Money.ofMinor(10_000);
+        Wallet reference = new Wallet();
+        reference.setId(walletId);
+
+        when(depositAggregator.isEnabled()).thenReturn(true);
+        when(walletRepository.getReferenceById(walletId)).thenReturn(reference);
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Transaction transaction = walletService.deposit(walletId, amount);
+
+        assertEquals(TransactionType.DEPOSIT, transaction.getType());
+        verify(depositAggregator).enqueue(walletId, amount);
+        verify(walletRepository, never()).credit(any(), anyLong());
+        verify(walletRepository, never()).findByIdForUpdate(walletId);
+    }
+
+    @Test
+    void testWithdrawFoldsPendingDepositsBeforeLocking() {
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet();
+        wallet.setId(walletId);
+        wallet.setBalance(10_000);
+
+        when(walletRepository.findByIdForUpdate(walletId)).thenReturn(Optional.of(wallet));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        walletService.withdraw(walletId, Money.ofMinor(1_000));
+
+        InOrder inOrder = inOrder(depositAggregator, walletRepository);
+        inOrder.verify(depositAggregator).fold(walletId);
+        inOrder.verify(walletRepository).findByIdForUpdate(walletId);
     }
 
     @Test
     void testTransfer() {
         UUID fromWalletId = UUID.randomUUID();
         UUID toWalletId = UUID.randomUUID();
-        BigDecimal amount = BigDecimal.valueOf(50);
+        Money amount = Money.ofMinor(5_000);
 
         Wallet fromWallet = new Wallet();
         fromWallet.setId(fromWalletId);
-        fromWallet.setBalance(BigDecimal.valueOf(100));
+        fromWallet.setBalance(10_000);
 
         Wallet toWallet = new Wallet();
         toWallet.setId(toWalletId);
-        toWallet.setBalance(BigDecimal.ZERO);
+        toWallet.setBalance(0);
 
-        when(walletRepository.findById(fromWalletId)).thenReturn(Optional.of(fromWallet));
-        when(walletRepository.findById(toWalletId)).thenReturn(Optional.of(toWallet));
+        when(walletRepository.findByIdForUpdate(fromWalletId)).thenReturn(Optional.of(fromWallet));
+        when(walletRepository.findByIdForUpdate(toWalletId)).thenReturn(Optional.of(toWallet));
 
         Transaction mockTransaction = new Transaction();
         mockTransaction.setType(TransactionType.TRANSFER);
-        mockTransaction.setAmount(amount);
+        mockTransaction.setAmount(amount.minorUnits());
         mockTransaction.setWallet(fromWallet);
         mockTransaction.setRelatedWallet(toWallet);
         mockTransaction.setTimestamp(LocalDateTime.now());
@@ -125,64 +257,72 @@ class WalletServiceTest {
 
         assertNotNull(transaction);
         assertEquals(TransactionType.TRANSFER, transaction.getType());
-        assertEquals(amount, transaction.getAmount());
+        assertEquals(amount.minorUnits(), transaction.getAmount());
     }
 
     @Test
     void testCalculateHistoricalBalance() {
+        UUID walletId = UUID.randomUUID();
+        LocalDateTime timestamp = LocalDateTime.now();
+
+        when(walletRepository.existsById(walletId)).thenReturn(true);
+        when(balanceCheckpointService.balanceAt(walletId, timestamp)).thenReturn(Money.ofMinor(11_000));
+
+        assertEquals(Money.ofMinor(11_000), walletService.getHistoricalBalance(walletId, timestamp));
+    }
+
+    @Test
+    void testHistoricalBalanceOfUnknownWallet() {
+        UUID walletId = UUID.randomUUID();
+
+        when(walletRepository.existsById(walletId)).thenReturn(false);
+
+        assertThrows(WalletNotFoundException.class, () -> walletService.getHistoricalBalance(walletId, LocalDateTime.now()));
+    }
+
+    @Test
+    void testDepositPublishesBalanceChange() {
         UUID walletId = UUID.randomUUID();
         Wallet wallet = new Wallet();
         wallet.setId(walletId);
-        wallet.setBalance(BigDecimal.valueOf(100));
+        wallet.setBalance(1_000);
 
-        LocalDateTime timestamp = LocalDateTime.now();
+        when(walletRepository.findByIdForUpdate(walletId)).thenReturn(Optional.of(wallet));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        walletService.deposit(walletId, Money.ofMinor(100));
+
+        verify(eventPublisher).publishEvent(new BalanceChangedEvent(walletId, wallet));
+    }
+
+    @Test
+    void testStrictBalanceReadBypassesCache() {
+        UUID walletId = UUID.randomUUID();
+        when(balanceLoader.load(walletId)).thenReturn(new BalanceSnapshot(Money.ofMinor(1_000), 3L));
 
-        Transaction deposit = new Transaction();
-        deposit.setType(TransactionType.DEPOSIT);
-        deposit.setAmount(BigDecimal.valueOf(50));
-        deposit.setWallet(wallet);
-        deposit.setTimestamp(timestamp.minusMinutes(40));
-
-        Transaction withdraw = new Transaction();
-        withdraw.setType(TransactionType.WITHDRAW);
-        withdraw.setAmount(BigDecimal.valueOf(30));
-        withdraw.setWallet(wallet);
-        withdraw.setTimestamp(timestamp.minusMinutes(3));
-
-        Transaction transferOut = new Transaction();
-        transferOut.setType(TransactionType.TRANSFER);
-        transferOut.setAmount(BigDecimal.valueOf(20));
-        transferOut.setWallet(wallet);
-        transferOut.setTimestamp(timestamp.minusMinutes(2));
-
-        Transaction transferIn = new Transaction();
-        transferIn.setType(TransactionType.TRANSFER);
-        transferIn.setAmount(BigDecimal.valueOf(10));
-        transferIn.setWallet(wallet);
-        transferIn.setTimestamp(timestamp.minusMinutes(1));
-
-        // Use a mutable list instead of List.of()
-        List<Transaction> transactions = new ArrayList<>();
-        transactions.add(deposit);
-        transactions.add(withdraw);
-        transactions.add(transferOut);
-        transactions.add(transferIn);
-
-        // Mock para encontrar a carteira
-        when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
-
-        // Mock para retornar as transações
-        when(transactionRepository.findByWalletIdAndTimestampLessThanEqual(walletId, timestamp))
-                .thenReturn(transactions);
-
-        BigDecimal historicalBalance = walletService.getHistoricalBalance(walletId, timestamp);
-
-        // Saldo inicial: 100
-        // DEPOSIT: +50 → 150
-        // WITHDRAW: -30 → 120
-        // TRANSFER (out): -20 → 100
-        // TRANSFER (in): +10 → 110
-        assertEquals(BigDecimal.valueOf(110), historicalBalance);
-    }
-
-}
\ No newline at end of file
+        assertEquals(Money.ofMinor(1_000), walletService.getBalance(walletId, true));
+        verifyNoInteractions(balanceCache);
+    }
+
+    @Test
+    void testBalanceReadWithConsistencyTokenBypassesCache() {
+        UUID walletId = UUID.randomUUID();
+        when(balanceLoader.load(walletId)).thenReturn(new BalanceSnapshot(Money.ofMinor(1_000), 3L));
+        ReadConsistency.require(42L);
+        try {
+            assertEquals(Money.ofMinor(1_000), walletService.getBalance(walletId));
+        } finally {
+            ReadConsistency.clear();
+        }
+        verifyNoInteractions(balanceCache);
+    }
+
+    @Test
+    void testBalanceReadGoesThroughCache() {
+        UUID walletId = UUID.randomUUID();
+        when(balanceCache.get(eq(walletId), any())).thenReturn(new BalanceSnapshot(Money.ofMinor(100), 1L));
+
+        assertEquals(Money.ofMinor(100), walletService.getBalance(walletId));
+        verify(balanceLoader, never()).load(walletId);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.wattet.service;
+
+import com.example.wattet.config.WalletProperties;
+import com.example.wattet.event.TransactionRecordedEvent;
+import com.example.wattet.model.TransactionType;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.RestClientException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the sink against a local webhook stub.
+ */
+class WebhookOutboxSinkTest {
+
+    private HttpServer stub;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private volatile int status = 204;
+
+    private WebhookOutboxSink sink;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.createContext("/events", exchange -> {
+            received.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        stub.start();
+        WalletProperties properties = new WalletProperties();
+        properties.getOutbox().getWebhook().setUrl("http://localhost:" + stub.getAddress().getPort() + "/events");
+        sink = new WebhookOutboxSink(new RestTemplateBuilder(), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.stop(0);
+    }
+
+    @Test
+    void postsTheBatchAsOneJsonArray() {
+        sink.publish(List.of(event(7), event(8)));
+
+        assertEquals(1, received.size());
+        assertTrue(received.get(0).startsWith("["));
+        assertTrue(received.get(0).contains("\"sequence\":7"));
+        assertTrue(received.get(0).contains("\"sequence\":8"));
+    }
+
+    @Test
+    void errorResponseFailsTheBatch() {
+        status = 503;
+
+        assertThrows(RestClientException.class, () -> sink.publish(List.of(event(1))));
+    }
+
+    @Test
+    void missingUrlIsRejectedAtStartup() {
+        assertThrows(IllegalStateException.class,
+                () -> new WebhookOutboxSink(new RestTemplateBuilder(), new WalletProperties()));
+    }
+
+    private TransactionRecordedEvent event(long sequence) {
+        return new TransactionRecordedEvent(sequence, UUID.randomUUID(), UUID.randomUUID(), TransactionType.DEPOSIT,
+                BigDecimal.ONE, LocalDateTime.now(), null);
+    }
+}